@@ -0,0 +1,79 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *
+ *  Copyright (C) 2015  Andrew Meyers
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.bench;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import shuffle.fwk.data.simulation.SimulationCore;
+import shuffle.fwk.data.simulation.SimulationFeeder;
+import shuffle.fwk.data.simulation.SimulationResult;
+import shuffle.fwk.data.simulation.SimulationResultsAssembler;
+import shuffle.fwk.data.simulation.SimulationState;
+import shuffle.fwk.data.simulation.SimulationTask;
+
+/**
+ * JMH benchmarks for the simulation engine, from finding the moves on a board up to a full run of
+ * the core. Run them with the bench target of build/compile_source.xml, which also reports the
+ * allocation rate of each through the gc profiler.
+ *
+ * @author Andrew Meyers
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true" })
+public class SimulationEngineBenchmarks {
+
+   @Benchmark
+   public List<List<Integer>> possibleMoves(SimulationEngineState state) {
+      return state.core.getPossibleMoves(state.board);
+   }
+
+   @Benchmark
+   public SimulationState singleTask(SimulationEngineState state) {
+      return new SimulationTask(state.core, state.move, new SimulationFeeder()).invoke();
+   }
+
+   @Benchmark
+   public SimulationResult assembleResults(SimulationEngineState state) {
+      return new SimulationResultsAssembler(state.move, UUID.randomUUID(), state.finishedTasks, 0L,
+            state.core.getFeederSampling()).invoke();
+   }
+
+   @Benchmark
+   @OutputTimeUnit(TimeUnit.MILLISECONDS)
+   public Collection<SimulationResult> fullCompute(SimulationEngineState state, SimulationPoolState pool) {
+      SimulationCore core = pool.newCore(state);
+      pool.pool.invoke(core);
+      return pool.getResults();
+   }
+}
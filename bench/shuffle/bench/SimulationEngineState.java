@@ -0,0 +1,92 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *
+ *  Copyright (C) 2015  Andrew Meyers
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.bench;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import shuffle.fwk.config.ConfigFactory;
+import shuffle.fwk.config.manager.BoardManager;
+import shuffle.fwk.data.Board;
+import shuffle.fwk.data.Stage;
+import shuffle.fwk.data.simulation.SimulationCore;
+import shuffle.fwk.data.simulation.SimulationCreationTask;
+import shuffle.fwk.data.simulation.SimulationFeeder;
+import shuffle.fwk.data.simulation.SimulationRequest;
+import shuffle.fwk.data.simulation.SimulationTask;
+
+/**
+ * Everything the simulation benchmarks need, set up once per trial: a stage with its default board
+ * from config/defaults/boards, a request and core for it, its moves, and a finished set of tasks for
+ * one of them. Only the configuration is loaded, not the user interface, so this works headless.
+ *
+ * @author Andrew Meyers
+ *
+ */
+@State(Scope.Benchmark)
+public class SimulationEngineState {
+
+   /**
+    * The stage, which also picks the default board. 001 is plain, 278 has random effects and 609
+    * has long random chains.
+    */
+   @Param({ "001", "278", "609" })
+   public String stage;
+
+   /**
+    * The number of feeders simulated for each move.
+    */
+   @Param({ "10", "50", "200" })
+   public int feeders;
+
+   SimulationRequest request;
+   SimulationCore core;
+   Board board;
+   List<List<Integer>> moves;
+   List<Integer> move;
+   Collection<SimulationFeeder> feederSet;
+   Collection<SimulationTask> finishedTasks;
+
+   @Setup(Level.Trial)
+   public void setUp() {
+      ConfigFactory factory = new ConfigFactory();
+      Stage stageValue = factory.getStageManager().getStageValue(stage);
+      BoardManager boardManager = new BoardManager(factory);
+      boardManager.setStage(stageValue);
+      boardManager.loadBoardForStage(stageValue, true);
+      board = new Board(boardManager.getBoard());
+      request = SimulationRequest.builder(factory).setStage(stageValue).setBoard(board)
+            .setTeam(factory.getTeamManager().getTeamForStage(stageValue)).setNumFeeders(feeders).build();
+      core = new SimulationCore(request, request.getProcessUUID());
+      moves = core.getPossibleMoves(board);
+      // The middle move, so that the choice does not favour any side of the board.
+      move = moves.get(moves.size() / 2);
+      feederSet = SimulationFeeder.getFeedersFor(0, core.getStage(), board.getSpeciesPresent(), feeders,
+            core.getFeederSampling());
+      finishedTasks = new ArrayList<SimulationTask>(SimulationCreationTask.simulateVariations(core, move,
+            feederSet));
+   }
+}
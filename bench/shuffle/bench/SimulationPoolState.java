@@ -0,0 +1,93 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *
+ *  Copyright (C) 2015  Andrew Meyers
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.bench;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import shuffle.fwk.data.simulation.SimulationCore;
+import shuffle.fwk.data.simulation.SimulationRequest;
+import shuffle.fwk.data.simulation.SimulationResult;
+import shuffle.fwk.data.simulation.util.SimulationAcceptor;
+
+/**
+ * The pool for the benchmarks that run a whole simulation, kept apart from
+ * {@link SimulationEngineState} so that only those benchmarks are repeated for each thread count.
+ *
+ * @author Andrew Meyers
+ *
+ */
+@State(Scope.Benchmark)
+public class SimulationPoolState implements SimulationAcceptor {
+
+   /**
+    * The parallelism of the pool that runs the full simulation.
+    */
+   @Param({ "1", "2", "4" })
+   public int threads;
+
+   ForkJoinPool pool;
+
+   private volatile UUID acceptedId = null;
+   private volatile Collection<SimulationResult> results = null;
+
+   @Setup(Level.Trial)
+   public void setUp() {
+      pool = new ForkJoinPool(threads);
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      pool.shutdownNow();
+   }
+
+   /**
+    * @param state
+    * @return A new core for the state's request, whose results come back to this state.
+    */
+   SimulationCore newCore(SimulationEngineState state) {
+      UUID id = UUID.randomUUID();
+      acceptedId = id;
+      results = null;
+      SimulationRequest request = state.request.toBuilder().setProcessUUID(id).setAcceptor(this).build();
+      return new SimulationCore(request, id);
+   }
+
+   Collection<SimulationResult> getResults() {
+      return results;
+   }
+
+   @Override
+   public void acceptResults(Collection<SimulationResult> results) {
+      this.results = results;
+   }
+
+   @Override
+   public UUID getAcceptedId() {
+      return acceptedId;
+   }
+}
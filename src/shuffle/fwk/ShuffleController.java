@@ -56,6 +56,7 @@ import shuffle.fwk.config.manager.ImageManager;
 import shuffle.fwk.config.manager.RosterManager;
 import shuffle.fwk.config.manager.SpeciesManager;
 import shuffle.fwk.config.manager.TeamManager;
+import shuffle.fwk.data.Board;
 import shuffle.fwk.data.Board.Status;
 import shuffle.fwk.data.Effect;
 import shuffle.fwk.data.Species;
@@ -65,6 +66,8 @@ import shuffle.fwk.data.Team;
 import shuffle.fwk.data.simulation.SimulationResult;
 import shuffle.fwk.data.simulation.SimulationTask;
 import shuffle.fwk.data.simulation.SimulationUser;
+import shuffle.fwk.data.simulation.util.FeederSampling;
+import shuffle.fwk.data.simulation.util.SimulationTrace;
 import shuffle.fwk.gui.GridPanel;
 import shuffle.fwk.gui.ShuffleFrame;
 import shuffle.fwk.gui.user.ShuffleFrameUser;
@@ -172,7 +175,7 @@ public class ShuffleController extends Observable implements ShuffleViewUser, Sh
          try {
             Level levelToSet = Level.parse(args[1]);
             Logger.getLogger(SimulationTask.class.getName()).setLevel(levelToSet);
-            SimulationTask.setLogFiner(levelToSet.intValue() <= Level.FINER.intValue());
+            SimulationTrace.setEnabled(levelToSet.intValue() <= Level.FINER.intValue());
             Logger.getLogger(ShuffleModel.class.getName()).setLevel(levelToSet);
          } catch (Exception e) {
             LOG.fine("Cannot set simulation logging to that level: " + StringUtils.join(args));
@@ -648,6 +651,11 @@ public class ShuffleController extends Observable implements ShuffleViewUser, Sh
       return getModel().getCurrentStage();
    }
    
+   @Override
+   public Board getBoard() {
+      return getModel().getBoard();
+   }
+   
    @Override
    public SpeciesPaint getSelectedSpeciesPaint() {
       return getModel().getCurrentSpeciesPaint();
@@ -699,6 +707,31 @@ public class ShuffleController extends Observable implements ShuffleViewUser, Sh
       return getModel().getNumFeeders();
    }
    
+   @Override
+   public int getRefinementLimit() {
+      return getModel().getRefinementLimit();
+   }
+   
+   @Override
+   public int getTargetLatency() {
+      return getModel().getTargetLatency();
+   }
+   
+   @Override
+   public boolean isExactBranching() {
+      return getModel().isExactBranching();
+   }
+   
+   @Override
+   public boolean isCommonRandomNumbers() {
+      return getModel().isCommonRandomNumbers();
+   }
+   
+   @Override
+   public FeederSampling getFeederSampling() {
+      return getModel().getFeederSampling();
+   }
+   
    @Override
    public int getPreferredFeederHeight() {
       return getModel().getFeederHeight();
@@ -1177,6 +1210,11 @@ public class ShuffleController extends Observable implements ShuffleViewUser, Sh
    public int getEffectThreshold() {
       return getModel().getEffectThreshold();
    }
+   
+   @Override
+   public Long getSeed() {
+      return getModel().getProcessSeed();
+   }
 
    /*
     * (non-Javadoc)
@@ -36,9 +36,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
 import java.util.Stack;
 import java.util.TreeSet;
 import java.util.UUID;
@@ -57,6 +60,7 @@ import org.apache.tools.ant.DefaultLogger;
 import org.apache.tools.ant.Project;
 import org.apache.tools.ant.ProjectHelper;
 
+import shuffle.fwk.batch.SimulationReplay;
 import shuffle.fwk.config.ConfigFactory;
 import shuffle.fwk.config.ConfigManager;
 import shuffle.fwk.config.EntryType;
@@ -87,6 +91,11 @@ import shuffle.fwk.data.Team;
 import shuffle.fwk.data.TeamImpl;
 import shuffle.fwk.data.simulation.SimulationCore;
 import shuffle.fwk.data.simulation.SimulationResult;
+import shuffle.fwk.data.simulation.util.FeederSampling;
+import shuffle.fwk.data.simulation.util.SimulationAcceptor;
+import shuffle.fwk.data.simulation.util.SimulationMetrics;
+import shuffle.fwk.data.simulation.util.SimulationResultCache;
+import shuffle.fwk.data.simulation.util.SimulationTrace;
 import shuffle.fwk.i18n.I18nUser;
 import shuffle.fwk.service.BaseService;
 import shuffle.fwk.update.UpdateCheck;
@@ -109,19 +118,35 @@ public class ShuffleModel
    private final ShuffleModelUser user;
    /** The delay, in Milliseconds, after a change before the core is started. */
    private static final int SIMULATION_DELAY = 150;
+   // How many of the best results have their next turn simulated in advance
+   private static final int SPECULATION_COUNT = 3;
    // defaults
    private static final boolean DEFAULT_AUTO_COMPUTE = true;
+   private static final boolean DEFAULT_PERSIST_RESULT_CACHE = false;
+   private static final boolean DEFAULT_EXACT_BRANCHING = false;
+   private static final boolean DEFAULT_COMMON_RANDOM_NUMBERS = false;
+   private static final FeederSampling DEFAULT_FEEDER_SAMPLING = FeederSampling.RANDOM;
    private static final int DEFAULT_FEEDER_HEIGHT = 0;
    private static final int DEFAULT_NUM_FEEDERS = 1;
+   private static final int DEFAULT_REFINEMENT_LIMIT = 0;
+   private static final int DEFAULT_TARGET_LATENCY = 0;
    private static final int DEFAULT_SURVIVAL_MOVES = 5;
    private static final String BUILD_REPORT_FILE = "bugs/buildReport.xml";
    private static final String BUILD_REPORT_RESOURCE = "config/buildReport.xml";
    private static final String BUG_DETAILS_FILE = "bugs/bugDetails.txt";
+   private static final String BUG_TRACE_FILE = "bugs/simulationTrace.txt";
+   private static final String BUG_REPLAY_FILE = "bugs/simulationReplay.txt";
+   private static final Random SEEDS = new Random();
    // Constants
    public static final int MAX_SCORE = 9999999;
    // config keys
    private static final String KEY_AUTO_COMPUTE = "AUTO_COMPUTE";
    private static final String KEY_NUM_FEEDERS = "NUM_FEEDERS";
+   private static final String KEY_REFINEMENT_LIMIT = "REFINEMENT_LIMIT";
+   private static final String KEY_TARGET_LATENCY = "TARGET_LATENCY";
+   private static final String KEY_EXACT_BRANCHING = "EXACT_BRANCHING";
+   private static final String KEY_COMMON_RANDOM_NUMBERS = "COMMON_RANDOM_NUMBERS";
+   private static final String KEY_FEEDER_SAMPLING = "FEEDER_SAMPLING";
    private static final String KEY_FEEDER_HEIGHT = "FEEDER_HEIGHT";
    private static final String KEY_LOAD_LOCALE = "LOAD_LOCALE_FROM_CONFIG";
    private static final String KEY_LOCALE_STATE = "LAST_LOCALE";
@@ -137,6 +162,9 @@ public class ShuffleModel
    private static final String KEY_METAL_EXTENDED = "METAL_EXTENDED";
    private static final String KEY_SURVIVAL_MODE = "SURVIVAL_MODE";
    private static final String KEY_SURVIVAL_MODE_MOVES = "SURVIVAL_MODE_MOVES";
+   private static final String KEY_PERSIST_RESULT_CACHE = "PERSIST_RESULT_CACHE";
+   private static final String KEY_RESULT_CACHE = "RESULT_CACHE";
+   private static final String DEFAULT_RESULT_CACHE_PATH = "config/resultCache.dat";
    // i18n keys
    private static final String KEY_SIMULATION_START = "log.sim.start";
    private static final String KEY_SIMULATION_COMPLETE = "log.sim.complete";
@@ -178,7 +206,20 @@ public class ShuffleModel
    
    private ScheduledExecutorService scheduledExecutor = Executors.newScheduledThreadPool(1);
    private ForkJoinPool forkJoinPool = getNewPool();
-   private UUID processUUID = null;
+   private volatile UUID processUUID = null;
+   // Every run is seeded, so that it can be replayed exactly from a bug report.
+   private volatile Long processSeed = null;
+   private String processFingerprint = null;
+   // The state the current results were computed from, used to predict the next turn
+   private SimulationCore processCore = null;
+   private int processScore = 0;
+   private int processStageHealth = 0;
+   private int processMoves = 0;
+   private ForkJoinPool speculationPool = getNewSpeculationPool();
+   // The pool of the speculation adopted as the current run, if any, so that it can be cancelled
+   private ForkJoinPool adoptedPool = null;
+   private final Map<String, Speculation> speculations = new HashMap<String, Speculation>();
+   private SimulationResultCache resultCache = null;
    
    private Stack<UndoRedoItem> undoStack = new Stack<UndoRedoItem>();
    private Stack<UndoRedoItem> redoStack = new Stack<UndoRedoItem>();
@@ -191,6 +232,7 @@ public class ShuffleModel
     */
    public ShuffleModel(ShuffleModelUser user) {
       this.user = user;
+      SimulationMetrics.register();
       if (getRemainingMoves() <= 1) {
          followSP084defaults = (getCurrentGradingMode().getKey().equals(SP_084_LAST_MOVE_GRADING_MODE));
       } else {
@@ -269,6 +311,34 @@ public class ShuffleModel
    public void saveAllData() {
       getConfigFactory().saveAllToConfig();
       getBoardManager().saveBoard();
+      if (isPersistResultCache()) {
+         getResultCache().save(getResultCacheFile());
+      }
+   }
+   
+   /**
+    * Gets the cache of previously computed results. If the cache is persisted between sessions, it
+    * is loaded from the file on first use.
+    */
+   private synchronized SimulationResultCache getResultCache() {
+      if (resultCache == null) {
+         resultCache = new SimulationResultCache();
+         if (isPersistResultCache()) {
+            resultCache.load(getResultCacheFile(), getSpeciesManager());
+         }
+      }
+      return resultCache;
+   }
+   
+   private File getResultCacheFile() {
+      return getConfigFactory().getPathManager().getFileValue(KEY_RESULT_CACHE, new File(DEFAULT_RESULT_CACHE_PATH));
+   }
+   
+   /**
+    * @return True if the result cache should be saved and loaded between sessions.
+    */
+   public boolean isPersistResultCache() {
+      return getPreferencesManager().getBooleanValue(KEY_PERSIST_RESULT_CACHE, DEFAULT_PERSIST_RESULT_CACHE);
    }
    
    // MANAGER GETTERS
@@ -895,9 +965,49 @@ public class ShuffleModel
          forkJoinPool.shutdownNow();
          forkJoinPool = getNewPool();
       }
+      cancelAdoptedSpeculation();
       resultsComputing = true;
-      processUUID = UUID.randomUUID();
-      SimulationCore core = new SimulationCore(getUser(), processUUID);
+      UUID id = UUID.randomUUID();
+      processSeed = SEEDS.nextLong();
+      SimulationCore core = new SimulationCore(getUser(), id);
+      String fingerprint = core.getFingerprint();
+      Collection<SimulationResult> cached;
+      synchronized (this) {
+         processUUID = id;
+         processFingerprint = fingerprint;
+         processCore = core;
+         processScore = getCurrentScore();
+         processStageHealth = getCurrentStage().getHealth(getEscalationLevel());
+         processMoves = getRemainingMoves();
+         cached = getResultCache().get(fingerprint, id, System.currentTimeMillis());
+         SimulationMetrics.INSTANCE.addResultCacheLookup(cached != null);
+         Speculation speculation = speculations.remove(fingerprint);
+         if (speculation == null) {
+            // The user went somewhere we did not predict
+            cancelSpeculation();
+         } else if (cached == null) {
+            // Already being simulated, so adopt that result when it arrives.
+            processUUID = speculation.getId();
+            speculation.settle();
+            supersedeSpeculation();
+            // It keeps its pool, which is cancelled along with it as the current run.
+            adoptedPool = speculationPool;
+            speculationPool = getNewSpeculationPool();
+            return;
+         }
+      }
+      if (cached != null) {
+         // These inputs were already simulated, so they are published as if just computed.
+         scheduledExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+               if (id.equals(getAcceptedId())) {
+                  getUser().acceptResults(cached);
+               }
+            }
+         });
+         return;
+      }
       scheduledExecutor.schedule(new Runnable() {
          @Override
          public void run() {
@@ -911,7 +1021,15 @@ public class ShuffleModel
    }
    
    private ForkJoinPool getNewPool() {
-      ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+      return getNewPool(Runtime.getRuntime().availableProcessors());
+   }
+   
+   private ForkJoinPool getNewSpeculationPool() {
+      return getNewPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+   }
+   
+   private ForkJoinPool getNewPool(int parallelism) {
+      ForkJoinPool pool = new ForkJoinPool(parallelism,
             new ForkJoinPool.ForkJoinWorkerThreadFactory() {
                @Override
                public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
@@ -948,26 +1066,157 @@ public class ShuffleModel
       if (results != null && !results.isEmpty()) {
          SimulationResult firstResult = results.iterator().next();
          if (firstResult != null && firstResult.getID() != null && firstResult.getID().equals(processUUID)) {
+            // Refined results for the same process keep the user's selected move
+            boolean refined = selectedResult != null && processUUID.equals(selectedResult.getID());
+            List<Integer> selectedMove = refined ? selectedResult.getMove() : null;
             bestResults = new TreeSet<SimulationResult>(getCurrentGradingMode().getGradingMetric());
             bestResults.addAll(results);
+            getResultCache().put(processFingerprint, results);
             selectedResult = bestResults.iterator().next();
+            for (SimulationResult result : bestResults) {
+               if (result.getMove().equals(selectedMove)) {
+                  selectedResult = result;
+               }
+            }
             long startTime = selectedResult.getStartTime();
             changed = true;
-            if (SwingUtilities.isEventDispatchThread()) {
-               LOG.info(getString(KEY_SIMULATION_COMPLETE, endTime - startTime));
-            } else {
-               SwingUtilities.invokeLater(new Runnable() {
-                  @Override
-                  public void run() {
-                     LOG.info(getString(KEY_SIMULATION_COMPLETE, endTime - startTime));
-                  }
-               });
+            if (!refined) {
+               startSpeculation();
+               if (SwingUtilities.isEventDispatchThread()) {
+                  LOG.info(getString(KEY_SIMULATION_COMPLETE, endTime - startTime));
+               } else {
+                  SwingUtilities.invokeLater(new Runnable() {
+                     @Override
+                     public void run() {
+                        LOG.info(getString(KEY_SIMULATION_COMPLETE, endTime - startTime));
+                     }
+                  });
+               }
             }
          }
       }
       return changed;
    }
    
+   /**
+    * Starts simulating the turn after each of the best few results in the background, so that if
+    * the user plays one of them the next recommendation can be taken straight from the cache.
+    */
+   private synchronized void startSpeculation() {
+      cancelSpeculation();
+      if (processCore == null || bestResults == null) {
+         return;
+      }
+      Iterator<SimulationResult> itr = bestResults.iterator();
+      for (int i = 0; i < SPECULATION_COUNT && itr.hasNext(); i++) {
+         SimulationResult result = itr.next();
+         // Mirrors the state changes made by doSelectedMove()
+         int newScore = (int) Math.min(Math.max(0, processScore + result.getNetScore().getAverage()), MAX_SCORE);
+         int newMoves = result.getMove().isEmpty() ? processMoves : Math.max(processMoves - 1, 1);
+         int newHealth = Math.max(0, processStageHealth - newScore);
+         Speculation speculation = new Speculation(processCore, result.getBoard(), newHealth, newMoves);
+         String fingerprint = speculation.getFingerprint();
+         if (!speculations.containsKey(fingerprint) && !getResultCache().contains(fingerprint)) {
+            speculations.put(fingerprint, speculation);
+            speculationPool.execute(speculation.getCore());
+         }
+      }
+   }
+   
+   /**
+    * Stops all background simulation of turns the user has not played.
+    */
+   private synchronized void cancelSpeculation() {
+      if (!speculations.isEmpty()) {
+         supersedeSpeculation();
+         speculationPool.shutdownNow();
+         speculationPool = getNewSpeculationPool();
+      }
+   }
+   
+   /**
+    * Stops the speculation that was adopted as the current run, if there is one. Like any other
+    * run it is stopped once it is replaced, and anything else left in its pool was already
+    * superseded.
+    */
+   private synchronized void cancelAdoptedSpeculation() {
+      if (adoptedPool != null) {
+         adoptedPool.shutdownNow();
+         adoptedPool = null;
+      }
+   }
+   
+   /**
+    * Marks every pending speculation as out of date, so that each stops at its next check and
+    * discards what it has. Unlike {@link #cancelSpeculation()} this leaves the pool running, for an
+    * adopted speculation that is still in it, which {@link #cancelAdoptedSpeculation()} stops.
+    */
+   private synchronized void supersedeSpeculation() {
+      for (Speculation speculation : speculations.values()) {
+         speculation.settle();
+      }
+      speculations.clear();
+   }
+   
+   /**
+    * Stores the results of a speculative simulation, and publishes them if the user has since moved
+    * to that state.
+    */
+   private synchronized void acceptSpeculativeResults(Speculation speculation, Collection<SimulationResult> results) {
+      getResultCache().put(speculation.getFingerprint(), results);
+      speculations.remove(speculation.getFingerprint());
+      if (speculation.getId().equals(processUUID)) {
+         getUser().acceptResults(results);
+      }
+   }
+   
+   /**
+    * A simulation of the turn after a result, started before the user has played it. While pending
+    * it accepts its own id. Once adopted or superseded it accepts only the model's current id, so it
+    * stops as soon as the user has moved on from it.
+    */
+   private class Speculation implements SimulationAcceptor {
+      private final UUID id = UUID.randomUUID();
+      private final SimulationCore core;
+      private final String fingerprint;
+      private volatile boolean pending = true;
+      
+      public Speculation(SimulationCore previous, Board resultBoard, int remainingHealth, int remainingMoves) {
+         core = new SimulationCore(previous, id, this, resultBoard, remainingHealth, remainingMoves);
+         fingerprint = core.getFingerprint();
+      }
+      
+      public SimulationCore getCore() {
+         return core;
+      }
+      
+      public String getFingerprint() {
+         return fingerprint;
+      }
+      
+      public UUID getId() {
+         return id;
+      }
+      
+      /**
+       * From now on only the model's current id is accepted. The simulation carries on if the user
+       * has reached this turn, and stops otherwise.
+       */
+      public void settle() {
+         pending = false;
+      }
+      
+      @Override
+      public void acceptResults(Collection<SimulationResult> results) {
+         acceptSpeculativeResults(this, results);
+      }
+      
+      @Override
+      public UUID getAcceptedId() {
+         return pending ? id : ShuffleModel.this.getAcceptedId();
+      }
+   }
+   
    /**
     * @param result
     * @return
@@ -1076,9 +1325,18 @@ public class ShuffleModel
       return processUUID;
    }
    
+   /**
+    * @return The seed of the latest simulation, or null if there has not been one.
+    */
+   public Long getProcessSeed() {
+      return processSeed;
+   }
+   
    public void reportBug(String message) {
       new File("bugs").getAbsoluteFile().mkdir();
       makeBugMessageFile(message);
+      makeBugTraceFile();
+      makeBugReplayFile();
       copyBuildXML();
       buildBugReport();
       cleanupBuildXML();
@@ -1138,6 +1396,33 @@ public class ShuffleModel
       }
    }
    
+   /**
+    * Dumps the simulation trace for the report, if tracing is on.
+    */
+   private void makeBugTraceFile() {
+      if (!SimulationTrace.isEnabled()) {
+         return;
+      }
+      File file = new File(BUG_TRACE_FILE).getAbsoluteFile();
+      try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))) {
+         SimulationTrace.dump(bw);
+      } catch (IOException e) {
+         LOG.log(Level.WARNING, getString(KEY_BUG_FILE_SAVEPROBLEM, file.getAbsolutePath()), e);
+      }
+   }
+   
+   /**
+    * Writes a replay of the current simulation for the report, so that it can be run again exactly.
+    */
+   private void makeBugReplayFile() {
+      File file = new File(BUG_REPLAY_FILE).getAbsoluteFile();
+      try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))) {
+         SimulationReplay.write(getUser(), bw);
+      } catch (Exception e) {
+         LOG.log(Level.WARNING, getString(KEY_BUG_FILE_SAVEPROBLEM, file.getAbsolutePath()), e);
+      }
+   }
+   
    /**
     * Builds the bug report itself.
     */
@@ -1242,6 +1527,42 @@ public class ShuffleModel
       return getPreferencesManager().getIntegerValue(KEY_FEEDER_HEIGHT, DEFAULT_FEEDER_HEIGHT);
    }
    
+   /**
+    * @return The number of feeders each move is refined up to after the first results are shown.
+    */
+   public int getRefinementLimit() {
+      return getPreferencesManager().getIntegerValue(KEY_REFINEMENT_LIMIT, DEFAULT_REFINEMENT_LIMIT);
+   }
+   
+   /**
+    * @return The time in milliseconds each simulation should take, or 0 to use the number of feeders.
+    */
+   public int getTargetLatency() {
+      return getPreferencesManager().getIntegerValue(KEY_TARGET_LATENCY, DEFAULT_TARGET_LATENCY);
+   }
+   
+   /**
+    * @return True if every outcome of random effects is simulated instead of a random sample.
+    */
+   public boolean isExactBranching() {
+      return getPreferencesManager().getBooleanValue(KEY_EXACT_BRANCHING, DEFAULT_EXACT_BRANCHING);
+   }
+   
+   /**
+    * @return True if every move is simulated with the same random numbers for each feeder.
+    */
+   public boolean isCommonRandomNumbers() {
+      return getPreferencesManager().getBooleanValue(KEY_COMMON_RANDOM_NUMBERS, DEFAULT_COMMON_RANDOM_NUMBERS);
+   }
+   
+   /**
+    * @return How the blocks and random effects of each set of feeders are drawn.
+    */
+   public FeederSampling getFeederSampling() {
+      return FeederSampling.getSampling(getPreferencesManager().getStringValue(KEY_FEEDER_SAMPLING,
+            DEFAULT_FEEDER_SAMPLING.name()));
+   }
+   
    /**
     * @param active
     * @return
@@ -18,13 +18,21 @@
 
 package shuffle.fwk;
 
+import shuffle.fwk.config.provider.BoardManagerProvider;
 import shuffle.fwk.config.provider.ConfigFactoryProvider;
+import shuffle.fwk.config.provider.EntryModeManagerProvider;
+import shuffle.fwk.config.provider.PreferencesManagerProvider;
+import shuffle.fwk.config.provider.TeamManagerProvider;
 import shuffle.fwk.data.simulation.SimulationUser;
+import shuffle.fwk.gui.user.PaintsIndicatorUser;
+import shuffle.fwk.service.movepreferences.MovePreferencesServiceUser;
 
 /**
  * @author Andrew Meyers
  *
  */
-public interface ShuffleModelUser extends SimulationUser, ConfigFactoryProvider {
+public interface ShuffleModelUser extends SimulationUser, ConfigFactoryProvider, PreferencesManagerProvider,
+      MovePreferencesServiceUser, PaintsIndicatorUser, EntryModeManagerProvider, BoardManagerProvider,
+      TeamManagerProvider {
    
 }
@@ -0,0 +1,353 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.fwk.batch;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang3.StringUtils;
+
+import shuffle.fwk.ShuffleController;
+import shuffle.fwk.config.ConfigFactory;
+import shuffle.fwk.config.manager.BoardManager;
+import shuffle.fwk.data.Board;
+import shuffle.fwk.data.Stage;
+import shuffle.fwk.data.Team;
+import shuffle.fwk.data.simulation.SimulationCore;
+import shuffle.fwk.data.simulation.SimulationRequest;
+import shuffle.fwk.data.simulation.SimulationResult;
+import shuffle.fwk.data.simulation.util.FeederSampling;
+import shuffle.fwk.data.simulation.util.NumberSpan;
+import shuffle.fwk.data.simulation.util.SimulationAcceptor;
+
+/**
+ * Simulates the default board of every stage that has one, with the team configured for that
+ * stage, without any user interface. The best move for each is written out as a line of CSV or
+ * JSON, along with how long it took, in stage order as the simulations finish. This is meant for
+ * tracking throughput between versions and for building tables of opening moves.
+ * 
+ * <pre>
+ * java -cp "Shuffle Move.jar" shuffle.fwk.batch.BatchEvaluator [options]
+ *   --home DIR          The configuration folder, as for the program itself
+ *   --out FILE          Where to write, standard output by default
+ *   --format csv|jsonl  The output format, by default from the file's extension or else csv
+ *   --stages A,B,...    Only these stages, by name
+ *   --threads N         How many simulations run at once
+ *   --feeders N         The number of feeders for each move, 50 by default
+ *   --sampling MODE     RANDOM or STRATIFIED
+ *   --exact             Simulate every outcome of random effects
+ *   --crn               Use common random numbers across moves
+ * </pre>
+ * 
+ * @author Andrew Meyers
+ * 
+ */
+public class BatchEvaluator {
+   private static final Logger LOG = Logger.getLogger(BatchEvaluator.class.getName());
+   
+   private static final String[] COLUMNS = new String[] { "stage", "type", "team", "moves", "bestMove", "score",
+         "gold", "combos", "blocks", "disruptions", "megaProgress", "samples", "millis" };
+   
+   private String home = null;
+   private String outPath = null;
+   private boolean jsonLines = false;
+   private Set<String> stageNames = null;
+   private int threads = Runtime.getRuntime().availableProcessors();
+   private int numFeeders = 50;
+   private FeederSampling sampling = FeederSampling.RANDOM;
+   private boolean exactBranching = false;
+   private boolean commonRandomNumbers = false;
+   
+   /**
+    * One stage's simulation, from when it is started until its line is written.
+    */
+   private static class Run implements SimulationAcceptor {
+      private final Stage stage;
+      private final Team team;
+      private final UUID processUUID = UUID.randomUUID();
+      private final SimulationCore core;
+      private volatile Collection<SimulationResult> results = null;
+      private volatile long acceptedTime = 0L;
+      
+      private Run(SimulationRequest.Builder builder, Stage stage, Board board, Team team) {
+         this.stage = stage;
+         this.team = team;
+         SimulationRequest request = builder.setStage(stage).setBoard(board).setTeam(team)
+               .setProcessUUID(processUUID).setAcceptor(this).build();
+         core = new SimulationCore(request, processUUID);
+      }
+      
+      @Override
+      public void acceptResults(Collection<SimulationResult> results) {
+         acceptedTime = System.currentTimeMillis();
+         this.results = results;
+      }
+      
+      @Override
+      public UUID getAcceptedId() {
+         return processUUID;
+      }
+   }
+   
+   public static void main(String... args) {
+      BatchEvaluator evaluator = new BatchEvaluator();
+      try {
+         evaluator.parseArguments(args);
+      } catch (IllegalArgumentException e) {
+         System.err.println(e.getMessage());
+         System.err.println("Usage: BatchEvaluator [--home DIR] [--out FILE] [--format csv|jsonl] [--stages A,B,...]"
+               + " [--threads N] [--feeders N] [--sampling RANDOM|STRATIFIED] [--exact] [--crn]");
+         System.exit(1);
+      }
+      try {
+         evaluator.evaluate();
+      } catch (IOException e) {
+         System.err.println(e.getLocalizedMessage());
+         System.exit(1);
+      }
+      System.exit(0);
+   }
+   
+   private void parseArguments(String... args) {
+      String format = null;
+      for (int i = 0; i < args.length; i++) {
+         String arg = args[i];
+         if (arg.equals("--exact")) {
+            exactBranching = true;
+         } else if (arg.equals("--crn")) {
+            commonRandomNumbers = true;
+         } else if (i + 1 < args.length) {
+            String value = args[++i];
+            if (arg.equals("--home")) {
+               home = value;
+            } else if (arg.equals("--out")) {
+               outPath = new File(value).getAbsolutePath();
+            } else if (arg.equals("--format")) {
+               format = value;
+            } else if (arg.equals("--stages")) {
+               stageNames = new HashSet<String>(Arrays.asList(value.split(",")));
+            } else if (arg.equals("--threads")) {
+               threads = parsePositive(arg, value);
+            } else if (arg.equals("--feeders")) {
+               numFeeders = parsePositive(arg, value);
+            } else if (arg.equals("--sampling")) {
+               sampling = FeederSampling.getSampling(value);
+            } else {
+               throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+         } else {
+            throw new IllegalArgumentException("Missing value for: " + arg);
+         }
+      }
+      if (format == null) {
+         jsonLines = outPath != null && outPath.endsWith(".jsonl");
+      } else if (format.equals("jsonl") || format.equals("csv")) {
+         jsonLines = format.equals("jsonl");
+      } else {
+         throw new IllegalArgumentException("Unknown format: " + format);
+      }
+   }
+   
+   private static int parsePositive(String arg, String value) {
+      try {
+         int ret = Integer.parseInt(value);
+         if (ret > 0) {
+            return ret;
+         }
+      } catch (NumberFormatException e) {
+         // Reported below
+      }
+      throw new IllegalArgumentException(arg + " needs a positive number, not: " + value);
+   }
+   
+   /**
+    * Simulates every selected stage and writes out the results. At most twice as many simulations
+    * as there are threads are in progress at once, and each is created on this thread since the
+    * configuration is not safe to read from several at a time.
+    * 
+    * @throws IOException
+    *            If the output cannot be written.
+    */
+   public void evaluate() throws IOException {
+      ShuffleController.setUserHome(home == null ? System.getProperty("user.home") + File.separator + "Shuffle-Move"
+            : home);
+      ConfigFactory factory = new ConfigFactory();
+      BoardManager boardManager = new BoardManager(factory);
+      List<Stage> stages = getStages(factory, boardManager);
+      SimulationRequest.Builder builder = SimulationRequest.builder(factory).setNumFeeders(numFeeders)
+            .setFeederSampling(sampling).setExactBranching(exactBranching)
+            .setCommonRandomNumbers(commonRandomNumbers);
+      ForkJoinPool pool = new ForkJoinPool(threads);
+      long start = System.currentTimeMillis();
+      try (PrintWriter out = getWriter()) {
+         if (!jsonLines) {
+            out.println(StringUtils.join(COLUMNS, ','));
+         }
+         Deque<Run> running = new ArrayDeque<Run>();
+         for (Stage stage : stages) {
+            if (running.size() >= threads * 2) {
+               write(out, finish(running.poll(), factory));
+            }
+            boardManager.setStage(stage);
+            boardManager.loadBoardForStage(stage, true);
+            Run run = new Run(builder, stage, boardManager.getBoard(), factory.getTeamManager().getTeamForStage(stage));
+            pool.execute(run.core);
+            running.add(run);
+         }
+         while (!running.isEmpty()) {
+            write(out, finish(running.poll(), factory));
+         }
+      } finally {
+         pool.shutdown();
+      }
+      long time = System.currentTimeMillis() - start;
+      LOG.info(String.format("Evaluated %d boards in %dms, %.2f boards per second.", stages.size(), time,
+            stages.size() * 1000.0 / Math.max(1, time)));
+   }
+   
+   private PrintWriter getWriter() throws IOException {
+      if (outPath == null) {
+         return new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), true);
+      }
+      File file = new File(outPath).getAbsoluteFile();
+      if (file.getParentFile() != null) {
+         file.getParentFile().mkdirs();
+      }
+      return new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), true);
+   }
+   
+   /**
+    * @param factory
+    * @param boardManager
+    * @return Every stage with a bundled default board, limited to the chosen stages if any were.
+    */
+   private List<Stage> getStages(ConfigFactory factory, BoardManager boardManager) {
+      List<Stage> ret = new ArrayList<Stage>();
+      for (Stage stage : factory.getStageManager().getAllStages()) {
+         if ((stageNames == null || stageNames.contains(stage.getName())) && boardManager.hasDefaultBoard(stage)) {
+            ret.add(stage);
+         }
+      }
+      return ret;
+   }
+   
+   /**
+    * Waits for the given run to finish.
+    * 
+    * @param run
+    * @param factory
+    * @return The values for its line, in the order of {@link #COLUMNS}.
+    */
+   private static List<Object> finish(Run run, ConfigFactory factory) {
+      run.core.join();
+      List<Object> values = new ArrayList<Object>(COLUMNS.length);
+      values.add(run.stage.getName());
+      values.add(run.stage.getType().toString());
+      values.add(StringUtils.join(run.team.getNames(), ' '));
+      Collection<SimulationResult> results = run.results;
+      if (results == null || results.isEmpty()) {
+         values.add(0);
+         return values;
+      }
+      TreeSet<SimulationResult> sorted = new TreeSet<SimulationResult>(factory.getGradingModeManager()
+            .getDefaultGradingMode().getGradingMetric());
+      sorted.addAll(results);
+      SimulationResult best = sorted.first();
+      values.add(results.size());
+      values.add(best.getMove());
+      for (NumberSpan span : Arrays.asList(best.getNetScore(), best.getNetGold(), best.getCombosCleared(),
+            best.getBlocksCleared(), best.getDisruptionsCleared(), best.getProgress())) {
+         values.add(span.getAverage());
+      }
+      values.add(best.getSampleCount());
+      values.add(run.acceptedTime - best.getStartTime());
+      return values;
+   }
+   
+   private void write(PrintWriter out, List<Object> values) {
+      StringBuilder sb = new StringBuilder();
+      if (jsonLines) {
+         sb.append('{');
+         for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+               sb.append(',');
+            }
+            sb.append('"').append(COLUMNS[i]).append("\":").append(toJson(values.get(i)));
+         }
+         sb.append('}');
+      } else {
+         for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) {
+               sb.append(',');
+            }
+            if (i < values.size()) {
+               sb.append(toCsv(values.get(i)));
+            }
+         }
+      }
+      out.println(sb.toString());
+   }
+   
+   static String toJson(Object value) {
+      if (value instanceof Number) {
+         return value.toString();
+      } else if (value instanceof List) {
+         List<String> items = new ArrayList<String>();
+         for (Object item : (List<?>) value) {
+            items.add(toJson(item));
+         }
+         return '[' + StringUtils.join(items, ',') + ']';
+      }
+      StringBuilder sb = new StringBuilder("\"");
+      for (char c : String.valueOf(value).toCharArray()) {
+         if (c == '"' || c == '\\') {
+            sb.append('\\').append(c);
+         } else if (c < ' ') {
+            sb.append(String.format("\\u%04x", (int) c));
+         } else {
+            sb.append(c);
+         }
+      }
+      return sb.append('"').toString();
+   }
+   
+   private static String toCsv(Object value) {
+      String ret = value instanceof List ? StringUtils.join((List<?>) value, ' ') : String.valueOf(value);
+      if (ret.contains(",") || ret.contains("\"") || ret.contains("\n")) {
+         ret = '"' + ret.replace("\"", "\"\"") + '"';
+      }
+      return ret;
+   }
+}
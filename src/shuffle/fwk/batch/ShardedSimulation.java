@@ -0,0 +1,381 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.fwk.batch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.IOUtils;
+
+import shuffle.fwk.ShuffleController;
+import shuffle.fwk.config.ConfigFactory;
+import shuffle.fwk.data.simulation.SimulationAccumulator;
+import shuffle.fwk.data.simulation.SimulationCore;
+import shuffle.fwk.data.simulation.SimulationRequest;
+import shuffle.fwk.data.simulation.SimulationResult;
+import shuffle.fwk.data.simulation.util.FeederSampling;
+
+/**
+ * Splits the simulation of a board across several worker processes on this machine, each a
+ * {@link SimulationWorker} with its own heap, and merges what they send back into the same
+ * results a single simulation would give. The work is split either by move, so that each worker
+ * simulates every feeder for some of the moves, or by feeder, so that each simulates a share of the
+ * feeders for every move. The workers are started once and kept for every board after.
+ * 
+ * <pre>
+ * java -cp "Shuffle Move.jar" shuffle.fwk.batch.ShardedSimulation [options] &lt; request.txt
+ *   --home DIR          The configuration folder, as for the program itself
+ *   --workers N         How many worker processes to use, 2 by default
+ *   --partition MODE    MOVES or FEEDERS, MOVES by default
+ *   --threads N         The parallelism within each worker
+ *   --worker-heap SIZE  The maximum heap of each worker, such as 2g
+ *   --feeders N         The number of feeders for requests without one, 50 by default
+ *   --sampling MODE     RANDOM or STRATIFIED
+ *   --exact             Simulate every outcome of random effects
+ *   --crn               Use common random numbers across moves
+ *   --seed N            Draw every random number from this seed, to give the same results as a
+ *                       single process simulating the request with it
+ * </pre>
+ * 
+ * The request is read as by {@link SimulationRequestReader}, and the results are written as by
+ * {@link SimulationServer}.
+ * 
+ * @author Andrew Meyers
+ * 
+ */
+public class ShardedSimulation implements AutoCloseable {
+   private static final Logger LOG = Logger.getLogger(ShardedSimulation.class.getName());
+   
+   public enum Partition {
+      MOVES, FEEDERS;
+   }
+   
+   /**
+    * The options of the coordinator, of which all but the number of workers and the partition are
+    * passed on to the workers.
+    */
+   static class Options {
+      private String home = System.getProperty("user.home") + File.separator + "Shuffle-Move";
+      private int workers = 2;
+      private Partition partition = Partition.MOVES;
+      private int threads = 0;
+      private String workerHeap = null;
+      private int numFeeders = 50;
+      private FeederSampling sampling = FeederSampling.RANDOM;
+      private boolean exactBranching = false;
+      private boolean commonRandomNumbers = false;
+      private Long seed = null;
+      
+      Options(String... args) {
+         for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--exact")) {
+               exactBranching = true;
+            } else if (arg.equals("--crn")) {
+               commonRandomNumbers = true;
+            } else if (i + 1 < args.length) {
+               String value = args[++i];
+               if (arg.equals("--home")) {
+                  home = value;
+               } else if (arg.equals("--workers")) {
+                  workers = parsePositive(arg, value);
+               } else if (arg.equals("--partition")) {
+                  try {
+                     partition = Partition.valueOf(value.toUpperCase());
+                  } catch (IllegalArgumentException e) {
+                     throw new IllegalArgumentException("Unknown partition: " + value);
+                  }
+               } else if (arg.equals("--threads")) {
+                  threads = parsePositive(arg, value);
+               } else if (arg.equals("--worker-heap")) {
+                  workerHeap = value;
+               } else if (arg.equals("--feeders")) {
+                  numFeeders = parsePositive(arg, value);
+               } else if (arg.equals("--sampling")) {
+                  sampling = FeederSampling.getSampling(value);
+               } else if (arg.equals("--seed")) {
+                  try {
+                     seed = Long.parseLong(value);
+                  } catch (NumberFormatException e) {
+                     throw new IllegalArgumentException(arg + " needs a number, not: " + value);
+                  }
+               } else {
+                  throw new IllegalArgumentException("Unknown option: " + arg);
+               }
+            } else {
+               throw new IllegalArgumentException("Missing value for: " + arg);
+            }
+         }
+      }
+      
+      private static int parsePositive(String arg, String value) {
+         try {
+            int ret = Integer.parseInt(value);
+            if (ret > 0) {
+               return ret;
+            }
+         } catch (NumberFormatException e) {
+            // Reported below
+         }
+         throw new IllegalArgumentException(arg + " needs a positive number, not: " + value);
+      }
+      
+      String getHome() {
+         return home;
+      }
+      
+      int getThreads() {
+         return threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / workers);
+      }
+      
+      SimulationRequest.Builder getTemplate(ConfigFactory factory) {
+         return SimulationRequest.builder(factory).setNumFeeders(numFeeders).setFeederSampling(sampling)
+               .setExactBranching(exactBranching).setCommonRandomNumbers(commonRandomNumbers).setSeed(seed);
+      }
+      
+      /**
+       * @return The command that starts a worker with these options.
+       */
+      List<String> getWorkerCommand() {
+         List<String> ret = new ArrayList<String>();
+         ret.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+         if (workerHeap != null) {
+            ret.add("-Xmx" + workerHeap);
+         }
+         ret.add("-Djava.awt.headless=true");
+         ret.add("-cp");
+         ret.add(System.getProperty("java.class.path"));
+         ret.add(SimulationWorker.class.getName());
+         ret.addAll(Arrays.asList("--home", new File(home).getAbsolutePath(), "--threads",
+               String.valueOf(getThreads()), "--feeders", String.valueOf(numFeeders), "--sampling", sampling.name()));
+         if (exactBranching) {
+            ret.add("--exact");
+         }
+         if (commonRandomNumbers) {
+            ret.add("--crn");
+         }
+         if (seed != null) {
+            ret.addAll(Arrays.asList("--seed", seed.toString()));
+         }
+         return ret;
+      }
+   }
+   
+   /**
+    * A worker process and the pipes to it.
+    */
+   private static class Worker {
+      private final Process process;
+      private final PrintWriter in;
+      private final BufferedReader out;
+      
+      private Worker(List<String> command) throws IOException {
+         process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+         in = new PrintWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+         out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+      }
+   }
+   
+   private final Options options;
+   private final ConfigFactory factory;
+   private final SimulationRequestReader reader;
+   private final List<Worker> workers = new ArrayList<Worker>();
+   
+   public static void main(String... args) {
+      String text;
+      try {
+         text = IOUtils.toString(System.in, StandardCharsets.UTF_8);
+      } catch (IOException e) {
+         System.err.println(e.getLocalizedMessage());
+         System.exit(1);
+         return;
+      }
+      try (ShardedSimulation simulation = new ShardedSimulation(args)) {
+         long start = System.currentTimeMillis();
+         Collection<SimulationResult> results = simulation.simulate(text);
+         long millis = System.currentTimeMillis() - start;
+         PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+         for (SimulationResult result : results) {
+            out.print(SimulationServer.toJson(result, millis));
+         }
+         out.flush();
+      } catch (IllegalArgumentException e) {
+         System.err.println(e.getMessage());
+         System.err.println("Usage: ShardedSimulation [--home DIR] [--workers N] [--partition MOVES|FEEDERS]"
+               + " [--threads N] [--worker-heap SIZE] [--feeders N] [--sampling RANDOM|STRATIFIED]"
+               + " [--exact] [--crn] [--seed N] < request.txt");
+         System.exit(1);
+      } catch (IOException e) {
+         System.err.println(e.getLocalizedMessage());
+         System.exit(1);
+      }
+      System.exit(0);
+   }
+   
+   /**
+    * Loads the configuration and starts the workers.
+    * 
+    * @param args
+    *           The options, as for {@link #main(String...)}.
+    * @throws IllegalArgumentException
+    *            If any option is not understood.
+    * @throws IOException
+    *            If a worker cannot be started.
+    */
+   public ShardedSimulation(String... args) throws IOException {
+      options = new Options(args);
+      ShuffleController.setUserHome(options.getHome());
+      factory = new ConfigFactory();
+      reader = new SimulationRequestReader(factory);
+      List<String> command = options.getWorkerCommand();
+      try {
+         for (int i = 0; i < options.workers; i++) {
+            workers.add(new Worker(command));
+         }
+      } catch (IOException e) {
+         close();
+         throw e;
+      }
+   }
+   
+   /**
+    * Simulates the given request across the workers. Only one request is simulated at a time.
+    * 
+    * @param text
+    *           The request, as read by {@link SimulationRequestReader}.
+    * @return The results for every move, best first.
+    * @throws IllegalArgumentException
+    *            If the request cannot be read.
+    * @throws IOException
+    *            If any worker fails.
+    */
+   public synchronized Collection<SimulationResult> simulate(String text) throws IOException {
+      long startTime = System.currentTimeMillis();
+      Map<String, String> values = SimulationRequestReader.parse(text);
+      SimulationRequest request = reader.apply(values, options.getTemplate(factory)).build();
+      SimulationCore core = new SimulationCore(request, request.getProcessUUID());
+      Collection<SimulationResult> settled = core.computeWithoutMove();
+      if (settled != null) {
+         return settled;
+      }
+      List<List<Integer>> moves = core.getPossibleMoves(request.getBoard());
+      int feeders = request.getPreferredNumFeeders();
+      int numWorkers = workers.size();
+      List<Worker> sent = new ArrayList<Worker>();
+      int firstFeeder = 0;
+      for (int i = 0; i < numWorkers; i++) {
+         List<List<Integer>> shardMoves = moves;
+         int shardFeeders = feeders;
+         if (options.partition == Partition.MOVES) {
+            shardMoves = new ArrayList<List<Integer>>();
+            for (int m = i; m < moves.size(); m += numWorkers) {
+               shardMoves.add(moves.get(m));
+            }
+         } else {
+            shardFeeders = feeders / numWorkers + (i < feeders % numWorkers ? 1 : 0);
+         }
+         if (shardMoves.isEmpty() || shardFeeders <= 0) {
+            continue;
+         }
+         Map<String, String> job = new LinkedHashMap<String, String>(values);
+         job.put(SimulationRequestReader.KEY_FEEDERS, String.valueOf(feeders));
+         job.put(SimulationWorker.KEY_SHARD_MOVES, SimulationWorker.formatMoves(shardMoves));
+         if (shardFeeders < feeders) {
+            job.put(SimulationWorker.KEY_SHARD_FEEDERS, firstFeeder + "," + shardFeeders);
+            firstFeeder += shardFeeders;
+         }
+         Worker worker = workers.get(i);
+         for (Map.Entry<String, String> entry : job.entrySet()) {
+            worker.in.println(entry.getKey() + " " + entry.getValue());
+         }
+         worker.in.println(SimulationWorker.END);
+         worker.in.flush();
+         sent.add(worker);
+      }
+      // Every reply is read, even after a failure, so that the workers can be used again.
+      Map<List<Integer>, SimulationAccumulator> merged = new LinkedHashMap<List<Integer>, SimulationAccumulator>();
+      IOException failure = null;
+      for (Worker worker : sent) {
+         try {
+            Map<List<Integer>, SimulationAccumulator> reply = SimulationWorker.readAccumulators(worker.out,
+                  factory.getSpeciesManager());
+            for (Map.Entry<List<Integer>, SimulationAccumulator> entry : reply.entrySet()) {
+               // A move that is not random has the same outcome in every share, so only the first counts.
+               if (entry.getValue().isRandom() || !merged.containsKey(entry.getKey())) {
+                  merged.computeIfAbsent(entry.getKey(), (move) -> new SimulationAccumulator()).merge(entry.getValue());
+               }
+            }
+         } catch (IOException e) {
+            failure = failure == null ? e : failure;
+         }
+      }
+      if (failure != null) {
+         throw failure;
+      }
+      TreeSet<SimulationResult> ret = new TreeSet<SimulationResult>(factory.getGradingModeManager()
+            .getDefaultGradingMode().getGradingMetric());
+      for (Map.Entry<List<Integer>, SimulationAccumulator> entry : merged.entrySet()) {
+         SimulationAccumulator accumulator = entry.getValue();
+         accumulator.normalize();
+         SimulationResult result = accumulator.getResult(entry.getKey(), request.getProcessUUID(), startTime,
+               request.getFeederSampling());
+         if (result != null) {
+            ret.add(result);
+         }
+      }
+      LOG.fine("Merged " + merged.size() + " moves from " + sent.size() + " workers in "
+            + (System.currentTimeMillis() - startTime) + "ms");
+      return ret;
+   }
+   
+   /**
+    * Stops the workers, by closing their input and then forcibly if they do not stop promptly.
+    */
+   @Override
+   public void close() {
+      for (Worker worker : workers) {
+         worker.in.close();
+      }
+      for (Worker worker : workers) {
+         try {
+            if (!worker.process.waitFor(5, TimeUnit.SECONDS)) {
+               worker.process.destroyForcibly();
+            }
+         } catch (InterruptedException e) {
+            worker.process.destroyForcibly();
+            Thread.currentThread().interrupt();
+         }
+      }
+      workers.clear();
+   }
+}
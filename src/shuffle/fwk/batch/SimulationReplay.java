@@ -0,0 +1,500 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.fwk.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang3.StringUtils;
+
+import shuffle.fwk.ShuffleController;
+import shuffle.fwk.config.ConfigEntry;
+import shuffle.fwk.config.ConfigFactory;
+import shuffle.fwk.config.ConfigManager;
+import shuffle.fwk.config.EntryType;
+import shuffle.fwk.config.loader.BoardConfigLoader;
+import shuffle.fwk.config.manager.EffectManager;
+import shuffle.fwk.config.manager.RosterManager;
+import shuffle.fwk.config.manager.SpeciesManager;
+import shuffle.fwk.data.Board;
+import shuffle.fwk.data.Effect;
+import shuffle.fwk.data.Species;
+import shuffle.fwk.data.Stage;
+import shuffle.fwk.data.Team;
+import shuffle.fwk.data.simulation.SimulationCore;
+import shuffle.fwk.data.simulation.SimulationRequest;
+import shuffle.fwk.data.simulation.SimulationResult;
+import shuffle.fwk.data.simulation.SimulationUser;
+import shuffle.fwk.data.simulation.util.FeederSampling;
+import shuffle.fwk.data.simulation.util.NumberSpan;
+import shuffle.fwk.data.simulation.util.SimulationAcceptor;
+
+/**
+ * Captures everything a simulation was given, so that it can be run again with exactly the same
+ * results on another machine. A replay is a request as read by {@link SimulationRequestReader},
+ * with the seed and the rest of the simulation settings added:
+ * 
+ * <pre>
+ * SEED -4962768465676381896   (optional, the run is not repeatable without one)
+ * HEIGHT 0
+ * SAMPLING STRATIFIED
+ * EXACT false
+ * CRN false
+ * DISABLED SWARM,MIND_ZAP     (optional)
+ * THRESHOLD 0
+ * POWERUP false
+ * MOBILE false
+ * CONFIG SPECIES SPECIES Pikachu 200 50 ELECTRIC ...
+ * </pre>
+ * 
+ * Each CONFIG line is an entry from the species, roster, effect or stage configuration, written as
+ * it would be in that file, so that the replay does not depend on how the machine running it is
+ * configured. Only the entries for the stage and for the species on the team or the board are
+ * kept. The latency target and refinement are not replayed, only the first results are.
+ * <p>
+ * Replays are run with:
+ * 
+ * <pre>
+ * java -cp "Shuffle Move.jar" shuffle.fwk.batch.SimulationReplay [options] FILE...
+ *   --home DIR          The configuration folder, as for the program itself
+ *   --threads N         How many threads each simulation uses
+ *   --check             Run each replay twice, and fail if the results differ
+ * </pre>
+ * 
+ * The results of each move are written as a line of JSON, in move order, and how long each replay
+ * took is logged. The files can then be used as a fixed set of benchmarks between versions.
+ * 
+ * @author Andrew Meyers
+ * 
+ */
+public class SimulationReplay {
+   private static final Logger LOG = Logger.getLogger(SimulationReplay.class.getName());
+   
+   public static final String KEY_SEED = "SEED";
+   public static final String KEY_HEIGHT = "HEIGHT";
+   public static final String KEY_SAMPLING = "SAMPLING";
+   public static final String KEY_EXACT = "EXACT";
+   public static final String KEY_CRN = "CRN";
+   public static final String KEY_DISABLED = "DISABLED";
+   public static final String KEY_THRESHOLD = "THRESHOLD";
+   public static final String KEY_POWER_UP = "POWERUP";
+   public static final String KEY_MOBILE = "MOBILE";
+   public static final String KEY_CONFIG = "CONFIG";
+   
+   public static final String CONFIG_SPECIES = "SPECIES";
+   public static final String CONFIG_ROSTER = "ROSTER";
+   public static final String CONFIG_EFFECTS = "EFFECTS";
+   public static final String CONFIG_STAGES = "STAGES";
+   
+   private static final String[] COLUMNS = new String[] { "move", "score", "minScore", "maxScore", "gold", "combos",
+         "blocks", "disruptions", "megaProgress", "samples" };
+   
+   private String home = null;
+   private int threads = Runtime.getRuntime().availableProcessors();
+   private boolean check = false;
+   private final List<String> files = new ArrayList<String>();
+   
+   /**
+    * A replay's simulation, which keeps its first results.
+    */
+   private static class Run implements SimulationAcceptor {
+      private final UUID processUUID = UUID.randomUUID();
+      private volatile Collection<SimulationResult> results = null;
+      
+      @Override
+      public void acceptResults(Collection<SimulationResult> results) {
+         if (this.results == null) {
+            this.results = results;
+         }
+      }
+      
+      @Override
+      public UUID getAcceptedId() {
+         return processUUID;
+      }
+   }
+   
+   /**
+    * Writes the replay of what the given user would simulate now. This reads the configuration, so
+    * it must be used from the thread that owns it.
+    * 
+    * @param user
+    * @param out
+    * @throws IOException
+    *            If the replay cannot be written.
+    */
+   public static void write(SimulationUser user, Writer out) throws IOException {
+      List<String> lines = new ArrayList<String>();
+      if (user.getSeed() != null) {
+         lines.add(KEY_SEED + " " + user.getSeed());
+      }
+      Stage stage = user.getCurrentStage();
+      Board board = user.getBoard();
+      lines.add(BoardConfigLoader.STAGE + " " + stage.getName());
+      for (int row = 1; row <= Board.NUM_ROWS; row++) {
+         List<String> names = new ArrayList<String>();
+         List<String> frozen = new ArrayList<String>();
+         List<String> clouded = new ArrayList<String>();
+         boolean anyFrozen = false;
+         boolean anyClouded = false;
+         for (int col = 1; col <= Board.NUM_COLS; col++) {
+            names.add(board.getSpeciesAt(row, col).getName());
+            frozen.add(String.valueOf(board.isFrozenAt(row, col)));
+            clouded.add(String.valueOf(board.isCloudedAt(row, col)));
+            anyFrozen |= board.isFrozenAt(row, col);
+            anyClouded |= board.isCloudedAt(row, col);
+         }
+         lines.add(BoardConfigLoader.getRowKey(row) + " " + StringUtils.join(names, ','));
+         if (anyFrozen) {
+            lines.add(BoardConfigLoader.getFrozenRowKey(row) + " " + StringUtils.join(frozen, ','));
+         }
+         if (anyClouded) {
+            lines.add(BoardConfigLoader.getCloudedRowKey(row) + " " + StringUtils.join(clouded, ','));
+         }
+      }
+      lines.add(BoardConfigLoader.KEY_MEGA_PROGRESS + " " + user.getMegaProgress());
+      if (!board.getStatus().isNone()) {
+         lines.add(BoardConfigLoader.KEY_STATUS + " " + board.getStatus().name());
+         lines.add(BoardConfigLoader.KEY_STATUS_DURATION + " " + board.getStatusDuration());
+      }
+      Team team = user.getCurrentTeam();
+      List<String> nonSupport = new ArrayList<String>();
+      for (String name : team.getNames()) {
+         if (team.isNonSupport(name)) {
+            nonSupport.add(name);
+         }
+      }
+      if (!team.getNames().isEmpty()) {
+         lines.add(SimulationRequestReader.KEY_TEAM + " " + StringUtils.join(team.getNames(), ','));
+      }
+      if (user.isMegaAllowed() && team.getMegaSlotName() != null) {
+         lines.add(SimulationRequestReader.KEY_MEGA + " " + team.getMegaSlotName());
+      }
+      if (!nonSupport.isEmpty()) {
+         lines.add(SimulationRequestReader.KEY_NON_SUPPORT + " " + StringUtils.join(nonSupport, ','));
+      }
+      lines.add(SimulationRequestReader.KEY_HEALTH + " " + user.getRemainingHealth());
+      lines.add(SimulationRequestReader.KEY_MOVES + " " + user.getRemainingMoves());
+      lines.add(SimulationRequestReader.KEY_FEEDERS + " " + Math.max(1, user.getPreferredNumFeeders()));
+      lines.add(KEY_HEIGHT + " " + Math.max(0, user.getPreferredFeederHeight()));
+      FeederSampling sampling = user.getFeederSampling();
+      lines.add(KEY_SAMPLING + " " + (sampling == null ? FeederSampling.RANDOM : sampling).name());
+      lines.add(KEY_EXACT + " " + user.isExactBranching());
+      lines.add(KEY_CRN + " " + user.isCommonRandomNumbers());
+      Collection<Effect> disabled = user.getDisabledEffects();
+      if (disabled != null && !disabled.isEmpty()) {
+         lines.add(KEY_DISABLED + " " + StringUtils.join(disabled, ','));
+      }
+      lines.add(KEY_THRESHOLD + " " + user.getEffectThreshold());
+      lines.add(KEY_POWER_UP + " " + user.getAttackPowerUp());
+      lines.add(KEY_MOBILE + " " + user.isMobileMode());
+      lines.addAll(getConfigLines(user, stage, board, team));
+      for (String line : lines) {
+         out.write(line);
+         out.write(System.lineSeparator());
+      }
+      out.flush();
+   }
+   
+   /**
+    * @return The CONFIG lines for every entry the simulation may read for the stage and for the
+    *         species on the team or the board.
+    * @throws IOException
+    *            If an entry cannot be written.
+    */
+   private static Collection<String> getConfigLines(SimulationUser user, Stage stage, Board board, Team team)
+         throws IOException {
+      SpeciesManager speciesManager = user.getSpeciesManager();
+      RosterManager rosterManager = user.getRosterManager();
+      EffectManager effectManager = user.getEffectManager();
+      Set<Species> species = new LinkedHashSet<Species>(team.getSpecies(speciesManager));
+      species.addAll(board.getSpeciesPresent());
+      species.removeAll(Species.FIXED_SPECIES);
+      Set<String> ret = new LinkedHashSet<String>();
+      for (Species s : species) {
+         addConfigLines(ret, CONFIG_SPECIES, speciesManager, Arrays.asList(s.getName()));
+      }
+      for (Species s : species) {
+         addConfigLines(ret, CONFIG_ROSTER, rosterManager, rosterManager.getKeysFor(s));
+      }
+      for (Species s : species) {
+         List<String> keys = new ArrayList<String>();
+         for (Effect effect : s.getEffects()) {
+            keys.add(effect.toString());
+         }
+         if (s.getMegaName() != null) {
+            keys.add(s.getMegaEffect().toString());
+            keys.add(effectManager.getMegaThresholdKey(s));
+            keys.add(effectManager.getMegaSpeedupKey(s));
+         }
+         addConfigLines(ret, CONFIG_EFFECTS, effectManager, keys);
+      }
+      ret.add(getConfigLine(CONFIG_STAGES, stage.getName(), new ConfigEntry(EntryType.STAGE, stage)));
+      return ret;
+   }
+   
+   private static void addConfigLines(Set<String> lines, String managerName, ConfigManager manager,
+         List<String> keys) throws IOException {
+      for (String key : keys) {
+         for (EntryType type : EntryType.values()) {
+            ConfigEntry entry = manager.getEntry(type, key);
+            if (entry != null) {
+               lines.add(getConfigLine(managerName, key, entry));
+            }
+         }
+      }
+   }
+   
+   private static String getConfigLine(String managerName, String key, ConfigEntry entry) throws IOException {
+      try {
+         return String.format("%s %s %s %s %s", KEY_CONFIG, managerName, entry.getEntryType(), key,
+               entry.getSaveString());
+      } catch (Exception e) {
+         throw new IOException("Cannot write the config entry " + key + ": " + entry, e);
+      }
+   }
+   
+   /**
+    * Reads a replay, applying its CONFIG lines to the given configuration. This must be used from
+    * the thread that owns the configuration.
+    * 
+    * @param text
+    *           The replay
+    * @param factory
+    * @return A builder for the replayed request, with no latency target or refinement.
+    * @throws IllegalArgumentException
+    *            If anything in the replay is missing or unknown.
+    */
+   public static SimulationRequest.Builder read(String text, ConfigFactory factory) {
+      StringBuilder request = new StringBuilder();
+      for (String line : text.split("\r?\n")) {
+         String trimmed = line.trim();
+         if (trimmed.startsWith(KEY_CONFIG + " ")) {
+            applyConfig(trimmed, factory);
+         } else {
+            request.append(trimmed).append('\n');
+         }
+      }
+      Map<String, String> values = SimulationRequestReader.parse(request.toString());
+      SimulationRequest.Builder builder = SimulationRequest.builder(factory);
+      new SimulationRequestReader(factory).apply(values, builder);
+      String seed = values.get(KEY_SEED);
+      if (seed != null) {
+         try {
+            builder.setSeed(Long.parseLong(seed));
+         } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(KEY_SEED + " needs a number, not: " + seed);
+         }
+      }
+      builder.setFeederHeight(SimulationRequestReader.getInt(values, KEY_HEIGHT, 0));
+      builder.setFeederSampling(FeederSampling.getSampling(values.get(KEY_SAMPLING)));
+      builder.setExactBranching(Boolean.parseBoolean(values.get(KEY_EXACT)));
+      builder.setCommonRandomNumbers(Boolean.parseBoolean(values.get(KEY_CRN)));
+      List<Effect> disabled = new ArrayList<Effect>();
+      String disabledNames = values.get(KEY_DISABLED);
+      if (disabledNames != null) {
+         for (String name : disabledNames.split(",")) {
+            try {
+               disabled.add(Effect.valueOf(name));
+            } catch (IllegalArgumentException e) {
+               throw new IllegalArgumentException("Unknown effect: " + name);
+            }
+         }
+      }
+      builder.setDisabledEffects(disabled);
+      builder.setEffectThreshold(SimulationRequestReader.getInt(values, KEY_THRESHOLD, 0));
+      builder.setAttackPowerUp(Boolean.parseBoolean(values.get(KEY_POWER_UP)));
+      if (values.containsKey(KEY_MOBILE)) {
+         builder.setMobileMode(Boolean.parseBoolean(values.get(KEY_MOBILE)));
+      }
+      return builder.setTargetLatency(0).setRefinementLimit(0);
+   }
+   
+   private static void applyConfig(String line, ConfigFactory factory) {
+      String[] parts = line.split(" ", 5);
+      if (parts.length < 5) {
+         throw new IllegalArgumentException("No value for line: " + line);
+      }
+      ConfigManager manager;
+      if (parts[1].equals(CONFIG_SPECIES)) {
+         manager = factory.getSpeciesManager();
+      } else if (parts[1].equals(CONFIG_ROSTER)) {
+         manager = factory.getRosterManager();
+      } else if (parts[1].equals(CONFIG_EFFECTS)) {
+         manager = factory.getEffectManager();
+      } else if (parts[1].equals(CONFIG_STAGES)) {
+         manager = factory.getStageManager();
+      } else {
+         throw new IllegalArgumentException("Unknown configuration: " + parts[1]);
+      }
+      ConfigEntry entry;
+      try {
+         entry = ConfigEntry.getEntryFor(parts[2], parts[3], parts[4]);
+      } catch (Exception e) {
+         throw new IllegalArgumentException("Cannot read the config entry: " + line);
+      }
+      manager.setEntry(entry.getEntryType(), parts[3], entry);
+   }
+   
+   public static void main(String... args) {
+      SimulationReplay replay = new SimulationReplay();
+      try {
+         replay.parseArguments(args);
+      } catch (IllegalArgumentException e) {
+         System.err.println(e.getMessage());
+         System.err.println("Usage: SimulationReplay [--home DIR] [--threads N] [--check] FILE...");
+         System.exit(1);
+      }
+      try {
+         System.exit(replay.replayAll() ? 0 : 1);
+      } catch (IOException | IllegalArgumentException e) {
+         System.err.println(e.getLocalizedMessage());
+         System.exit(1);
+      }
+   }
+   
+   private void parseArguments(String... args) {
+      for (int i = 0; i < args.length; i++) {
+         String arg = args[i];
+         if (arg.equals("--check")) {
+            check = true;
+         } else if (arg.equals("--home") || arg.equals("--threads")) {
+            if (i + 1 >= args.length) {
+               throw new IllegalArgumentException("Missing value for: " + arg);
+            }
+            String value = args[++i];
+            if (arg.equals("--home")) {
+               home = value;
+            } else {
+               try {
+                  threads = Integer.parseInt(value);
+               } catch (NumberFormatException e) {
+                  threads = 0;
+               }
+               if (threads <= 0) {
+                  throw new IllegalArgumentException(arg + " needs a positive number, not: " + value);
+               }
+            }
+         } else if (arg.startsWith("--")) {
+            throw new IllegalArgumentException("Unknown option: " + arg);
+         } else {
+            files.add(arg);
+         }
+      }
+      if (files.isEmpty()) {
+         throw new IllegalArgumentException("No replay given.");
+      }
+   }
+   
+   /**
+    * Runs every replay and writes out its results.
+    * 
+    * @return False if checking, and any replay gave different results the second time.
+    * @throws IOException
+    *            If a replay cannot be read.
+    */
+   public boolean replayAll() throws IOException {
+      ShuffleController.setUserHome(home == null ? System.getProperty("user.home") + File.separator + "Shuffle-Move"
+            : home);
+      ConfigFactory factory = new ConfigFactory();
+      ForkJoinPool pool = new ForkJoinPool(threads);
+      boolean ret = true;
+      PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), true);
+      try {
+         for (String file : files) {
+            String text = new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+            SimulationRequest.Builder builder = read(text, factory);
+            List<String> lines = replay(builder, pool, file);
+            if (check && !lines.equals(replay(builder, pool, file))) {
+               System.err.println(file + " gave different results when replayed again.");
+               ret = false;
+            }
+            for (String line : lines) {
+               out.println(line);
+            }
+         }
+      } finally {
+         pool.shutdown();
+      }
+      return ret;
+   }
+   
+   /**
+    * @return The line for each result of one run of the replay, in move order.
+    */
+   private static List<String> replay(SimulationRequest.Builder builder, ForkJoinPool pool, String name) {
+      Run run = new Run();
+      SimulationRequest request = builder.setProcessUUID(run.processUUID).setAcceptor(run).build();
+      long start = System.currentTimeMillis();
+      pool.invoke(new SimulationCore(request, run.processUUID));
+      long time = System.currentTimeMillis() - start;
+      List<SimulationResult> results = new ArrayList<SimulationResult>();
+      if (run.results != null) {
+         results.addAll(run.results);
+      }
+      results.sort((a, b) -> compareMoves(a.getMove(), b.getMove()));
+      LOG.info(String.format("Replayed %s, %d results in %dms.", name, results.size(), time));
+      List<String> ret = new ArrayList<String>(results.size());
+      for (SimulationResult result : results) {
+         NumberSpan score = result.getNetScore();
+         List<Object> values = Arrays.asList(result.getMove(), score.getAverage(), score.getMinimum(),
+               score.getMaximum(), result.getNetGold().getAverage(), result.getCombosCleared().getAverage(),
+               result.getBlocksCleared().getAverage(), result.getDisruptionsCleared().getAverage(),
+               result.getProgress().getAverage(), result.getSampleCount());
+         StringBuilder sb = new StringBuilder("{");
+         for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) {
+               sb.append(',');
+            }
+            sb.append('"').append(COLUMNS[i]).append("\":").append(BatchEvaluator.toJson(values.get(i)));
+         }
+         ret.add(sb.append('}').toString());
+      }
+      return ret;
+   }
+   
+   private static int compareMoves(List<Integer> a, List<Integer> b) {
+      if (a == null || b == null) {
+         return a == null ? b == null ? 0 : -1 : 1;
+      }
+      for (int i = 0; i < Math.min(a.size(), b.size()); i++) {
+         int diff = Integer.compare(a.get(i), b.get(i));
+         if (diff != 0) {
+            return diff;
+         }
+      }
+      return Integer.compare(a.size(), b.size());
+   }
+}
@@ -0,0 +1,235 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.fwk.batch;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import shuffle.fwk.config.ConfigFactory;
+import shuffle.fwk.config.loader.BoardConfigLoader;
+import shuffle.fwk.config.manager.SpeciesManager;
+import shuffle.fwk.data.Board;
+import shuffle.fwk.data.Board.Status;
+import shuffle.fwk.data.Species;
+import shuffle.fwk.data.Stage;
+import shuffle.fwk.data.Team;
+import shuffle.fwk.data.TeamImpl;
+import shuffle.fwk.data.simulation.SimulationRequest;
+
+/**
+ * Reads the text form of a request to simulate one board. Each line is a key and a value separated
+ * by a space, with the same keys as a saved board plus a few for the rest of the request:
+ * 
+ * <pre>
+ * STAGE 001
+ * ROW_1 Pikachu,Air,Metal,Wood,Coin,Air
+ * ... ROW_2 to ROW_6, and optionally FROW_n, CROW_n, MEGA_PROGRESS, STATUS and STATUS_DURATION
+ * TEAM Pikachu,Bulbasaur,Charmander  (optional, the team configured for the stage by default)
+ * MEGA Charmander                    (optional)
+ * NONSUPPORT Bulbasaur               (optional, team members which are not support)
+ * HEALTH 900                         (optional, the stage's health by default)
+ * MOVES 5                            (optional, the stage's moves by default)
+ * FEEDERS 50                         (optional)
+ * DEADLINE 2000                      (optional, in milliseconds)
+ * </pre>
+ * 
+ * Blank lines and lines starting with # are ignored. Parsing the text needs no configuration, but
+ * {@link #apply(Map, SimulationRequest.Builder)} reads the species, stages and teams, so it must be
+ * used from the thread that owns the {@link ConfigFactory}.
+ * 
+ * @author Andrew Meyers
+ * 
+ */
+public class SimulationRequestReader {
+   public static final String KEY_TEAM = "TEAM";
+   public static final String KEY_MEGA = "MEGA";
+   public static final String KEY_NON_SUPPORT = "NONSUPPORT";
+   public static final String KEY_HEALTH = "HEALTH";
+   public static final String KEY_MOVES = "MOVES";
+   public static final String KEY_FEEDERS = "FEEDERS";
+   public static final String KEY_DEADLINE = "DEADLINE";
+   
+   private final ConfigFactory factory;
+   
+   public SimulationRequestReader(ConfigFactory factory) {
+      this.factory = factory;
+   }
+   
+   /**
+    * @param text
+    *           The request
+    * @return The value for each key in the request, in the order they were given.
+    * @throws IllegalArgumentException
+    *            If a line has no value or a key is repeated.
+    */
+   public static Map<String, String> parse(String text) {
+      Map<String, String> ret = new LinkedHashMap<String, String>();
+      for (String line : text.split("\r?\n")) {
+         line = line.trim();
+         if (line.isEmpty() || line.startsWith("#")) {
+            continue;
+         }
+         int split = line.indexOf(' ');
+         if (split <= 0) {
+            throw new IllegalArgumentException("No value for line: " + line);
+         }
+         String key = line.substring(0, split);
+         if (ret.put(key, line.substring(split + 1).trim()) != null) {
+            throw new IllegalArgumentException("Repeated key: " + key);
+         }
+      }
+      return ret;
+   }
+   
+   /**
+    * @param values
+    *           The parsed request
+    * @param key
+    * @param def
+    *           The value if the key is absent
+    * @return The value of the given key as a whole number.
+    * @throws IllegalArgumentException
+    *            If the value is not a whole number.
+    */
+   public static int getInt(Map<String, String> values, String key, int def) {
+      String value = values.get(key);
+      if (value == null) {
+         return def;
+      }
+      try {
+         return Integer.parseInt(value);
+      } catch (NumberFormatException e) {
+         throw new IllegalArgumentException(key + " needs a number, not: " + value);
+      }
+   }
+   
+   /**
+    * Sets the stage, board and team of the given builder from the parsed request, along with the
+    * health, moves and feeders if the request has them.
+    * 
+    * @param values
+    *           The parsed request
+    * @param builder
+    *           The builder to set
+    * @return The given builder
+    * @throws IllegalArgumentException
+    *            If anything in the request is missing or unknown.
+    */
+   public SimulationRequest.Builder apply(Map<String, String> values, SimulationRequest.Builder builder) {
+      String stageName = values.get(BoardConfigLoader.STAGE);
+      Stage stage = stageName == null ? null : factory.getStageManager().getStageValue(stageName);
+      if (stage == null) {
+         throw new IllegalArgumentException("Unknown stage: " + stageName);
+      }
+      builder.setStage(stage).setBoard(getBoard(values));
+      builder.setTeam(getTeam(values, stage));
+      if (values.containsKey(KEY_HEALTH)) {
+         builder.setRemainingHealth(getInt(values, KEY_HEALTH, stage.getHealth()));
+      }
+      if (values.containsKey(KEY_MOVES)) {
+         builder.setRemainingMoves(getInt(values, KEY_MOVES, stage.getMoves()));
+      }
+      if (values.containsKey(KEY_FEEDERS)) {
+         int feeders = getInt(values, KEY_FEEDERS, 1);
+         if (feeders <= 0) {
+            throw new IllegalArgumentException(KEY_FEEDERS + " needs a positive number, not: " + feeders);
+         }
+         builder.setNumFeeders(feeders);
+      }
+      return builder;
+   }
+   
+   private Board getBoard(Map<String, String> values) {
+      SpeciesManager speciesManager = factory.getSpeciesManager();
+      Board board = new Board();
+      for (int row = 1; row <= Board.NUM_ROWS; row++) {
+         List<String> names = getRow(values, BoardConfigLoader.getRowKey(row), true);
+         List<String> frozen = getRow(values, BoardConfigLoader.getFrozenRowKey(row), false);
+         List<String> clouded = getRow(values, BoardConfigLoader.getCloudedRowKey(row), false);
+         for (int col = 1; col <= Board.NUM_COLS; col++) {
+            Species species = speciesManager.getSpeciesValue(names.get(col - 1), null);
+            if (species == null) {
+               throw new IllegalArgumentException("Unknown species: " + names.get(col - 1));
+            }
+            board.setSpeciesAt(row, col, species);
+            board.setFrozenAt(row, col, frozen != null && Boolean.parseBoolean(frozen.get(col - 1)));
+            board.setClouded(row, col, clouded != null && Boolean.parseBoolean(clouded.get(col - 1)));
+         }
+      }
+      board.setMegaProgress(getInt(values, BoardConfigLoader.KEY_MEGA_PROGRESS, 0));
+      String status = values.get(BoardConfigLoader.KEY_STATUS);
+      if (status != null) {
+         try {
+            board.setStatus(Status.valueOf(status));
+         } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown status: " + status);
+         }
+         board.setStatusDuration(getInt(values, BoardConfigLoader.KEY_STATUS_DURATION, 0));
+      }
+      return board;
+   }
+   
+   private static List<String> getRow(Map<String, String> values, String key, boolean required) {
+      String value = values.get(key);
+      if (value == null) {
+         if (required) {
+            throw new IllegalArgumentException("Missing row: " + key);
+         }
+         return null;
+      }
+      List<String> ret = Arrays.asList(value.split(","));
+      if (ret.size() != Board.NUM_COLS) {
+         throw new IllegalArgumentException(key + " needs " + Board.NUM_COLS + " values, not " + ret.size());
+      }
+      return ret;
+   }
+   
+   private Team getTeam(Map<String, String> values, Stage stage) {
+      String names = values.get(KEY_TEAM);
+      if (names == null) {
+         return factory.getTeamManager().getTeamForStage(stage);
+      }
+      TeamImpl team = new TeamImpl();
+      for (String name : names.split(",")) {
+         if (factory.getSpeciesManager().getSpeciesValue(name, null) == null) {
+            throw new IllegalArgumentException("Unknown species: " + name);
+         }
+         team.addName(name, null);
+      }
+      String mega = values.get(KEY_MEGA);
+      if (mega != null) {
+         if (!team.getNames().contains(mega)) {
+            throw new IllegalArgumentException(KEY_MEGA + " must be on the team: " + mega);
+         }
+         team.setMegaSlot(mega);
+      }
+      String nonSupport = values.get(KEY_NON_SUPPORT);
+      if (nonSupport != null) {
+         for (String name : nonSupport.split(",")) {
+            if (!team.getNames().contains(name)) {
+               throw new IllegalArgumentException(KEY_NON_SUPPORT + " must be on the team: " + name);
+            }
+            team.setNonSupport(name, true);
+         }
+      }
+      return team;
+   }
+}
@@ -0,0 +1,551 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.fwk.batch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import shuffle.fwk.ShuffleController;
+import shuffle.fwk.config.ConfigFactory;
+import shuffle.fwk.data.simulation.SimulationCore;
+import shuffle.fwk.data.simulation.SimulationRequest;
+import shuffle.fwk.data.simulation.SimulationResult;
+import shuffle.fwk.data.simulation.util.FeederSampling;
+import shuffle.fwk.data.simulation.util.NumberSpan;
+import shuffle.fwk.data.simulation.util.SimulationAcceptor;
+import shuffle.fwk.data.simulation.util.SimulationMetrics;
+
+/**
+ * Simulates boards for other programs over HTTP on the loopback address only. A board is sent as
+ * the body of a POST to {@value #PATH_SIMULATE}, in the form read by {@link SimulationRequestReader}.
+ * The response is one line of JSON for each move, best first, written as each is ready. A GET of
+ * {@value #PATH_STATUS} reports the counters below.
+ * <ul>
+ * <li>Requests wait in a bounded queue, and are answered at once with 503 when it is full.</li>
+ * <li>A single thread takes the waiting requests in batches, reads them, and starts a simulation for
+ * each. Identical requests in the same batch share a simulation. Only a limited number of
+ * simulations run at once, all in the same pool.</li>
+ * <li>Each request has a deadline, after which it is answered with 504 and its simulation is
+ * abandoned if no other request still wants it.</li>
+ * </ul>
+ * 
+ * <pre>
+ * java -cp "Shuffle Move.jar" shuffle.fwk.batch.SimulationServer [options]
+ *   --home DIR          The configuration folder, as for the program itself
+ *   --port N            The port, 8910 by default, or 0 for any free port
+ *   --threads N         The parallelism of the simulation pool
+ *   --running N         How many simulations may run at once, 2 by default
+ *   --queue N           How many requests may wait, 32 by default
+ *   --batch N           The most requests taken at once, 8 by default
+ *   --linger MS         How long to wait for more requests to fill a batch, 2 by default
+ *   --deadline MS       The deadline for requests without one, 5000 by default
+ *   --feeders N         The number of feeders for requests without one, 50 by default
+ *   --sampling MODE     RANDOM or STRATIFIED
+ *   --exact             Simulate every outcome of random effects
+ *   --crn               Use common random numbers across moves
+ * </pre>
+ * 
+ * @author Andrew Meyers
+ * 
+ */
+public class SimulationServer {
+   private static final Logger LOG = Logger.getLogger(SimulationServer.class.getName());
+   
+   public static final String PATH_SIMULATE = "/simulate";
+   public static final String PATH_STATUS = "/status";
+   private static final int MAX_REQUEST_BYTES = 1 << 16;
+   private static final UUID EXPIRED_ID = new UUID(0L, 0L);
+   
+   private String home = null;
+   private int port = 8910;
+   private int threads = Runtime.getRuntime().availableProcessors();
+   private int runningLimit = 2;
+   private int queueLimit = 32;
+   private int batchLimit = 8;
+   private long lingerMillis = 2L;
+   private long deadlineMillis = 5000L;
+   private int numFeeders = 50;
+   private FeederSampling sampling = FeederSampling.RANDOM;
+   private boolean exactBranching = false;
+   private boolean commonRandomNumbers = false;
+   
+   private SimulationRequestReader reader;
+   private SimulationRequest template;
+   private ForkJoinPool pool;
+   private BlockingQueue<Pending> queue;
+   private Semaphore runningPermits;
+   private HttpServer server;
+   private ExecutorService exchanges;
+   private Thread dispatcher;
+   private volatile boolean running = false;
+   
+   private final AtomicLong accepted = new AtomicLong();
+   private final AtomicLong rejected = new AtomicLong();
+   private final AtomicLong expired = new AtomicLong();
+   private final AtomicLong completed = new AtomicLong();
+   private final AtomicLong batches = new AtomicLong();
+   private final AtomicLong shared = new AtomicLong();
+   
+   /**
+    * A request from when it is accepted until it is answered.
+    */
+   private static class Pending {
+      private final Map<String, String> values;
+      private final long deadline;
+      private final CountDownLatch dispatched = new CountDownLatch(1);
+      private volatile Run run = null;
+      private volatile String error = null;
+      private volatile boolean abandoned = false;
+      
+      private Pending(Map<String, String> values, long deadline) {
+         this.values = values;
+         this.deadline = deadline;
+      }
+   }
+   
+   /**
+    * One simulation, for every identical request in a batch.
+    */
+   private static class Run implements SimulationAcceptor {
+      private final UUID processUUID = UUID.randomUUID();
+      private volatile UUID acceptedId = processUUID;
+      private volatile long deadline;
+      private volatile Collection<SimulationResult> results = null;
+      private SimulationCore core = null;
+      
+      private Run(long deadline) {
+         this.deadline = deadline;
+      }
+      
+      /**
+       * Stops the simulation from publishing or refining its results, and from starting at all if it
+       * has not yet.
+       */
+      private void expire() {
+         acceptedId = EXPIRED_ID;
+         core.cancel(false);
+      }
+      
+      @Override
+      public void acceptResults(Collection<SimulationResult> results) {
+         this.results = results;
+      }
+      
+      @Override
+      public UUID getAcceptedId() {
+         return acceptedId;
+      }
+   }
+   
+   public static void main(String... args) {
+      SimulationServer simulationServer;
+      try {
+         simulationServer = new SimulationServer(args);
+      } catch (IllegalArgumentException e) {
+         System.err.println(e.getMessage());
+         System.err.println("Usage: SimulationServer [--home DIR] [--port N] [--threads N] [--running N] [--queue N]"
+               + " [--batch N] [--linger MS] [--deadline MS] [--feeders N]"
+               + " [--sampling RANDOM|STRATIFIED] [--exact] [--crn]");
+         System.exit(1);
+         return;
+      }
+      try {
+         simulationServer.start();
+      } catch (IOException e) {
+         System.err.println(e.getLocalizedMessage());
+         System.exit(1);
+      }
+      Runtime.getRuntime().addShutdownHook(new Thread(simulationServer::stop));
+   }
+   
+   /**
+    * @param args
+    *           The options, as for {@link #main(String...)}.
+    * @throws IllegalArgumentException
+    *            If any option is not understood.
+    */
+   public SimulationServer(String... args) {
+      for (int i = 0; i < args.length; i++) {
+         String arg = args[i];
+         if (arg.equals("--exact")) {
+            exactBranching = true;
+         } else if (arg.equals("--crn")) {
+            commonRandomNumbers = true;
+         } else if (i + 1 < args.length) {
+            String value = args[++i];
+            if (arg.equals("--home")) {
+               home = value;
+            } else if (arg.equals("--port")) {
+               port = parseNumber(arg, value, 0);
+            } else if (arg.equals("--threads")) {
+               threads = parseNumber(arg, value, 1);
+            } else if (arg.equals("--running")) {
+               runningLimit = parseNumber(arg, value, 1);
+            } else if (arg.equals("--queue")) {
+               queueLimit = parseNumber(arg, value, 1);
+            } else if (arg.equals("--batch")) {
+               batchLimit = parseNumber(arg, value, 1);
+            } else if (arg.equals("--linger")) {
+               lingerMillis = parseNumber(arg, value, 0);
+            } else if (arg.equals("--deadline")) {
+               deadlineMillis = parseNumber(arg, value, 1);
+            } else if (arg.equals("--feeders")) {
+               numFeeders = parseNumber(arg, value, 1);
+            } else if (arg.equals("--sampling")) {
+               sampling = FeederSampling.getSampling(value);
+            } else {
+               throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+         } else {
+            throw new IllegalArgumentException("Missing value for: " + arg);
+         }
+      }
+   }
+   
+   private static int parseNumber(String arg, String value, int min) {
+      try {
+         int ret = Integer.parseInt(value);
+         if (ret >= min) {
+            return ret;
+         }
+      } catch (NumberFormatException e) {
+         // Reported below
+      }
+      throw new IllegalArgumentException(arg + " needs a number of at least " + min + ", not: " + value);
+   }
+   
+   /**
+    * Loads the configuration and starts serving. The configuration is only read from the dispatch
+    * thread after this.
+    * 
+    * @throws IOException
+    *            If the port cannot be bound.
+    */
+   public void start() throws IOException {
+      ShuffleController.setUserHome(home == null ? System.getProperty("user.home") + File.separator + "Shuffle-Move"
+            : home);
+      SimulationMetrics.register();
+      ConfigFactory factory = new ConfigFactory();
+      reader = new SimulationRequestReader(factory);
+      template = SimulationRequest.builder(factory).setStage(factory.getStageManager().getAllStages().get(0))
+            .setNumFeeders(numFeeders).setFeederSampling(sampling).setExactBranching(exactBranching)
+            .setCommonRandomNumbers(commonRandomNumbers).build();
+      pool = new ForkJoinPool(threads);
+      queue = new ArrayBlockingQueue<Pending>(queueLimit);
+      runningPermits = new Semaphore(runningLimit);
+      server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), queueLimit);
+      exchanges = Executors.newCachedThreadPool();
+      server.setExecutor(exchanges);
+      server.createContext(PATH_SIMULATE, this::handleSimulate);
+      server.createContext(PATH_STATUS, this::handleStatus);
+      running = true;
+      dispatcher = new Thread(this::dispatch, "SimulationServer dispatcher");
+      dispatcher.start();
+      server.start();
+      LOG.info("Listening on http://" + server.getAddress().getHostString() + ":" + getPort() + PATH_SIMULATE);
+   }
+   
+   /**
+    * Stops serving. Requests still waiting are not answered.
+    */
+   public void stop() {
+      if (!running) {
+         return;
+      }
+      running = false;
+      server.stop(0);
+      try {
+         dispatcher.join();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+      pool.shutdownNow();
+      exchanges.shutdownNow();
+   }
+   
+   /**
+    * @return The port being served, which is only chosen on {@link #start()} if it was 0.
+    */
+   public int getPort() {
+      return server == null ? port : server.getAddress().getPort();
+   }
+   
+   private void handleStatus(HttpExchange exchange) throws IOException {
+      StringBuilder sb = new StringBuilder();
+      sb.append("queued ").append(queue.size()).append('\n');
+      sb.append("running ").append(runningLimit - runningPermits.availablePermits()).append('\n');
+      sb.append("accepted ").append(accepted.get()).append('\n');
+      sb.append("rejected ").append(rejected.get()).append('\n');
+      sb.append("expired ").append(expired.get()).append('\n');
+      sb.append("completed ").append(completed.get()).append('\n');
+      sb.append("batches ").append(batches.get()).append('\n');
+      sb.append("shared ").append(shared.get()).append('\n');
+      respond(exchange, 200, sb.toString());
+   }
+   
+   private void handleSimulate(HttpExchange exchange) throws IOException {
+      if (!exchange.getRequestMethod().equals("POST")) {
+         respond(exchange, 405, "Only POST is supported.");
+         return;
+      }
+      String text = readBody(exchange.getRequestBody());
+      if (text == null) {
+         respond(exchange, 413, "Requests are limited to " + MAX_REQUEST_BYTES + " bytes.");
+         return;
+      }
+      long arrival = System.nanoTime();
+      Pending pending;
+      try {
+         Map<String, String> values = SimulationRequestReader.parse(text);
+         int deadline = SimulationRequestReader.getInt(values, SimulationRequestReader.KEY_DEADLINE,
+               (int) deadlineMillis);
+         pending = new Pending(values, arrival + TimeUnit.MILLISECONDS.toNanos(Math.max(1, deadline)));
+      } catch (IllegalArgumentException e) {
+         respond(exchange, 400, e.getMessage());
+         return;
+      }
+      if (!running || !queue.offer(pending)) {
+         rejected.incrementAndGet();
+         exchange.getResponseHeaders().set("Retry-After", "1");
+         respond(exchange, 503, "Too many requests are waiting.");
+         return;
+      }
+      accepted.incrementAndGet();
+      try {
+         Collection<SimulationResult> results = await(pending);
+         if (pending.error != null) {
+            respond(exchange, 400, pending.error);
+         } else if (results == null) {
+            respond(exchange, 500, "The simulation failed.");
+         } else {
+            completed.incrementAndGet();
+            writeResults(exchange, results, arrival);
+         }
+      } catch (TimeoutException | CancellationException e) {
+         expired.incrementAndGet();
+         respond(exchange, 504, "The deadline passed.");
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         respond(exchange, 503, "The server is stopping.");
+      }
+   }
+   
+   /**
+    * @param pending
+    * @return The results for the given request, or null if the simulation failed or it had an error.
+    * @throws TimeoutException
+    *            If the deadline of the request passed first.
+    * @throws InterruptedException
+    */
+   private static Collection<SimulationResult> await(Pending pending) throws TimeoutException,
+         InterruptedException {
+      if (!pending.dispatched.await(pending.deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+         pending.abandoned = true;
+         throw new TimeoutException();
+      }
+      Run run = pending.run;
+      if (run == null) {
+         if (pending.error == null) {
+            throw new TimeoutException();
+         }
+         return null;
+      }
+      try {
+         run.core.get(pending.deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+      } catch (TimeoutException e) {
+         if (run.deadline - System.nanoTime() <= 0) {
+            run.expire();
+         }
+         throw e;
+      } catch (ExecutionException e) {
+         LOG.log(Level.FINE, "Simulation failed: " + e.getMessage(), e);
+         return null;
+      }
+      return run.results;
+   }
+   
+   /**
+    * Takes the waiting requests in batches until stopped. A batch is started by the first request to
+    * arrive, and filled with whatever else arrives within the linger time.
+    */
+   private void dispatch() {
+      long lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+      while (running) {
+         try {
+            Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+            if (first == null) {
+               continue;
+            }
+            List<Pending> batch = new ArrayList<Pending>(batchLimit);
+            batch.add(first);
+            long lingerEnd = System.nanoTime() + lingerNanos;
+            while (batch.size() < batchLimit) {
+               Pending next = queue.poll(lingerEnd - System.nanoTime(), TimeUnit.NANOSECONDS);
+               if (next == null) {
+                  break;
+               }
+               batch.add(next);
+            }
+            batches.incrementAndGet();
+            startBatch(batch);
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+         }
+      }
+   }
+   
+   /**
+    * Reads every request in the batch and starts one simulation for each distinct one, once there is
+    * room for it to run. Requests that differ only in their deadline are the same.
+    * 
+    * @param batch
+    * @throws InterruptedException
+    */
+   private void startBatch(List<Pending> batch) throws InterruptedException {
+      Map<Map<String, String>, Run> runs = new HashMap<Map<String, String>, Run>();
+      List<Run> toStart = new ArrayList<Run>();
+      for (Pending pending : batch) {
+         if (pending.abandoned || pending.deadline - System.nanoTime() <= 0) {
+            continue;
+         }
+         Map<String, String> key = new HashMap<String, String>(pending.values);
+         key.remove(SimulationRequestReader.KEY_DEADLINE);
+         Run run = runs.get(key);
+         if (run != null) {
+            run.deadline = Math.max(run.deadline, pending.deadline);
+            shared.incrementAndGet();
+         } else {
+            try {
+               run = new Run(pending.deadline);
+               SimulationRequest request = reader.apply(pending.values, template.toBuilder())
+                     .setProcessUUID(run.processUUID).setAcceptor(run).build();
+               run.core = new SimulationCore(request, run.processUUID);
+               runs.put(key, run);
+               toStart.add(run);
+            } catch (RuntimeException e) {
+               pending.error = e.getMessage() == null ? e.toString() : e.getMessage();
+               continue;
+            }
+         }
+         pending.run = run;
+      }
+      for (Pending pending : batch) {
+         pending.dispatched.countDown();
+      }
+      for (Run run : toStart) {
+         long wait = run.deadline - System.nanoTime();
+         if (wait > 0 && runningPermits.tryAcquire(wait, TimeUnit.NANOSECONDS)) {
+            pool.execute(ForkJoinTask.adapt(() -> {
+               try {
+                  run.core.invoke();
+               } finally {
+                  runningPermits.release();
+               }
+            }));
+         } else {
+            run.expire();
+         }
+      }
+   }
+   
+   private static String readBody(InputStream in) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = in.read(buffer)) >= 0) {
+         out.write(buffer, 0, read);
+         if (out.size() > MAX_REQUEST_BYTES) {
+            return null;
+         }
+      }
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+   }
+   
+   private static void respond(HttpExchange exchange, int code, String message) throws IOException {
+      byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+      exchange.sendResponseHeaders(code, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+         out.write(body);
+      }
+   }
+   
+   /**
+    * Writes one line of JSON for each result in order, flushing after each so that the client can
+    * act on the best move before the rest arrive.
+    */
+   private static void writeResults(HttpExchange exchange, Collection<SimulationResult> results, long arrival)
+         throws IOException {
+      long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - arrival);
+      exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=UTF-8");
+      exchange.sendResponseHeaders(200, 0);
+      try (OutputStream out = exchange.getResponseBody()) {
+         for (SimulationResult result : results) {
+            out.write(toJson(result, millis).getBytes(StandardCharsets.UTF_8));
+            out.flush();
+         }
+      }
+   }
+   
+   static String toJson(SimulationResult result, long millis) {
+      StringBuilder sb = new StringBuilder("{\"move\":");
+      sb.append(BatchEvaluator.toJson(result.getMove() == null ? Arrays.asList() : result.getMove()));
+      String[] keys = new String[] { "score", "gold", "combos", "blocks", "disruptions", "megaProgress" };
+      List<NumberSpan> spans = Arrays.asList(result.getNetScore(), result.getNetGold(), result.getCombosCleared(),
+            result.getBlocksCleared(), result.getDisruptionsCleared(), result.getProgress());
+      for (int i = 0; i < keys.length; i++) {
+         sb.append(",\"").append(keys[i]).append("\":").append(spans.get(i).getAverage());
+      }
+      sb.append(",\"samples\":").append(result.getSampleCount());
+      sb.append(",\"millis\":").append(millis);
+      return sb.append("}\n").toString();
+   }
+}
@@ -0,0 +1,294 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.fwk.batch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.apache.commons.lang3.StringUtils;
+
+import shuffle.fwk.ShuffleController;
+import shuffle.fwk.config.ConfigFactory;
+import shuffle.fwk.config.manager.SpeciesManager;
+import shuffle.fwk.data.Board;
+import shuffle.fwk.data.Board.Status;
+import shuffle.fwk.data.Species;
+import shuffle.fwk.data.simulation.SimulationAccumulator;
+import shuffle.fwk.data.simulation.SimulationCore;
+import shuffle.fwk.data.simulation.SimulationRequest;
+import shuffle.fwk.data.simulation.util.NumberSpan;
+
+/**
+ * A worker process for {@link ShardedSimulation}, which simulates its share of a board and sends
+ * back the accumulated outcomes of each move. Jobs are read from standard input one after another
+ * until it is closed, and the replies are written to standard output. Logging goes to standard
+ * error as usual.
+ * <p>
+ * A job is a request as read by {@link SimulationRequestReader}, optionally with a
+ * {@value #KEY_SHARD_MOVES} line listing the moves to simulate as {@code r,c,r,c;r,c,r,c} and a
+ * {@value #KEY_SHARD_FEEDERS} line giving the first and number of its feeders to simulate as
+ * {@code first,count}, and ended by a line of {@value #END}. Without those lines every move and
+ * every feeder is simulated. The reply is a {@value #KEY_MOVE} line for each move, ending with
+ * whether the move is random, each followed by a {@value #KEY_BOARD} line for each of its resulting
+ * boards, and then a line of {@value #END}. If
+ * the job fails the reply is instead a single {@value #KEY_ERROR} line and then {@value #END}.
+ * 
+ * @author Andrew Meyers
+ * 
+ */
+public class SimulationWorker {
+   public static final String KEY_SHARD_MOVES = "SHARD_MOVES";
+   public static final String KEY_SHARD_FEEDERS = "SHARD_FEEDERS";
+   public static final String KEY_MOVE = "MOVE";
+   public static final String KEY_BOARD = "BOARD";
+   public static final String KEY_ERROR = "ERROR";
+   public static final String END = "END";
+   
+   /**
+    * @param args
+    *           The options, which are the same as those of {@link ShardedSimulation} other than the
+    *           number of workers and how the work is split.
+    */
+   public static void main(String... args) throws IOException {
+      ShardedSimulation.Options options = new ShardedSimulation.Options(args);
+      // Only replies may go to standard output.
+      PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+      System.setOut(System.err);
+      ShuffleController.setUserHome(options.getHome());
+      ConfigFactory factory = new ConfigFactory();
+      SimulationRequestReader reader = new SimulationRequestReader(factory);
+      SimulationRequest.Builder template = options.getTemplate(factory);
+      ForkJoinPool pool = new ForkJoinPool(options.getThreads());
+      BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+      String job;
+      while ((job = readJob(in)) != null) {
+         try {
+            Map<String, String> values = SimulationRequestReader.parse(job);
+            SimulationRequest request = reader.apply(values, template).build();
+            SimulationCore core = new SimulationCore(request, request.getProcessUUID());
+            List<List<Integer>> moves = values.containsKey(KEY_SHARD_MOVES) ? parseMoves(values.get(KEY_SHARD_MOVES))
+                  : core.getPossibleMoves(request.getBoard());
+            int[] shard = values.containsKey(KEY_SHARD_FEEDERS) ? parseShard(values.get(KEY_SHARD_FEEDERS))
+                  : new int[] { 0, request.getPreferredNumFeeders() };
+            writeAccumulators(pool.invoke(ForkJoinTask.adapt(() -> core.accumulate(moves, shard[0], shard[1]))), out);
+         } catch (RuntimeException e) {
+            String message = e.getMessage() == null ? e.toString() : e.getMessage();
+            out.println(KEY_ERROR + " " + message.replaceAll("\\s+", " "));
+         }
+         out.println(END);
+         out.flush();
+      }
+      pool.shutdown();
+   }
+   
+   /**
+    * @param in
+    * @return The lines of the next job, or null if there are no more.
+    * @throws IOException
+    */
+   private static String readJob(BufferedReader in) throws IOException {
+      StringBuilder sb = new StringBuilder();
+      String line;
+      while ((line = in.readLine()) != null) {
+         if (line.equals(END)) {
+            return sb.toString();
+         }
+         sb.append(line).append('\n');
+      }
+      return null;
+   }
+   
+   static String formatMoves(List<List<Integer>> moves) {
+      List<String> ret = new ArrayList<String>(moves.size());
+      for (List<Integer> move : moves) {
+         ret.add(StringUtils.join(move, ','));
+      }
+      return StringUtils.join(ret, ';');
+   }
+   
+   static List<List<Integer>> parseMoves(String value) {
+      List<List<Integer>> ret = new ArrayList<List<Integer>>();
+      for (String move : value.split(";")) {
+         ret.add(parseMove(move));
+      }
+      return ret;
+   }
+   
+   private static int[] parseShard(String value) {
+      String[] parts = value.split(",");
+      try {
+         if (parts.length == 2) {
+            return new int[] { Integer.parseInt(parts[0]), Integer.parseInt(parts[1]) };
+         }
+      } catch (NumberFormatException e) {
+         // Reported below
+      }
+      throw new IllegalArgumentException(KEY_SHARD_FEEDERS + " needs first,count, not: " + value);
+   }
+   
+   private static List<Integer> parseMove(String move) {
+      List<Integer> ret = new ArrayList<Integer>(4);
+      try {
+         for (String coordinate : move.split(",")) {
+            ret.add(Integer.parseInt(coordinate));
+         }
+      } catch (NumberFormatException e) {
+         throw new IllegalArgumentException("Not a move: " + move);
+      }
+      if (ret.size() != 4) {
+         throw new IllegalArgumentException("Not a move: " + move);
+      }
+      return ret;
+   }
+   
+   /**
+    * Writes the reply to a job, without the final line.
+    * 
+    * @param accumulators
+    * @param out
+    */
+   static void writeAccumulators(Map<List<Integer>, SimulationAccumulator> accumulators, Writer out) {
+      PrintWriter pw = out instanceof PrintWriter ? (PrintWriter) out : new PrintWriter(out);
+      for (Map.Entry<List<Integer>, SimulationAccumulator> entry : accumulators.entrySet()) {
+         SimulationAccumulator accumulator = entry.getValue();
+         List<Object> fields = new ArrayList<Object>();
+         fields.add(StringUtils.join(entry.getKey(), ','));
+         fields.add(accumulator.getCount());
+         fields.add(accumulator.getWeightSum());
+         for (NumberSpan span : getSpans(accumulator)) {
+            fields.add(span.getMinimum() + "," + span.getMaximum() + "," + span.getTotal() + "," + span.getCount());
+         }
+         fields.add(accumulator.isRandom());
+         pw.println(KEY_MOVE + " " + StringUtils.join(fields, '\t'));
+         for (Map.Entry<Board, Float> chance : accumulator.getBoardChances().entrySet()) {
+            pw.println(KEY_BOARD + " " + chance.getValue() + "\t" + formatBoard(chance.getKey()));
+         }
+      }
+      pw.flush();
+   }
+   
+   /**
+    * Reads the reply to a job, up to and including its final line.
+    * 
+    * @param in
+    * @param speciesManager
+    * @return The accumulated outcomes of each move, in the order they were sent.
+    * @throws IOException
+    *            If the reply ends early, cannot be read, or is an error.
+    */
+   static Map<List<Integer>, SimulationAccumulator> readAccumulators(BufferedReader in, SpeciesManager speciesManager)
+         throws IOException {
+      Map<List<Integer>, SimulationAccumulator> ret = new LinkedHashMap<List<Integer>, SimulationAccumulator>();
+      List<Integer> move = null;
+      String[] moveFields = null;
+      Map<Board, Float> chances = new HashMap<Board, Float>();
+      String line;
+      while ((line = in.readLine()) != null) {
+         if (line.startsWith(KEY_BOARD + " ")) {
+            String[] fields = line.substring(KEY_BOARD.length() + 1).split("\t");
+            chances.put(parseBoard(fields, 1, speciesManager), Float.parseFloat(fields[0]));
+            continue;
+         }
+         if (move != null) {
+            ret.put(move, toAccumulator(moveFields, chances));
+            move = null;
+            chances = new HashMap<Board, Float>();
+         }
+         if (line.equals(END)) {
+            return ret;
+         } else if (line.startsWith(KEY_ERROR + " ")) {
+            String message = line.substring(KEY_ERROR.length() + 1);
+            while ((line = in.readLine()) != null && !line.equals(END)) {
+               // Skip to the end of the reply, so the worker can be used again.
+            }
+            throw new IOException("The worker failed: " + message);
+         } else if (line.startsWith(KEY_MOVE + " ")) {
+            moveFields = line.substring(KEY_MOVE.length() + 1).split("\t");
+            move = parseMove(moveFields[0]);
+         } else {
+            throw new IOException("Unexpected reply from worker: " + line);
+         }
+      }
+      throw new IOException("The worker stopped before replying.");
+   }
+   
+   private static SimulationAccumulator toAccumulator(String[] fields, Map<Board, Float> chances) {
+      NumberSpan[] spans = new NumberSpan[6];
+      for (int i = 0; i < spans.length; i++) {
+         String[] parts = fields[3 + i].split(",");
+         spans[i] = new NumberSpan(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]),
+               Double.parseDouble(parts[2]), Integer.parseInt(parts[3]));
+      }
+      return new SimulationAccumulator(spans[0], spans[1], spans[2], spans[3], spans[4], spans[5], chances,
+            Integer.parseInt(fields[1]), Double.parseDouble(fields[2]), Boolean.parseBoolean(fields[3 + spans.length]));
+   }
+   
+   private static NumberSpan[] getSpans(SimulationAccumulator accumulator) {
+      return new NumberSpan[] { accumulator.getScore(), accumulator.getGold(), accumulator.getBlocksCleared(),
+            accumulator.getDisruptionsCleared(), accumulator.getCombosCleared(), accumulator.getProgress() };
+   }
+   
+   private static String formatBoard(Board board) {
+      List<String> names = new ArrayList<String>(Board.NUM_CELLS);
+      StringBuilder frozen = new StringBuilder(Board.NUM_CELLS);
+      StringBuilder clouded = new StringBuilder(Board.NUM_CELLS);
+      for (int row = 1; row <= Board.NUM_ROWS; row++) {
+         for (int col = 1; col <= Board.NUM_COLS; col++) {
+            names.add(board.getSpeciesAt(row, col).getName());
+            frozen.append(board.isFrozenAt(row, col) ? '1' : '0');
+            clouded.append(board.isCloudedAt(row, col) ? '1' : '0');
+         }
+      }
+      return StringUtils.join(names, ',') + "\t" + frozen + "\t" + clouded + "\t" + board.getMegaProgress() + "\t"
+            + board.getStatus() + "\t" + board.getStatusDuration();
+   }
+   
+   private static Board parseBoard(String[] fields, int start, SpeciesManager speciesManager) {
+      String[] names = fields[start].split(",");
+      String frozen = fields[start + 1];
+      String clouded = fields[start + 2];
+      Board board = new Board();
+      int i = 0;
+      for (int row = 1; row <= Board.NUM_ROWS; row++) {
+         for (int col = 1; col <= Board.NUM_COLS; col++) {
+            Species species = speciesManager.getSpeciesValue(names[i], Species.AIR);
+            board.setSpeciesAt(row, col, species);
+            board.setFrozenAt(row, col, frozen.charAt(i) == '1');
+            board.setClouded(row, col, clouded.charAt(i) == '1');
+            i++;
+         }
+      }
+      board.setMegaProgress(Integer.parseInt(fields[start + 3]));
+      board.setStatus(Status.valueOf(fields[start + 4]));
+      board.setStatusDuration(Integer.parseInt(fields[start + 5]));
+      return board;
+   }
+}
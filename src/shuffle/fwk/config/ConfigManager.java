@@ -31,6 +31,7 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -64,6 +65,8 @@ public class ConfigManager {
    private final ConfigFactory factory;
    private final LinkedHashMap<EntryType, LinkedHashMap<String, ConfigEntry>> data = new LinkedHashMap<EntryType, LinkedHashMap<String, ConfigEntry>>();
    private final Map<String, List<String>> savedDataStrings = new LinkedHashMap<String, List<String>>();
+   // Incremented while holding the data lock, once the data might have changed.
+   private volatile long dataVersion = 0;
    
    public ConfigManager(List<String> resources, List<String> files, ConfigFactory factory) {
       this.factory = factory;
@@ -85,6 +88,29 @@ public class ConfigManager {
       return factory;
    }
    
+   /**
+    * Gets the version of this manager's data. This changes every time the data might have changed,
+    * so anything derived from the data can be cached for as long as the version stays the same.
+    * 
+    * @return The current data version.
+    */
+   public long getDataVersion() {
+      return dataVersion;
+   }
+   
+   /**
+    * Builds something from the data while it cannot change, so that it only sees one version of the
+    * data. That version is the one from {@link #getDataVersion()} during the build.
+    * 
+    * @param builder
+    * @return What was built.
+    */
+   protected <T> T buildFromData(Supplier<T> builder) {
+      synchronized (data) {
+         return builder.get();
+      }
+   }
+   
    public <T extends ConfigManager> boolean copyFromManager(T manager) {
       boolean changed = false;
       synchronized (data) {
@@ -103,6 +129,7 @@ public class ConfigManager {
          LinkedHashMap<String, List<String>> newData = getDataStrings();
          changed |= !oldData.equals(newData);
          onCopyFrom(manager);
+         dataVersion++;
       }
       return changed;
    }
@@ -114,6 +141,7 @@ public class ConfigManager {
    protected void clearMappingsOfType(EntryType type) {
       synchronized (data) {
          data.get(type).clear();
+         dataVersion++;
       }
    }
    
@@ -128,6 +156,7 @@ public class ConfigManager {
                mappings.put(key, entry);
             }
          }
+         dataVersion++;
       }
    }
    
@@ -148,6 +177,7 @@ public class ConfigManager {
             savedDataStrings.clear();
             savedDataStrings.putAll(newData);
          }
+         dataVersion++;
       }
       return changed;
    }
@@ -289,6 +319,9 @@ public class ConfigManager {
             } else {
                mappings.put(key, newValue);
             }
+            if (changed) {
+               dataVersion++;
+            }
          }
       }
       return changed;
@@ -91,6 +91,14 @@ public class BoardManager {
       return changed;
    }
    
+   /**
+    * @param stage
+    * @return True if a default board for the given stage is bundled with the program.
+    */
+   public boolean hasDefaultBoard(Stage stage) {
+      return !getDefaultBoardResources(stage).isEmpty();
+   }
+   
    /**
     * @param stage
     * @return
@@ -37,7 +37,6 @@ public class EffectManager extends ConfigManager {
    private static final String FORMAT_MEGA_SPEEDUP_CAP = "MEGA_SPEEDUPS_%s";
    private static final String FORMAT_MEGA_THRESHOLD = "MEGA_THRESHOLD_%s";
    private static final int DEFAULT_INT = 100;
-   private static final double DEFAULT_DOUBLE = 1.0;
    private static final String ODDS_TYPE = "ODDS";
    private static final String MULT_TYPE = "MULT";
    private static final Pattern EFFECT_ODDS_MULT_PATTERN = Pattern
@@ -45,6 +44,7 @@ public class EffectManager extends ConfigManager {
                + "|" + ODDS_TYPE + ")\\s*");
    private EnumMap<Effect, double[][]> oddsMap;
    private EnumMap<Effect, double[]> multMap;
+   private volatile EffectTableSnapshot snapshot = null;
    
    /**
     * Creates an EffectManager which manages configurable settings for Effects.
@@ -97,17 +97,48 @@ public class EffectManager extends ConfigManager {
       return changed;
    }
    
+   /**
+    * Gets an immutable snapshot of the odds and multiplier tables, parsed from the current data.
+    * The snapshot is only rebuilt when the data version changes, so this is cheap to call for every
+    * simulation.
+    * 
+    * @return The EffectTableSnapshot for the current data.
+    */
+   public EffectTableSnapshot getSnapshot() {
+      EffectTableSnapshot cached = snapshot;
+      if (cached == null || cached.getVersion() != getDataVersion()) {
+         cached = buildFromData(() -> {
+            EnumMap<Effect, double[][]> odds = new EnumMap<Effect, double[][]>(Effect.class);
+            EnumMap<Effect, double[]> mults = new EnumMap<Effect, double[]>(Effect.class);
+            parseMaps(odds, mults);
+            return new EffectTableSnapshot(getDataVersion(), odds, mults);
+         });
+         snapshot = cached;
+      }
+      return cached;
+   }
+   
    /**
     * 
     */
    private void reloadMaps() {
       getOddsMap().clear();
       getMultMap().clear();
+      parseMaps(getOddsMap(), getMultMap());
+   }
+   
+   /**
+    * Parses the odds and multipliers for every effect from the current data into the given maps.
+    * 
+    * @param oddsMap
+    * @param multMap
+    */
+   private void parseMaps(EnumMap<Effect, double[][]> oddsMap, EnumMap<Effect, double[]> multMap) {
       for (Effect e : Effect.values()) {
          String dataString = getStringValue(e.toString());
          if (dataString == null || dataString.isEmpty()) {
-            getOddsMap().remove(e);
-            getMultMap().remove(e);
+            oddsMap.remove(e);
+            multMap.remove(e);
             continue;
          }
          Matcher m = EFFECT_ODDS_MULT_PATTERN.matcher(dataString);
@@ -150,12 +181,12 @@ public class EffectManager extends ConfigManager {
             }
             
             // Set the arrays into the maps
-            getMultMap().put(e, multArray);
-            getOddsMap().put(e, oddsArray);
+            multMap.put(e, multArray);
+            oddsMap.put(e, oddsArray);
             
          } else {
-            getOddsMap().remove(e);
-            getMultMap().remove(e);
+            oddsMap.remove(e);
+            multMap.remove(e);
          }
       }
    }
@@ -216,25 +247,11 @@ public class EffectManager extends ConfigManager {
    }
    
    public double getMult(Effect effect, int skillLevel) {
-      double ret = DEFAULT_DOUBLE;
-      if (getMultMap() != null && getMultMap().containsKey(effect)) {
-         double[] values = getMultMap().get(effect);
-         if (values.length > 0) {
-            int skillIndex = Math.min(Math.max(skillLevel - 1, 0), Math.min(4, values.length));
-            ret = values[skillIndex];
-         }
-      }
-      return ret;
+      return EffectTableSnapshot.getMult(getMultMap().get(effect), skillLevel);
    }
    
    public double getOdds(Effect effect, int num, int skillLevel) {
-      int index = Math.max(Math.min(num, 5), 3) - 3;
-      if (getOddsMap().containsKey(effect)) {
-         int skillIndex = Math.min(Math.max(skillLevel - 1, 0), 4);
-         return getOddsMap().get(effect)[skillIndex][index];
-      } else {
-         return DEFAULT_DOUBLE;
-      }
+      return EffectTableSnapshot.getOdds(getOddsMap().get(effect), num, skillLevel);
    }
    
    public int getMegaSpeedupCap(Species species) {
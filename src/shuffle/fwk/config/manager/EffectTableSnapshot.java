@@ -0,0 +1,110 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.fwk.config.manager;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+
+import shuffle.fwk.data.Effect;
+
+/**
+ * An immutable copy of the odds and multiplier tables configured in an {@link EffectManager}, as
+ * of a single data version. Lookups are plain array reads, so this can be shared freely between
+ * simulations without any locking.
+ * 
+ * @author Andrew Meyers
+ *         
+ */
+public final class EffectTableSnapshot {
+   
+   private static final double DEFAULT_DOUBLE = 1.0;
+   
+   private final long version;
+   // [effect ordinal][skill level - 1][num blocks - 3], null if not configured
+   private final double[][][] odds;
+   // [effect ordinal][skill level - 1], null if not configured
+   private final double[][] mults;
+   private final long contentDigest;
+   
+   EffectTableSnapshot(long version, EnumMap<Effect, double[][]> oddsMap, EnumMap<Effect, double[]> multMap) {
+      this.version = version;
+      odds = new double[Effect.values().length][][];
+      mults = new double[Effect.values().length][];
+      for (Effect e : oddsMap.keySet()) {
+         double[][] values = oddsMap.get(e);
+         double[][] copy = new double[values.length][];
+         for (int i = 0; i < values.length; i++) {
+            copy[i] = values[i].clone();
+         }
+         odds[e.ordinal()] = copy;
+      }
+      for (Effect e : multMap.keySet()) {
+         mults[e.ordinal()] = multMap.get(e).clone();
+      }
+      contentDigest = RosterSnapshot.digestOf(Arrays.deepToString(odds) + Arrays.deepToString(mults));
+   }
+   
+   /**
+    * @return The data version of the {@link EffectManager} this was taken from.
+    */
+   public long getVersion() {
+      return version;
+   }
+   
+   /**
+    * @return A digest of the tables in this snapshot, which is the same for equal content in any
+    *         session.
+    */
+   public long getContentDigest() {
+      return contentDigest;
+   }
+   
+   /**
+    * Equivalent to {@link EffectManager#getMult(Effect, int)} at the time of the snapshot.
+    */
+   public double getMult(Effect effect, int skillLevel) {
+      return getMult(mults[effect.ordinal()], skillLevel);
+   }
+   
+   /**
+    * Equivalent to {@link EffectManager#getOdds(Effect, int, int)} at the time of the snapshot.
+    */
+   public double getOdds(Effect effect, int num, int skillLevel) {
+      return getOdds(odds[effect.ordinal()], num, skillLevel);
+   }
+   
+   static double getMult(double[] values, int skillLevel) {
+      double ret = DEFAULT_DOUBLE;
+      if (values != null && values.length > 0) {
+         int skillIndex = Math.min(Math.max(skillLevel - 1, 0), Math.min(4, values.length));
+         ret = values[skillIndex];
+      }
+      return ret;
+   }
+   
+   static double getOdds(double[][] values, int num, int skillLevel) {
+      int index = Math.max(Math.min(num, 5), 3) - 3;
+      if (values != null) {
+         int skillIndex = Math.min(Math.max(skillLevel - 1, 0), 4);
+         return values[skillIndex][index];
+      } else {
+         return DEFAULT_DOUBLE;
+      }
+   }
+}
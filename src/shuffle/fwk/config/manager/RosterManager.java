@@ -18,6 +18,7 @@
 
 package shuffle.fwk.config.manager;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -42,6 +43,8 @@ public class RosterManager extends ConfigManager {
    private static final String SKILL_FORMAT = "SKILL_%s_%s";
    private static final String CHOSEN_EFFECT = "EFFECT_%s";
    
+   private volatile RosterSnapshot snapshot = null;
+   
    public RosterManager(List<String> loadPaths, List<String> writePaths, ConfigFactory factory) {
       super(loadPaths, writePaths, factory);
    }
@@ -50,6 +53,25 @@ public class RosterManager extends ConfigManager {
       super(manager);
    }
    
+   /**
+    * Gets an immutable snapshot of the roster for every species configured in the given manager.
+    * The snapshot is only rebuilt when either this roster or the species change, so this is cheap to
+    * call for every simulation.
+    * 
+    * @param speciesManager
+    *           The SpeciesManager which defines the species to include.
+    * @return The RosterSnapshot for the current data.
+    */
+   public RosterSnapshot getSnapshot(SpeciesManager speciesManager) {
+      RosterSnapshot cached = snapshot;
+      List<Species> internedSpecies = speciesManager.getInternedSpecies();
+      if (cached == null || cached.getVersion() != getDataVersion() || !cached.isFor(internedSpecies)) {
+         cached = buildFromData(() -> new RosterSnapshot(getDataVersion(), internedSpecies, this));
+         snapshot = cached;
+      }
+      return cached;
+   }
+   
    public Integer getLevelForSpecies(Species species) {
       return getLevelForSpecies(species.getName());
    }
@@ -200,6 +222,25 @@ public class RosterManager extends ConfigManager {
       return setEntry(EntryType.STRING, key, value);
    }
    
+   /**
+    * @param species
+    * @return The keys of every entry that may be kept for the given species, whether it has them or
+    *         not.
+    */
+   public List<String> getKeysFor(Species species) {
+      List<String> ret = new ArrayList<String>();
+      ret.add(species.getName());
+      ret.add(getSkillKeyLegacy(species));
+      for (Effect effect : species.getEffects()) {
+         ret.add(String.format(SKILL_FORMAT, species.getName(), effect.toString()));
+      }
+      ret.add(getActiveEffectKey(species));
+      if (species.getMegaName() != null) {
+         ret.add(getSpeedupsKey(species));
+      }
+      return ret;
+   }
+   
    /**
     * @param species
     * @return
@@ -0,0 +1,149 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.fwk.config.manager;
+
+import java.util.Arrays;
+import java.util.List;
+
+import shuffle.fwk.data.Effect;
+import shuffle.fwk.data.Species;
+
+/**
+ * An immutable copy of the roster settings for every configured species, as of a single data
+ * version of the {@link RosterManager} and a single interning of the {@link SpeciesManager}. All
+ * values are held in arrays indexed by {@link Species#getId()}.
+ * 
+ * @author Andrew Meyers
+ *         
+ */
+public final class RosterSnapshot {
+   
+   private final long version;
+   private final List<Species> internedSpecies;
+   private final Effect[] activeEffects;
+   private final int[] levels;
+   private final int[] skillLevels;
+   private final int[] attacks;
+   private final long contentDigest;
+   
+   RosterSnapshot(long version, List<Species> internedSpecies, RosterManager rosterManager) {
+      this.version = version;
+      this.internedSpecies = internedSpecies;
+      int idLimit = internedSpecies.size();
+      activeEffects = new Effect[idLimit];
+      levels = new int[idLimit];
+      skillLevels = new int[idLimit];
+      Arrays.fill(skillLevels, 1);
+      attacks = new int[idLimit];
+      Arrays.fill(attacks, -1);
+      long digest = 0L;
+      for (Species s : internedSpecies) {
+         if (s != null) {
+            int id = s.getId();
+            activeEffects[id] = rosterManager.getActiveEffect(s);
+            levels[id] = rosterManager.getLevelForSpecies(s);
+            skillLevels[id] = rosterManager.getSkillLevelForSpecies(s);
+            attacks[id] = s.getAttack(levels[id]);
+            // Summed so that the digest does not depend on the order species were interned in.
+            digest += digestOf(String.format("%s|%s|%d|%d", s, activeEffects[id], levels[id], skillLevels[id]));
+         }
+      }
+      contentDigest = digest;
+   }
+   
+   /**
+    * A 64 bit FNV-1a hash of the given text, which unlike {@link String#hashCode()} is wide enough to
+    * be used as a content key.
+    * 
+    * @param text
+    * @return The digest of the text.
+    */
+   public static long digestOf(String text) {
+      long hash = 0xcbf29ce484222325L;
+      for (int i = 0; i < text.length(); i++) {
+         hash ^= text.charAt(i);
+         hash *= 0x100000001b3L;
+      }
+      return hash;
+   }
+   
+   /**
+    * @return The data version of the {@link RosterManager} this was taken from.
+    */
+   public long getVersion() {
+      return version;
+   }
+   
+   /**
+    * @return A digest of every species and its settings in this snapshot. Unlike the version, this
+    *         is the same for equal content in any session.
+    */
+   public long getContentDigest() {
+      return contentDigest;
+   }
+   
+   /**
+    * @param interned
+    *           A list from {@link SpeciesManager#getInternedSpecies()}
+    * @return True if this snapshot was built for exactly that list of species.
+    */
+   public boolean isFor(List<Species> interned) {
+      return internedSpecies == interned;
+   }
+   
+   /**
+    * @param s
+    * @return The active effect for the species, or null if it is not configured.
+    */
+   public Effect getActiveEffect(Species s) {
+      int id = s.getId();
+      return id < activeEffects.length ? activeEffects[id] : null;
+   }
+   
+   /**
+    * @param s
+    * @return The level of the species, or 0 if it is not configured.
+    */
+   public int getLevel(Species s) {
+      int id = s.getId();
+      return id < levels.length ? levels[id] : 0;
+   }
+   
+   /**
+    * @param s
+    * @return The skill level of the species, or 1 if it is not configured.
+    */
+   public int getSkillLevel(Species s) {
+      int id = s.getId();
+      return id < skillLevels.length ? skillLevels[id] : 1;
+   }
+   
+   /**
+    * @param s
+    * @return The attack of the species at its level.
+    */
+   public int getAttack(Species s) {
+      int id = s.getId();
+      if (id < attacks.length && attacks[id] >= 0) {
+         return attacks[id];
+      } else {
+         return s.getAttack(getLevel(s));
+      }
+   }
+}
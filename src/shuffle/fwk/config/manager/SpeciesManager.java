@@ -42,6 +42,9 @@ import shuffle.fwk.data.Species;
  */
 public class SpeciesManager extends ConfigManager {
    
+   // All configured species indexed by their id, as of the data version it was built for.
+   private volatile InternedSpecies internedSpecies = null;
+   
    public SpeciesManager(List<String> loadPaths, List<String> writePaths, ConfigFactory factory) {
       super(loadPaths, writePaths, factory);
    }
@@ -139,6 +142,45 @@ public class SpeciesManager extends ConfigManager {
       return getSpeciesByFilters(Collections.emptyList());
    }
    
+   /**
+    * Gets every configured species interned by its dense id, such that {@code get(s.getId())} is
+    * equal to s for every configured species s. Ids that are not configured map to null. The size of
+    * the list is one more than the greatest configured id, so it can be used to size tables indexed
+    * by species id.<br>
+    * The same list instance is returned until the species data changes.
+    * 
+    * @return An unmodifiable list of species, indexed by {@link Species#getId()}.
+    */
+   public List<Species> getInternedSpecies() {
+      InternedSpecies cached = internedSpecies;
+      if (cached == null || cached.version != getDataVersion()) {
+         cached = buildFromData(() -> {
+            Collection<Species> allSpecies = getAllSpecies();
+            int idLimit = 0;
+            for (Species s : allSpecies) {
+               idLimit = Math.max(idLimit, s.getId() + 1);
+            }
+            Species[] byId = new Species[idLimit];
+            for (Species s : allSpecies) {
+               byId[s.getId()] = s;
+            }
+            return new InternedSpecies(getDataVersion(), Collections.unmodifiableList(Arrays.asList(byId)));
+         });
+         internedSpecies = cached;
+      }
+      return cached.species;
+   }
+   
+   private static class InternedSpecies {
+      private final long version;
+      private final List<Species> species;
+      
+      private InternedSpecies(long version, List<Species> species) {
+         this.version = version;
+         this.species = species;
+      }
+   }
+   
    public Collection<Species> getSpeciesByFilters(List<Predicate<Species>> filters) {
       List<Predicate<Species>> filtersToCheck = new ArrayList<Predicate<Species>>(filters.size() + 1);
       filtersToCheck.add(species -> species != null);
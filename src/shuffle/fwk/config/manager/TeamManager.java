@@ -60,6 +60,11 @@ public class TeamManager extends ConfigManager {
    public static final String DEFAULT_KEYBINDS = "abcdeghijklmnopqrstuvwxyzABCDEGHIJKLMNOPQRSTUVWXYZ0123456789";
    public static final String DEFAULT_FROZEN = "fF";
    
+   // The teams found with fallbacks by stage name, valid for the data versions noted below.
+   private final Map<String, Team> resolvedTeams = new HashMap<String, Team>();
+   private long resolvedVersion = -1;
+   private long resolvedStagesVersion = -1;
+   
    public TeamManager(List<String> resources, List<String> files, ConfigFactory factory) {
       super(resources, files, factory);
    }
@@ -110,34 +115,66 @@ public class TeamManager extends ConfigManager {
    
    public Team getTeamForStage(Stage stage, boolean useFallbacks) {
       Team ret = null;
-      if (stage != null) {
+      if (stage != null && useFallbacks) {
+         ret = getResolvedTeamForStage(stage);
+      } else if (stage != null) {
          ret = getTeamValue(stage.getName());
-         if (ret == null && useFallbacks) {
-            /*
-             * If the stage's team does not exist, we will instead check for firstly the default
-             * type stage's team. Then we will fall back to the largest stage's team for which the
-             * stage's type matches the queried stage.
-             */
-            PkmType type = stage.getType();
-            Stage typeStage = new Stage(type);
-            ret = getTeamValue(typeStage.getName());
-            if (ret == null) {
-               ConfigManager stagesManager = getFactory().getStageManager();
-               for (Stage s : stagesManager.getStageValues()) {
-                  if (s.getType().equals(stage.getType())) {
-                     Team team = getTeamValue(s.getName());
-                     if (ret == null || team != null && team.getNames().size() > ret.getNames().size()) {
-                        ret = team;
-                     }
+      }
+      if (ret != null || useFallbacks) {
+         ret = new TeamImpl(ret);
+      }
+      return ret; // deep copy to avoid unwanted damage
+   }
+   
+   /**
+    * Finds the configured team for the given stage, using the fallbacks described in
+    * {@link #getTeamForStage(Stage)}. Searching the fallbacks means checking every stage, so the
+    * result is remembered until either the teams or the stages change.
+    * 
+    * @param stage
+    * @return The configured team, which must not be modified. Null if there is none.
+    */
+   private Team getResolvedTeamForStage(Stage stage) {
+      long version = getDataVersion();
+      long stagesVersion = getFactory().getStageManager().getDataVersion();
+      String stageName = stage.getName();
+      synchronized (resolvedTeams) {
+         if (version != resolvedVersion || stagesVersion != resolvedStagesVersion) {
+            resolvedTeams.clear();
+            resolvedVersion = version;
+            resolvedStagesVersion = stagesVersion;
+         } else if (resolvedTeams.containsKey(stageName)) {
+            return resolvedTeams.get(stageName);
+         }
+      }
+      Team ret = getTeamValue(stageName);
+      if (ret == null) {
+         /*
+          * If the stage's team does not exist, we will instead check for firstly the default
+          * type stage's team. Then we will fall back to the largest stage's team for which the
+          * stage's type matches the queried stage.
+          */
+         PkmType type = stage.getType();
+         Stage typeStage = new Stage(type);
+         ret = getTeamValue(typeStage.getName());
+         if (ret == null) {
+            ConfigManager stagesManager = getFactory().getStageManager();
+            for (Stage s : stagesManager.getStageValues()) {
+               if (s.getType().equals(stage.getType())) {
+                  Team team = getTeamValue(s.getName());
+                  if (ret == null || team != null && team.getNames().size() > ret.getNames().size()) {
+                     ret = team;
                   }
                }
             }
          }
       }
-      if (ret != null || useFallbacks) {
-         ret = new TeamImpl(ret);
+      synchronized (resolvedTeams) {
+         if (version == resolvedVersion && stagesVersion == resolvedStagesVersion) {
+            resolvedTeams.put(stageName, ret);
+         }
       }
-      return ret; // deep copy to avoid unwanted damage
+      return ret;
    }
    
    public boolean setTeamForStage(Team team, Stage stage) {
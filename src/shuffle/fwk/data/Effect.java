@@ -24,13 +24,11 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import shuffle.fwk.data.Board.Status;
 import shuffle.fwk.data.simulation.SimulationCore;
@@ -917,8 +915,8 @@ public enum Effect {
                if (matches.size() / 2 > 1 || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  int blockIndex = getRandomInt(matches.size() / 2);
+               if (task.rollOdds(odds)) {
+                  int blockIndex = task.randomInt(matches.size() / 2);
                   int row = matches.get(blockIndex * 2);
                   int col = matches.get(blockIndex * 2 + 1);
                   List<Integer> toErase = new ArrayList<Integer>(Arrays.asList(row, col));
@@ -944,8 +942,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   List<Integer> toErase = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -974,8 +972,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   List<Integer> toErase = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -1004,8 +1002,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   List<Integer> toErase = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -1043,8 +1041,8 @@ public enum Effect {
                   if (matches.size() > 1 || odds < 1.0) {
                      task.setIsRandom();
                   }
-                  if (odds >= Math.random()) {
-                     int blockIndex = getRandomInt(matches.size() / 2);
+                  if (task.rollOdds(odds)) {
+                     int blockIndex = task.randomInt(matches.size() / 2);
                      int row = matches.get(blockIndex * 2);
                      int col = matches.get(blockIndex * 2 + 1);
                      if (!isDisruption(board.getSpeciesAt(row, col)) && board.isCloudedAt(row, col)) {
@@ -1095,7 +1093,7 @@ public enum Effect {
                   if (odds > 0 && matches.size() / 2 > numIcons) {
                      task.setIsRandom();
                   }
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numIcons);
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numIcons);
                   // List<Integer> toClear = new ArrayList<Integer>(randoms.size() * 2);
                   numIcons -= randoms.size();
                   for (int i : randoms) {
@@ -1118,7 +1116,7 @@ public enum Effect {
                if (odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
+               if (task.rollOdds(odds)) {
                   if (!toErase.isEmpty()) {
                      eraseBonus(task, toErase, true);
                   }
@@ -1171,7 +1169,7 @@ public enum Effect {
                if (matches.size() > 2) {
                   task.setIsRandom();
                }
-               int blockIndex = getRandomInt(matches.size() / 2);
+               int blockIndex = task.randomInt(matches.size() / 2);
                int row = matches.get(blockIndex * 2);
                int col = matches.get(blockIndex * 2 + 1);
                final List<Integer> toErase = Arrays.asList(row, col);
@@ -1206,8 +1204,8 @@ public enum Effect {
             if (matches.size() / 2 > 1 || odds < 1.0) {
                task.setIsRandom();
             }
-            if (odds >= Math.random()) {
-               int blockIndex = getRandomInt(matches.size() / 2);
+            if (task.rollOdds(odds)) {
+               int blockIndex = task.randomInt(matches.size() / 2);
                int row = matches.get(blockIndex * 2);
                int col = matches.get(blockIndex * 2 + 1);
                final List<Integer> toClear = Arrays.asList(row, col);
@@ -1241,7 +1239,7 @@ public enum Effect {
                task.setIsRandom();
             }
             if (!matches.isEmpty() && doesActivate(comboEffect, task)) {
-               int blockIndex = getRandomInt(matches.size() / 2);
+               int blockIndex = task.randomInt(matches.size() / 2);
                int row = matches.get(blockIndex * 2);
                int col = matches.get(blockIndex * 2 + 1);
                final List<Integer> toErase = Arrays.asList(row, col);
@@ -1278,8 +1276,8 @@ public enum Effect {
                if (matches.size() / 2 > 1 || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  int blockIndex = getRandomInt(matches.size() / 2);
+               if (task.rollOdds(odds)) {
+                  int blockIndex = task.randomInt(matches.size() / 2);
                   int row = matches.get(blockIndex * 2);
                   int col = matches.get(blockIndex * 2 + 1);
                   final List<Integer> toErase = new ArrayList<Integer>(Arrays.asList(row, col));
@@ -1315,7 +1313,7 @@ public enum Effect {
                if (matches.size() / 2 > 1) {
                   task.setIsRandom();
                }
-               int blockIndex = getRandomInt(matches.size() / 2);
+               int blockIndex = task.randomInt(matches.size() / 2);
                int row = matches.get(blockIndex * 2);
                int col = matches.get(blockIndex * 2 + 1);
                task.addFinishedAction((ce, t) -> t.unfreezeAt(Arrays.asList(row, col)));
@@ -1349,9 +1347,9 @@ public enum Effect {
                if (matches.size() / 2 > 1 || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
+               if (task.rollOdds(odds)) {
                   Species effectSpecies = task.getEffectSpecies(comboEffect.getCoords());
-                  int blockIndex = getRandomInt(matches.size() / 2);
+                  int blockIndex = task.randomInt(matches.size() / 2);
                   int row = matches.get(blockIndex * 2);
                   int col = matches.get(blockIndex * 2 + 1);
                   List<Integer> toReplace = new ArrayList<Integer>(Arrays.asList(row, col));
@@ -1789,7 +1787,7 @@ public enum Effect {
             if (odds < 1.0) {
                task.setIsRandom();
             }
-            if (odds >= Math.random()) {
+            if (task.rollOdds(odds)) {
                task.getState().increaseMegaProgress((int) getMultiplier(task, comboEffect));
             }
          }
@@ -1903,7 +1901,7 @@ public enum Effect {
             if (odds < 1.0) {
                task.setIsRandom();
             }
-            if (odds >= Math.random()) {
+            if (task.rollOdds(odds)) {
                task.getState().increaseMegaProgress((int) getMultiplier(task, comboEffect));
             }
          }
@@ -1926,7 +1924,7 @@ public enum Effect {
             if (odds < 1.0) {
                task.setIsRandom();
             }
-            if (odds >= Math.random()) {
+            if (task.rollOdds(odds)) {
                task.getState().increaseMegaProgress((int) getMultiplier(task, comboEffect));
             }
          }
@@ -1958,7 +1956,7 @@ public enum Effect {
                   if (odds > 0 && matches.size() / 2 > numIcons) {
                      task.setIsRandom();
                   }
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numIcons);
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numIcons);
                   // List<Integer> toClear = new ArrayList<Integer>(randoms.size() * 2);
                   numIcons -= randoms.size();
                   for (int i : randoms) {
@@ -1981,7 +1979,7 @@ public enum Effect {
                if (odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
+               if (task.rollOdds(odds)) {
                   if (!toErase.isEmpty()) {
                      eraseBonus(task, toErase, true);
                   }
@@ -2017,8 +2015,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   List<Integer> toErase = new ArrayList<Integer>(randoms.size() * 2);
                   for (int i : randoms) {
                      toErase.add(matches.get(i * 2));
@@ -2051,8 +2049,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   List<Integer> toErase = new ArrayList<Integer>(randoms.size() * 2);
                   for (int i : randoms) {
                      toErase.add(matches.get(i * 2));
@@ -2086,8 +2084,8 @@ public enum Effect {
             if (matches.size() / 2 > numSwapped || odds < 1.0) {
                task.setIsRandom();
             }
-            if (odds >= Math.random()) {
-               List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+            if (task.rollOdds(odds)) {
+               List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                List<Integer> toClear = new ArrayList<Integer>();
                for (Integer i : randoms) {
                   int row = matches.get(i * 2);
@@ -2122,8 +2120,8 @@ public enum Effect {
             if (matches.size() / 2 > numSwapped || odds < 1.0) {
                task.setIsRandom();
             }
-            if (odds >= Math.random()) {
-               List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+            if (task.rollOdds(odds)) {
+               List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                List<Integer> toClear = new ArrayList<Integer>();
                for (Integer i : randoms) {
                   int row = matches.get(i * 2);
@@ -2158,8 +2156,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   List<Integer> toErase = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -2196,8 +2194,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   List<Integer> toErase = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -2234,8 +2232,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   List<Integer> toErase = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -2274,8 +2272,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   List<Integer> toErase = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -2312,8 +2310,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   List<Integer> toErase = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -2348,7 +2346,7 @@ public enum Effect {
                if (odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
+               if (task.rollOdds(odds)) {
                   List<Integer> toErase = new ArrayList<Integer>();
                   for (int i = 0; i < matches.size() / 2; i++ ) {
                      int row = matches.get(i * 2);
@@ -2384,8 +2382,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   List<Integer> toUnfreeze = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -2421,8 +2419,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   List<Integer> toUnfreeze = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -2458,7 +2456,7 @@ public enum Effect {
                if (odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
+               if (task.rollOdds(odds)) {
                   List<Integer> toUnfreeze = new ArrayList<Integer>();
                   for (Integer i : matches) {
                      int row = matches.get(i * 2);
@@ -2492,9 +2490,9 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
+               if (task.rollOdds(odds)) {
                   Species effectSpecies = task.getEffectSpecies(comboEffect.getCoords());
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   List<Integer> toReplace = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -2528,9 +2526,9 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
+               if (task.rollOdds(odds)) {
                   Species effectSpecies = task.getEffectSpecies(comboEffect.getCoords());
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   List<Integer> toReplace = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -3386,8 +3384,8 @@ public enum Effect {
                if (matches.size() / 2 > 2 || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, 2);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, 2);
                   List<Integer> toErase = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -3452,8 +3450,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   List<Integer> toReplace = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -3482,8 +3480,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   List<Integer> toReplace = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -3511,8 +3509,8 @@ public enum Effect {
                if (matches.size() / 2 > 2 || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  int blockIndex = getRandomInt(matches.size() / 2);
+               if (task.rollOdds(odds)) {
+                  int blockIndex = task.randomInt(matches.size() / 2);
                   int row = matches.get(blockIndex * 2);
                   int col = matches.get(blockIndex * 2 + 1);
                   List<Integer> toReplace = new ArrayList<Integer>(Arrays.asList(row, col));
@@ -3538,8 +3536,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   List<Integer> toReplace = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -3566,8 +3564,8 @@ public enum Effect {
                if (matches.size() / 2 > 1 || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  int blockIndex = getRandomInt(matches.size() / 2);
+               if (task.rollOdds(odds)) {
+                  int blockIndex = task.randomInt(matches.size() / 2);
                   int row = matches.get(blockIndex * 2);
                   int col = matches.get(blockIndex * 2 + 1);
                   List<Integer> toReplace = new ArrayList<Integer>(Arrays.asList(row, col));
@@ -3591,8 +3589,8 @@ public enum Effect {
                if (matches.size() / 2 > 1 || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  int blockIndex = getRandomInt(matches.size() / 2);
+               if (task.rollOdds(odds)) {
+                  int blockIndex = task.randomInt(matches.size() / 2);
                   int row = matches.get(blockIndex * 2);
                   int col = matches.get(blockIndex * 2 + 1);
                   List<Integer> toReplace = new ArrayList<Integer>(Arrays.asList(row, col));
@@ -3619,15 +3617,15 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0 || otherSupports.size() > 1) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   List<Integer> toReplace = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
                      int col = matches.get(i * 2 + 1);
                      toReplace.addAll(Arrays.asList(row, col));
                   }
-                  Species randomOtherSpecies = otherSupports.get(getRandomInt(otherSupports.size()));
+                  Species randomOtherSpecies = otherSupports.get(task.randomInt(otherSupports.size()));
                   handleReplaceOf(comboEffect, task, toReplace, randomOtherSpecies);
                }
             }
@@ -3671,8 +3669,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   final List<Integer> toErase = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -3713,8 +3711,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   final List<Integer> toErase = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -3756,8 +3754,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   final List<Integer> toErase = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -3797,8 +3795,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   final List<Integer> toErase = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -3837,8 +3835,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   final List<Integer> toErase = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -3879,8 +3877,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   final List<Integer> toErase = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -3922,8 +3920,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   List<Integer> toErase = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -3964,8 +3962,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   List<Integer> toErase = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -4000,8 +3998,8 @@ public enum Effect {
                if (matches.size() / 2 > numSwapped || odds < 1.0) {
                   task.setIsRandom();
                }
-               if (odds >= Math.random()) {
-                  List<Integer> randoms = getUniqueRandoms(0, matches.size() / 2, numSwapped);
+               if (task.rollOdds(odds)) {
+                  List<Integer> randoms = task.uniqueRandoms(0, matches.size() / 2, numSwapped);
                   final List<Integer> toErase = new ArrayList<Integer>();
                   for (Integer i : randoms) {
                      int row = matches.get(i * 2);
@@ -4188,16 +4186,16 @@ public enum Effect {
             // No matter what, this will always be inherently random.
             task.setIsRandom();
             ActivateMegaComboEffect effect = new ActivateMegaComboEffect(comboEffect);
-            int col1 = 1 + getRandomInt(6); // [1,6]
-            int col2 = 1 + getRandomInt(5); // [1,5]
+            int col1 = 1 + task.randomInt(6); // [1,6]
+            int col2 = 1 + task.randomInt(5); // [1,5]
             if (col2 >= col1) {
                col2++; // offset for map of [1,5] around the choice for col1
             }
             // First step
             effect.addPlannedOptions(Arrays.asList(1, col1, 1, col2));
             for (int row = 2; row <= Board.NUM_ROWS; row++) {
-               col1 = getNextColumn(col1);
-               col2 = getNextColumn(col2);
+               col1 = getNextColumn(col1, task);
+               col2 = getNextColumn(col2, task);
                effect.addPlannedOptions(Arrays.asList(row, col1, row, col2));
             }
             return effect;
@@ -4206,18 +4204,19 @@ public enum Effect {
       
       /**
        * @param col
+       * @param task
        * @return
        */
-      private int getNextColumn(int col) {
+      private int getNextColumn(int col, SimulationTask task) {
          int ret = col;
          if (ret <= 1) {
-            ret += getRandomInt(3) == 0 ? 1 : 0;
+            ret += task.randomInt(3) == 0 ? 1 : 0;
             // 2/3 chance of staying in the same column, 1/3 chance of changing
          } else if (ret >= 6) {
-            ret -= getRandomInt(3) == 0 ? 1 : 0;
+            ret -= task.randomInt(3) == 0 ? 1 : 0;
             // same as above
          } else {
-            ret += getRandomInt(3) - 1;
+            ret += task.randomInt(3) - 1;
             // 1/3 chance of moving left, staying the same, or moving right
          }
          return ret;
@@ -4841,7 +4840,7 @@ public enum Effect {
             if (coords.size() / 2 > 3) {
                task.setIsRandom();
             }
-            List<Integer> indexOrder = getUniqueRandoms(0, coords.size() / 2, 3);
+            List<Integer> indexOrder = task.uniqueRandoms(0, coords.size() / 2, 3);
             // 3 random selections at most, of a single type-matched species.
             List<Integer> plan = new ArrayList<Integer>(coords.size());
             for (int i = 0; i < indexOrder.size(); i++) {
@@ -5488,7 +5487,7 @@ public enum Effect {
             if (coords.size() / 2 > 3) {
                task.setIsRandom();
             }
-            List<Integer> indexOrder = getUniqueRandoms(0, coords.size() / 2, 3);
+            List<Integer> indexOrder = task.uniqueRandoms(0, coords.size() / 2, 3);
             // 3 random selections at most, of a single type-matched species.
             List<Integer> plan = new ArrayList<Integer>(coords.size());
             for (int i = 0; i < indexOrder.size(); i++) {
@@ -5591,8 +5590,8 @@ public enum Effect {
          } else {
             task.setIsRandom();
             ActivateMegaComboEffect effect = new ActivateMegaComboEffect(comboEffect);
-            int row1 = 1 + getRandomInt(3); // [1,3]
-            int row2 = 4 + getRandomInt(3); // [4,6]
+            int row1 = 1 + task.randomInt(3); // [1,3]
+            int row2 = 4 + task.randomInt(3); // [4,6]
             effect.addPlannedOptions(Arrays.asList(row1, 1, row2, 1));
             if (row2 >= 6) {
                row2--;
@@ -5652,8 +5651,8 @@ public enum Effect {
          } else {
             task.setIsRandom();
             ActivateMegaComboEffect effect = new ActivateMegaComboEffect(comboEffect);
-            int row1 = 1 + getRandomInt(3); // [1,3]
-            int row2 = 4 + getRandomInt(3); // [4,6]
+            int row1 = 1 + task.randomInt(3); // [1,3]
+            int row2 = 4 + task.randomInt(3); // [4,6]
             effect.addPlannedOptions(Arrays.asList(row1, 1, row2, 1));
             if (row2 >= 6) {
                row2--;
@@ -5714,8 +5713,8 @@ public enum Effect {
          } else {
             task.setIsRandom();
             ActivateMegaComboEffect effect = new ActivateMegaComboEffect(comboEffect);
-            int col1 = 1 + getRandomInt(3); // [1,3]
-            int col2 = 4 + getRandomInt(3); // [4,6]
+            int col1 = 1 + task.randomInt(3); // [1,3]
+            int col2 = 4 + task.randomInt(3); // [4,6]
             effect.addPlannedOptions(Arrays.asList(1, col1, 1, col2));
             if (col2 >= 6) {
                col2--;
@@ -5918,16 +5917,16 @@ public enum Effect {
             // No matter what, this will always be inherently random.
             task.setIsRandom();
             ActivateMegaComboEffect effect = new ActivateMegaComboEffect(comboEffect);
-            int row1 = 1 + getRandomInt(6); // [1,6]
-            int row2 = 1 + getRandomInt(5); // [1,5]
+            int row1 = 1 + task.randomInt(6); // [1,6]
+            int row2 = 1 + task.randomInt(5); // [1,5]
             if (row2 >= row1) {
                row2++; // offset for map of [1,5] around the choice for col1
             }
             // First step
             effect.addPlannedOptions(Arrays.asList(row1, 1, row2, 1));
             for (int col = 2; col <= Board.NUM_COLS; col++) {
-               row1 = getNextRow(row1);
-               row2 = getNextRow(row2);
+               row1 = getNextRow(row1, task);
+               row2 = getNextRow(row2, task);
                effect.addPlannedOptions(Arrays.asList(row1, col, row2, col));
             }
             return effect;
@@ -5936,18 +5935,19 @@ public enum Effect {
       
       /**
        * @param row
+       * @param task
        * @return
        */
-      private int getNextRow(int row) {
+      private int getNextRow(int row, SimulationTask task) {
          int ret = row;
          if (ret <= 1) {
-            ret += getRandomInt(3) == 0 ? 1 : 0;
+            ret += task.randomInt(3) == 0 ? 1 : 0;
             // 2/3 chance of staying in the same row, 1/3 chance of changing
          } else if (ret >= 6) {
-            ret -= getRandomInt(3) == 0 ? 1 : 0;
+            ret -= task.randomInt(3) == 0 ? 1 : 0;
             // same as above
          } else {
-            ret += getRandomInt(3) - 1;
+            ret += task.randomInt(3) - 1;
             // 1/3 chance of moving up, staying the same, or moving down
          }
          return ret;
@@ -6744,21 +6744,6 @@ public enum Effect {
       return ret;
    }
    
-   /**
-    * Gets n random numbers in the range [start, end) <br>
-    * this is inclusive at start, exclusive at end. Order is not guaranteed.
-    * 
-    * @param start
-    * @param end
-    * @param n
-    * @return
-    */
-   protected List<Integer> getUniqueRandoms(int start, int end, int n) {
-      List<Integer> allIndexes = IntStream.range(start, end).boxed().collect(Collectors.toList());
-      Collections.shuffle(allIndexes, r);
-      return allIndexes.subList(0, Math.max(0, Math.min(n, allIndexes.size())));
-   }
-   
    /**
     * @param type
     * @param board
@@ -6777,7 +6762,7 @@ public enum Effect {
       }
       Species result = null;
       if (!options.isEmpty()) {
-         int randomFoundSpecies = getRandomInt(options.size());
+         int randomFoundSpecies = task.randomInt(options.size());
          result = options.get(randomFoundSpecies);
       }
       return result;
@@ -6825,7 +6810,7 @@ public enum Effect {
       }
       Species result = null;
       if (!options.isEmpty()) {
-         int randomFoundSpecies = getRandomInt(options.size());
+         int randomFoundSpecies = task.randomInt(options.size());
          result = options.get(randomFoundSpecies);
       }
       return result;
@@ -7124,19 +7109,6 @@ public enum Effect {
       return new NumberSpan();
    }
    
-   private static Random r = new Random(System.nanoTime());
-   
-   /**
-    * Returns an integer between 0 and the given bound, inclusive at 0 and exclusive at the bound.
-    * 
-    * @param bound
-    * @return
-    */
-   protected static final int getRandomInt(int bound) {
-      r.setSeed(r.nextLong());
-      return r.nextInt(bound);
-   }
-   
    /**
     * @return
     */
@@ -7221,7 +7193,7 @@ public enum Effect {
    
    protected boolean doesActivate(ActivateComboEffect comboEffect, SimulationTask task) {
       double odds = getOdds(task, comboEffect);
-      return odds >= 1.0 || odds >= Math.random();
+      return task.rollOdds(odds);
    }
    
    protected boolean canAndDoesActivate(ActivateComboEffect comboEffect, SimulationTask task) {
@@ -7278,7 +7250,7 @@ public enum Effect {
          double odds = getOdds(task, comboEffect);
          if (odds > 0) {
             task.setIsRandom();
-            if (odds >= Math.random()) {
+            if (task.rollOdds(odds)) {
                b.setStatus(status);
                b.setStatusDuration(turns > 0 ? turns : 1);
             }
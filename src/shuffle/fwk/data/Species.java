@@ -171,6 +171,14 @@ public class Species implements Comparable<Species>, I18nUser {
       return number;
    }
    
+   /**
+    * @return The dense identifier for this species. Equal species share the same id, and ids are
+    *         assigned from 0 upwards in the order species are first created.
+    */
+   public int getId() {
+      return ID;
+   }
+   
    public String getName() {
       return name;
    }
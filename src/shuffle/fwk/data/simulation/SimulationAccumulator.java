@@ -0,0 +1,240 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.fwk.data.simulation;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import shuffle.fwk.data.Board;
+import shuffle.fwk.data.simulation.util.FeederSampling;
+import shuffle.fwk.data.simulation.util.NumberSpan;
+
+/**
+ * The running totals of the simulated outcomes of one move, from which its
+ * {@link SimulationResult} is made. Accumulators for the same move from separate simulations can
+ * be merged, which gives the same totals as if every outcome had been added to one of them.
+ * 
+ * @author Andrew Meyers
+ * 
+ */
+public class SimulationAccumulator {
+   
+   private NumberSpan score = new NumberSpan();
+   private NumberSpan gold = new NumberSpan();
+   private NumberSpan blocks = new NumberSpan();
+   private NumberSpan disrupts = new NumberSpan();
+   private NumberSpan combos = new NumberSpan();
+   private NumberSpan progress = new NumberSpan();
+   // keeps track of all board chances, and the best one.
+   private final Map<Board, Float> boardChances;
+   private Board likelyBoard = null;
+   private int count = 0;
+   private double weightSum = 0.0;
+   // whether the outcomes depend on the feeder
+   private boolean random = false;
+   
+   public SimulationAccumulator() {
+      boardChances = new HashMap<Board, Float>();
+   }
+   
+   /**
+    * Makes an accumulator with the given totals, such as one read back from another process.
+    */
+   public SimulationAccumulator(NumberSpan score, NumberSpan gold, NumberSpan blocks, NumberSpan disrupts,
+         NumberSpan combos, NumberSpan progress, Map<Board, Float> boardChances, int count, double weightSum,
+         boolean random) {
+      this.score = score;
+      this.gold = gold;
+      this.blocks = blocks;
+      this.disrupts = disrupts;
+      this.combos = combos;
+      this.progress = progress;
+      this.boardChances = new HashMap<Board, Float>(boardChances);
+      this.count = count;
+      this.weightSum = weightSum;
+      this.random = random;
+      for (Board b : this.boardChances.keySet()) {
+         if (isMoreLikely(b)) {
+            likelyBoard = b;
+         }
+      }
+   }
+   
+   /**
+    * @param state
+    *           The outcome to add
+    * @param weight
+    *           How much the outcome counts towards the averages
+    */
+   public void add(SimulationState state, float weight) {
+      score = score.put(state.getScore().weigh(weight));
+      gold = gold.put(state.getGold(), weight);
+      blocks = blocks.put(state.getBlocksCleared(), weight);
+      disrupts = disrupts.put(state.getDisruptionsCleared(), weight);
+      combos = combos.put(state.getCombosCleared(), weight);
+      progress = progress.put(state.getMegaProgress(), weight);
+      addBoardChance(state.getResultBoard(), weight);
+      count++;
+      weightSum += weight;
+      random |= state.isRandom();
+   }
+   
+   private void addBoardChance(Board b, float weight) {
+      float boardChance = weight;
+      if (boardChances.containsKey(b)) {
+         boardChance += boardChances.get(b);
+      }
+      boardChances.put(b, boardChance);
+      if (isMoreLikely(b)) {
+         likelyBoard = b;
+      }
+   }
+   
+   /**
+    * Boards that are just as likely are told apart by the boards themselves, rather than by which
+    * was added first, so that the likely board does not depend on how the outcomes were split up
+    * and merged.
+    * 
+    * @param b
+    * @return True if the given board should replace the likely board.
+    */
+   private boolean isMoreLikely(Board b) {
+      if (likelyBoard == null) {
+         return true;
+      }
+      int chances = Float.compare(boardChances.get(b), boardChances.get(likelyBoard));
+      if (chances == 0 && b.hashCode() == likelyBoard.hashCode()) {
+         return b.toString().compareTo(likelyBoard.toString()) < 0;
+      }
+      return chances == 0 ? b.hashCode() < likelyBoard.hashCode() : chances > 0;
+   }
+   
+   /**
+    * Adds all the outcomes of the given accumulator to this one.
+    * 
+    * @param other
+    */
+   public void merge(SimulationAccumulator other) {
+      score = score.put(other.score);
+      gold = gold.put(other.gold);
+      blocks = blocks.put(other.blocks);
+      disrupts = disrupts.put(other.disrupts);
+      combos = combos.put(other.combos);
+      progress = progress.put(other.progress);
+      for (Map.Entry<Board, Float> entry : other.boardChances.entrySet()) {
+         addBoardChance(entry.getKey(), entry.getValue());
+      }
+      count += other.count;
+      weightSum += other.weightSum;
+      random |= other.random;
+   }
+   
+   /**
+    * Rescales the weights of everything added so far to average 1, so that the averages are over the
+    * outcomes' likelihoods. This is only needed when the weights were not already scaled when added.
+    */
+   public void normalize() {
+      if (count == 0 || weightSum <= 0.0 || weightSum == count) {
+         return;
+      }
+      float scale = (float) (count / weightSum);
+      score = score.weigh(scale);
+      gold = gold.weigh(scale);
+      blocks = blocks.weigh(scale);
+      disrupts = disrupts.weigh(scale);
+      combos = combos.weigh(scale);
+      progress = progress.weigh(scale);
+      for (Map.Entry<Board, Float> entry : boardChances.entrySet()) {
+         entry.setValue(entry.getValue() * scale);
+      }
+      weightSum = count;
+   }
+   
+   /**
+    * @param move
+    * @param processUUID
+    * @param startTime
+    * @param sampling
+    * @return The result for everything added, or null if nothing was.
+    */
+   public SimulationResult getResult(List<Integer> move, UUID processUUID, long startTime, FeederSampling sampling) {
+      SimulationResult result = null;
+      if (likelyBoard != null) {
+         result = new SimulationResult(move, likelyBoard, score, gold, progress, processUUID, blocks, disrupts, combos,
+               startTime, count, sampling);
+      }
+      return result;
+   }
+   
+   public NumberSpan getScore() {
+      return score;
+   }
+   
+   public NumberSpan getGold() {
+      return gold;
+   }
+   
+   public NumberSpan getBlocksCleared() {
+      return blocks;
+   }
+   
+   public NumberSpan getDisruptionsCleared() {
+      return disrupts;
+   }
+   
+   public NumberSpan getCombosCleared() {
+      return combos;
+   }
+   
+   public NumberSpan getProgress() {
+      return progress;
+   }
+   
+   public Map<Board, Float> getBoardChances() {
+      return Collections.unmodifiableMap(boardChances);
+   }
+   
+   public int getCount() {
+      return count;
+   }
+   
+   public double getWeightSum() {
+      return weightSum;
+   }
+   
+   /**
+    * Marks the outcomes as depending on the feeder, as when a move was simulated once for each of
+    * them.
+    */
+   public void setIsRandom() {
+      random = true;
+   }
+   
+   /**
+    * @return True if the outcomes depend on the feeder, so that those from separate feeders all
+    *         count. Otherwise there is only the one outcome, which every simulation of the move
+    *         would repeat.
+    */
+   public boolean isRandom() {
+      return random;
+   }
+}
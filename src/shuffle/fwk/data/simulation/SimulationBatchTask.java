@@ -0,0 +1,131 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.fwk.data.simulation;
+
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Simulates one move for a list of feeders, folding each finished state into an accumulator as soon
+ * as it is done instead of keeping a task for each of them. The feeders are halved until at most
+ * {@value #GRAIN} are left, which are simulated one after another on the current thread. A half is
+ * only forked while other threads in the pool are short of work, and is otherwise simulated on the
+ * current thread as well, so that the chunks other threads steal are large when the pool is busy and
+ * small when it is idle. The halves are always split and merged the same way however they were
+ * run, so the totals do not depend on the scheduling.<br>
+ * <br>
+ * Every task for the move starts from the same swapped board, which is made once for the batch.
+ * If told to stop when its core is no longer current, the feeders not yet simulated are left out
+ * and the accumulator must be discarded.
+ * 
+ * @author Andrew Meyers
+ * 
+ */
+@SuppressWarnings("serial")
+public class SimulationBatchTask extends RecursiveTask<SimulationAccumulator> {
+   
+   /**
+    * Splitting stops while the current thread has more than this many queued tasks for others to
+    * steal.
+    */
+   private static final int SURPLUS_LIMIT = 2;
+   /**
+    * The most feeders simulated without splitting them further.
+    */
+   private static final int GRAIN = 4;
+   
+   private final SimulationCore simulationCore;
+   private final List<Integer> move;
+   private final List<SimulationFeeder> feeders;
+   private final SimulationTask.Start start;
+   private final int first;
+   private final int end;
+   private final boolean stopWhenSuperseded;
+   
+   /**
+    * @param simulationCore
+    * @param move
+    * @param feeders
+    *           The feeders to simulate the move with.
+    */
+   public SimulationBatchTask(SimulationCore simulationCore, List<Integer> move, List<SimulationFeeder> feeders) {
+      this(simulationCore, move, feeders, false);
+   }
+   
+   /**
+    * @param simulationCore
+    * @param move
+    * @param feeders
+    *           The feeders to simulate the move with.
+    * @param stopWhenSuperseded
+    *           True to stop simulating feeders as soon as the core is no longer current.
+    */
+   public SimulationBatchTask(SimulationCore simulationCore, List<Integer> move, List<SimulationFeeder> feeders,
+         boolean stopWhenSuperseded) {
+      this(simulationCore, move, feeders, SimulationTask.getStart(simulationCore, move), 0, feeders.size(),
+            stopWhenSuperseded);
+   }
+   
+   private SimulationBatchTask(SimulationCore simulationCore, List<Integer> move, List<SimulationFeeder> feeders,
+         SimulationTask.Start start, int first, int end, boolean stopWhenSuperseded) {
+      this.simulationCore = simulationCore;
+      this.move = move;
+      this.feeders = feeders;
+      this.start = start;
+      this.first = first;
+      this.end = end;
+      this.stopWhenSuperseded = stopWhenSuperseded;
+   }
+   
+   @Override
+   protected SimulationAccumulator compute() {
+      if (end - first <= GRAIN) {
+         return simulateAll();
+      }
+      int middle = first + end >>> 1;
+      SimulationBatchTask lower = new SimulationBatchTask(simulationCore, move, feeders, start, first, middle,
+            stopWhenSuperseded);
+      SimulationBatchTask upper = new SimulationBatchTask(simulationCore, move, feeders, start, middle, end,
+            stopWhenSuperseded);
+      SimulationAccumulator ret;
+      if (inForkJoinPool() && getSurplusQueuedTaskCount() <= SURPLUS_LIMIT) {
+         upper.fork();
+         ret = lower.compute();
+         ret.merge(upper.join());
+      } else {
+         ret = lower.compute();
+         ret.merge(upper.compute());
+      }
+      return ret;
+   }
+   
+   private SimulationAccumulator simulateAll() {
+      SimulationAccumulator ret = new SimulationAccumulator();
+      for (int i = first; i < end; i++) {
+         if (stopWhenSuperseded && !simulationCore.isCurrent()) {
+            break;
+         }
+         SimulationState state = new SimulationTask(simulationCore, move, feeders.get(i), start).invoke();
+         if (state != null) {
+            ret.add(state, state.getWeight());
+         }
+      }
+      return ret;
+   }
+}
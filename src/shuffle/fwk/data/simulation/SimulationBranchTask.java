@@ -0,0 +1,117 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.fwk.data.simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import shuffle.fwk.data.simulation.util.DecisionPath;
+import shuffle.fwk.data.simulation.util.NumberSpan;
+
+/**
+ * Simulates every outcome of the random effects for one move and feeder, rather than a single
+ * random one. Each outcome is weighted by its probability, and outcomes that end identically are
+ * merged into one. If there are too many outcomes, this gives up and samples one instead, as do all
+ * the other tasks sharing its flag from then on.
+ * 
+ * @author Andrew Meyers
+ * 
+ */
+@SuppressWarnings("serial")
+public class SimulationBranchTask extends RecursiveTask<Collection<SimulationTask>> {
+   
+   /**
+    * The most outcomes simulated for a single feeder before falling back to a random sample.
+    */
+   public static final int MAX_BRANCHES = 32;
+   
+   private final SimulationCore simulationCore;
+   private final List<Integer> move;
+   private final SimulationFeeder feeder;
+   private final AtomicBoolean tooManyBranches;
+   
+   public SimulationBranchTask(SimulationCore simulationCore, List<Integer> move, SimulationFeeder feeder,
+         AtomicBoolean tooManyBranches) {
+      this.simulationCore = simulationCore;
+      this.move = move;
+      this.feeder = feeder;
+      this.tooManyBranches = tooManyBranches;
+   }
+   
+   @Override
+   protected Collection<SimulationTask> compute() {
+      Map<List<Object>, SimulationTask> outcomes = new LinkedHashMap<List<Object>, SimulationTask>();
+      DecisionPath path = new DecisionPath();
+      int branches = 0;
+      while (path != null) {
+         if (tooManyBranches.get()) {
+            return getSample();
+         }
+         SimulationTask task = new SimulationTask(simulationCore, move, feeder, path);
+         SimulationState state = task.invoke();
+         if (state == null || !path.isReplayed()) {
+            return getSample();
+         }
+         branches++;
+         if (branches + path.getMinimumRemaining() > MAX_BRANCHES) {
+            tooManyBranches.set(true);
+            return getSample();
+         }
+         float weight = (float) path.getProbability();
+         List<Object> outcome = getOutcome(state);
+         SimulationTask same = outcomes.get(outcome);
+         if (same == null) {
+            state.setWeight(weight);
+            outcomes.put(outcome, task);
+         } else {
+            SimulationState sameState = same.join();
+            sameState.setWeight(sameState.getWeight() + weight);
+         }
+         path = path.next();
+      }
+      return new ArrayList<SimulationTask>(outcomes.values());
+   }
+   
+   private Collection<SimulationTask> getSample() {
+      SimulationTask task = new SimulationTask(simulationCore, move, feeder);
+      task.invoke();
+      return Collections.singletonList(task);
+   }
+   
+   /**
+    * The score is compared by its exact values, since {@link NumberSpan#equals(Object)} only
+    * compares the rounded text and would merge scores that differ slightly.
+    * 
+    * @param state
+    * @return Everything about the given finished state that is used in its result.
+    */
+   private static List<Object> getOutcome(SimulationState state) {
+      NumberSpan score = state.getScore();
+      return Arrays.asList(state.getResultBoard(), score.getMinimum(), score.getMaximum(), score.getTotal(),
+            score.getCount(), state.getGold(), state.getBlocksCleared(), state.getDisruptionsCleared(),
+            state.getCombosCleared(), state.getMegaProgress());
+   }
+}
@@ -24,8 +24,10 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.UUID;
@@ -34,17 +36,23 @@ import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.RecursiveTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 import shuffle.fwk.GradingMode;
-import shuffle.fwk.config.manager.EffectManager;
+import shuffle.fwk.config.manager.EffectTableSnapshot;
 import shuffle.fwk.config.manager.RosterManager;
+import shuffle.fwk.config.manager.RosterSnapshot;
 import shuffle.fwk.config.manager.SpeciesManager;
 import shuffle.fwk.data.Board;
 import shuffle.fwk.data.Effect;
+import shuffle.fwk.data.PkmType;
 import shuffle.fwk.data.Species;
 import shuffle.fwk.data.Stage;
 import shuffle.fwk.data.Team;
+import shuffle.fwk.data.simulation.util.FeederSampling;
 import shuffle.fwk.data.simulation.util.SimulationAcceptor;
+import shuffle.fwk.data.simulation.util.SimulationEvents;
+import shuffle.fwk.data.simulation.util.SimulationMetrics;
 
 /**
  * The core of the simulation for Shuffle Move.<br>
@@ -59,6 +67,8 @@ public class SimulationCore extends RecursiveAction {
    private static final long serialVersionUID = -4790004708567579267L;
    
    private static final Logger LOG = Logger.getLogger(SimulationCore.class.getName());
+   // The number of feeders used to measure the cost of a task when running to a latency target.
+   private static final int WARMUP_FEEDERS = 5;
    
    static {
       LOG.setLevel(Level.FINE);
@@ -69,15 +79,32 @@ public class SimulationCore extends RecursiveAction {
    // Determines how many variations of possible boards will be used to simulate moves.
    // Increase this to improve result accuracy at the cost of processing time.
    private final int preferredCount;
+   // The number of variations each random move may be refined up to once the first results are out.
+   private final int refinementLimit;
+   // The time in milliseconds to spend on a run, or 0 to always use the preferred count.
+   private final int targetLatency;
+   // True to simulate every outcome of random effects for each feeder, rather than one at random.
+   private final boolean exactBranching;
+   // True to give every move the same random numbers for each feeder, so they differ only by move.
+   private final boolean commonRandomNumbers;
+   // How the blocks and random effects of each set of feeders are drawn.
+   private final FeederSampling feederSampling;
+   // The seed every random number of the run is drawn from, or null to draw them freshly.
+   private final Long seed;
+   // Draws the feeders when seeded, so that each batch of them follows on from the last.
+   private final Random feederRandom;
+   // The number of variations actually used for each random move so far.
+   private int samplesPerMove;
    private final Board board;
    private final Set<Species> possibleBlocks;
+   private final Set<Species> teamSpecies;
    private final Species megaSlot;
-   private final Map<Species, Integer> speciesLevels;
-   private final Map<Species, Integer> speciesSkillLevels;
-   private final Map<Species, Effect> speciesEffects;
+   private final RosterSnapshot roster;
    private final Stage stage;
    private final Set<Species> supportSpecies;
-   private final Set<Species> nonSupportSpecies;
+   private final List<Species> internedSpecies;
+   // Built on first use, since only a few effects need it.
+   private volatile Set<Species> nonSupportSpecies = null;
    private final int megaProgress;
    private final int megaThreshold;
    private final boolean megaAllowed;
@@ -89,26 +116,42 @@ public class SimulationCore extends RecursiveAction {
    private final Collection<Effect> disabledEffects;
    private final boolean attackPowerUp;
    private final int effectThreshold;
-   private final EffectManager effectManager;
+   private final EffectTableSnapshot effectTable;
    private final GradingMode defaultGradingMode;
    private final boolean mobileMode;
+   // Score table, fixed for the entire run.
+   private final double[] typeModifiers;
+   // The moves and their outcomes from the first pass, kept for refinement.
+   private List<List<Integer>> validMoves = null;
+   private Map<List<Integer>, SimulationAccumulator> moveToOutcomesMap = null;
+   // Built on first use, from the inputs which never change during a run.
+   private volatile String contextFingerprint = null;
    
    // Gets all the data it needs from the user, as deep copies of all relevant information.
    public SimulationCore(SimulationUser user, UUID processUUID) {
       this.processUUID = processUUID;
-      minHeight = 0; // Math.max(0, user.getPreferredFeederHeight());
       preferredCount = Math.max(1, user.getPreferredNumFeeders());
-      Board userBoard = user.getBoardManager().getBoard();
+      refinementLimit = user.getRefinementLimit();
+      targetLatency = Math.max(0, user.getTargetLatency());
+      exactBranching = user.isExactBranching();
+      commonRandomNumbers = user.isCommonRandomNumbers();
+      feederSampling = user.getFeederSampling();
+      // Filled feeders change the results, so they are only used by the sampling modes that need them.
+      minHeight = feederSampling == null || feederSampling == FeederSampling.RANDOM ? 0
+            : Math.max(0, user.getPreferredFeederHeight());
+      seed = user.getSeed();
+      feederRandom = seed == null ? null : new Random(seed);
+      Board userBoard = user.getBoard();
       RosterManager rosterManager = user.getRosterManager();
       SpeciesManager speciesManager = user.getSpeciesManager();
       board = new Board(userBoard);
-      stage = user.getBoardManager().getCurrentStage();
+      stage = user.getCurrentStage();
       Team userTeam = user.getCurrentTeam();
       megaSlot = speciesManager.getSpeciesByName(userTeam.getMegaSlotName());
       megaProgress = user.getMegaProgress();
       megaAllowed = user.isMegaAllowed();
-      effectManager = new EffectManager(user.getEffectManager());
-      megaThreshold = userTeam.getMegaThreshold(speciesManager, rosterManager, effectManager);
+      effectTable = user.getEffectManager().getSnapshot();
+      megaThreshold = userTeam.getMegaThreshold(speciesManager, rosterManager, user.getEffectManager());
       remainingHealth = user.getRemainingHealth();
       remainingMoves = user.getRemainingMoves() - 1;
       possibleBlocks = new HashSet<Species>();
@@ -122,33 +165,29 @@ public class SimulationCore extends RecursiveAction {
        * (sky-fall)
        */
       // SpeciesPresent is given the entire team
-      Collection<Species> speciesPresent = new HashSet<Species>(userTeam.getSpecies(speciesManager));
+      teamSpecies = Collections.unmodifiableSet(new HashSet<Species>(userTeam.getSpecies(speciesManager)));
+      Collection<Species> speciesPresent = new HashSet<Species>(teamSpecies);
       // Support species is all of the team that isn't a non-support and isn't a fixed species
       supportSpecies = new HashSet<Species>(speciesPresent);
       supportSpecies.removeIf((s) -> userTeam.isNonSupport(s));
       supportSpecies.removeAll(Species.FIXED_SPECIES);
       // Add all the board species to speciesPresent
       speciesPresent.addAll(board.getSpeciesPresent());
-      // NonSupportSpecies is any species that is not support, and not a fixed species.
-      nonSupportSpecies = new HashSet<Species>(speciesManager.getAllSpecies());
-      nonSupportSpecies.removeIf((s) -> supportSpecies.contains(s));
-      nonSupportSpecies.removeAll(Species.FIXED_SPECIES);
+      // NonSupportSpecies is any species that is not support, and not a fixed species. It is built
+      // from all the interned species when first needed.
+      internedSpecies = speciesManager.getInternedSpecies();
       possibleBlocks.addAll(speciesPresent);
       possibleBlocks.removeIf((s) -> !s.getDefaultEffect().isAutoGenerated());
-      speciesEffects = new HashMap<Species, Effect>();
-      for (Species s : speciesManager.getAllSpecies()) {
-         speciesEffects.put(s, rosterManager.getActiveEffect(s));
-      }
       /*
        * Has to be EVERY species, since some effects can now replace blocks with species that don't
-       * actually exist in the team or board yet.
+       * actually exist in the team or board yet. The snapshot is shared until the roster changes.
        */
-      int numSpecies = userTeam.getNames().size();
-      speciesLevels = new HashMap<Species, Integer>(numSpecies);
-      speciesSkillLevels = new HashMap<Species, Integer>(numSpecies);
-      for (Species s : speciesManager.getAllSpecies()) {
-         speciesLevels.put(s, rosterManager.getLevelForSpecies(s));
-         speciesSkillLevels.put(s, rosterManager.getSkillLevelForSpecies(s));
+      roster = rosterManager.getSnapshot(speciesManager);
+      // The modifier each attacking type has against this stage, by type.
+      PkmType stageType = stage.getType();
+      typeModifiers = new double[PkmType.values().length];
+      for (PkmType type : PkmType.values()) {
+         typeModifiers[type.ordinal()] = PkmType.getMultiplier(type, stageType);
       }
       acceptor = user;
       disabledEffects = user.getDisabledEffects();
@@ -158,10 +197,74 @@ public class SimulationCore extends RecursiveAction {
       mobileMode = user.isMobileMode();
    }
    
+   /**
+    * Creates a core for the turn after the given one, as it would be created from the user once the
+    * given result has been played. Everything except the board, mega progress, health and moves is
+    * shared with the previous core, so this does not need to read anything from the user and may
+    * be called from any thread.
+    * 
+    * @param previous
+    *           The core for the current turn
+    * @param processUUID
+    *           The id for the new core
+    * @param acceptor
+    *           The acceptor for the new core's results
+    * @param resultBoard
+    *           The board after playing the move
+    * @param remainingHealth
+    *           The health remaining after playing the move
+    * @param remainingMoves
+    *           The moves remaining after playing the move, as the user would report them
+    */
+   public SimulationCore(SimulationCore previous, UUID processUUID, SimulationAcceptor acceptor, Board resultBoard,
+         int remainingHealth, int remainingMoves) {
+      this.processUUID = processUUID;
+      this.acceptor = acceptor;
+      minHeight = previous.minHeight;
+      preferredCount = previous.preferredCount;
+      refinementLimit = previous.refinementLimit;
+      targetLatency = previous.targetLatency;
+      exactBranching = previous.exactBranching;
+      commonRandomNumbers = previous.commonRandomNumbers;
+      feederSampling = previous.feederSampling;
+      seed = previous.seed;
+      feederRandom = seed == null ? null : new Random(seed);
+      board = new Board(resultBoard);
+      stage = previous.stage;
+      megaSlot = previous.megaSlot;
+      megaProgress = board.getMegaProgress();
+      megaAllowed = previous.megaAllowed;
+      effectTable = previous.effectTable;
+      megaThreshold = previous.megaThreshold;
+      this.remainingHealth = remainingHealth;
+      this.remainingMoves = remainingMoves - 1;
+      teamSpecies = previous.teamSpecies;
+      supportSpecies = previous.supportSpecies;
+      internedSpecies = previous.internedSpecies;
+      nonSupportSpecies = previous.nonSupportSpecies;
+      possibleBlocks = new HashSet<Species>(teamSpecies);
+      possibleBlocks.addAll(board.getSpeciesPresent());
+      possibleBlocks.removeIf((s) -> !s.getDefaultEffect().isAutoGenerated());
+      roster = previous.roster;
+      typeModifiers = previous.typeModifiers;
+      disabledEffects = previous.disabledEffects;
+      attackPowerUp = previous.attackPowerUp;
+      effectThreshold = previous.effectThreshold;
+      defaultGradingMode = previous.defaultGradingMode;
+      mobileMode = previous.mobileMode;
+   }
+   
    public UUID getId() {
       return processUUID;
    }
    
+   /**
+    * @return The seed of this run, or null if its random numbers are drawn freshly.
+    */
+   public Long getSeed() {
+      return seed;
+   }
+   
    // Getters for use when creating primary SimulationStates
    protected Board getBoardCopy() {
       return new Board(board);
@@ -172,19 +275,50 @@ public class SimulationCore extends RecursiveAction {
    }
    
    public int getLevel(Species s) {
-      return speciesLevels.containsKey(s) ? speciesLevels.get(s) : 0;
+      return roster.getLevel(s);
    }
    
    public Stage getStage() {
       return stage;
    }
    
+   /**
+    * Gets the attack for the given species at its configured level.
+    * 
+    * @param s
+    *           The species
+    * @return The basic block score for the species in this run.
+    */
+   public int getAttack(Species s) {
+      return roster.getAttack(s);
+   }
+   
+   /**
+    * Gets the modifier for an attack of the given type against this run's stage.
+    * 
+    * @param type
+    *           The attacking type
+    * @return The type effectiveness multiplier.
+    */
+   public double getTypeModifier(PkmType type) {
+      return typeModifiers[type.ordinal()];
+   }
+   
    public Set<Species> getSupportSpecies() {
       return Collections.unmodifiableSet(supportSpecies);
    }
    
    public Set<Species> getNonSupportSpecies() {
-      return Collections.unmodifiableSet(nonSupportSpecies);
+      Set<Species> ret = nonSupportSpecies;
+      if (ret == null) {
+         Set<Species> nonSupport = new HashSet<Species>(internedSpecies);
+         nonSupport.remove(null);
+         nonSupport.removeIf((s) -> supportSpecies.contains(s));
+         nonSupport.removeAll(Species.FIXED_SPECIES);
+         ret = Collections.unmodifiableSet(nonSupport);
+         nonSupportSpecies = ret;
+      }
+      return ret;
    }
    
    public int getMegaProgress() {
@@ -216,28 +350,139 @@ public class SimulationCore extends RecursiveAction {
    }
    
    public double getOdds(Effect effect, int num, int skillLevel) {
-      return effectManager.getOdds(effect, num, skillLevel);
+      return effectTable.getOdds(effect, num, skillLevel);
    }
    
    public double getMultiplier(Effect effect, int skillLevel) {
-      return effectManager.getMult(effect, skillLevel);
+      return effectTable.getMult(effect, skillLevel);
    }
    
    public int getSkillLevel(Species species) {
-      Integer skillLevel = speciesSkillLevels.get(species);
-      return skillLevel == null ? 1 : skillLevel.intValue();
+      return roster.getSkillLevel(species);
    }
    
    public boolean isMobileMode() {
       return mobileMode;
    }
    
+   /**
+    * @return True if every outcome of random effects should be simulated for each feeder.
+    */
+   public boolean isExactBranching() {
+      return exactBranching;
+   }
+   
+   /**
+    * @return True if every move is simulated with the same random numbers for each feeder.
+    */
+   public boolean isCommonRandomNumbers() {
+      return commonRandomNumbers;
+   }
+   
+   /**
+    * @return How the blocks and random effects of each set of feeders are drawn.
+    */
+   public FeederSampling getFeederSampling() {
+      return feederSampling;
+   }
+   
+   /**
+    * Gets a fingerprint of every input this simulation depends upon. Two cores with equal
+    * fingerprints will produce equivalent results, so this is suitable as a key for caching them.
+    * The roster and effect tables are included by content, so a fingerprint is also stable between
+    * sessions.
+    * 
+    * @return The fingerprint for this simulation's inputs.
+    */
+   public String getFingerprint() {
+      return board.toString() + '|' + getContextFingerprint();
+   }
+   
+   /**
+    * Gets a fingerprint for the given move, from the board it makes and everything else this
+    * simulation depends upon.
+    * 
+    * @param move
+    *           The move, or null for no move.
+    * @return The fingerprint for simulating the given move.
+    */
+   public String getMoveFingerprint(List<Integer> move) {
+      Board swapped = new Board(board);
+      if (move != null && move.size() >= 4) {
+         Species pickedUp = swapped.getSpeciesAt(move.get(0), move.get(1));
+         swapped.setSpeciesAt(move.get(0), move.get(1), swapped.getSpeciesAt(move.get(2), move.get(3)));
+         swapped.setSpeciesAt(move.get(2), move.get(3), pickedUp);
+      }
+      return swapped.toString() + '|' + getContextFingerprint();
+   }
+   
+   /**
+    * @param move
+    *           The move, or null for no move.
+    * @return A 64 bit digest of {@link #getMoveFingerprint(List)}, compact enough to key a large
+    *         cache on.
+    */
+   public long getMoveDigest(List<Integer> move) {
+      return RosterSnapshot.digestOf(getMoveFingerprint(move));
+   }
+   
+   /**
+    * @return A digest of the roster and effect tables, which changes whenever either is edited.
+    */
+   public long getConfigDigest() {
+      return roster.getContentDigest() * 31 + effectTable.getContentDigest();
+   }
+   
+   /**
+    * @return The fingerprint of every input except for the board.
+    */
+   private String getContextFingerprint() {
+      String ret = contextFingerprint;
+      if (ret == null) {
+         StringBuilder sb = new StringBuilder();
+         sb.append(stage.getName()).append(',').append(stage.getType()).append(',').append(stage.getMoves())
+               .append(',').append(stage.getHealth());
+         sb.append('|').append(megaSlot);
+         sb.append('|').append(new TreeSet<String>(teamSpecies.stream().map(s -> s.toString()).collect(
+               Collectors.toList())));
+         sb.append('|').append(new TreeSet<String>(supportSpecies.stream().map(s -> s.toString()).collect(
+               Collectors.toList())));
+         sb.append('|').append(megaProgress).append(',').append(megaThreshold).append(',').append(megaAllowed);
+         sb.append('|').append(remainingHealth).append(',').append(remainingMoves);
+         sb.append('|').append(new TreeSet<Effect>(disabledEffects));
+         sb.append('|').append(attackPowerUp).append(',').append(effectThreshold).append(',').append(mobileMode);
+         sb.append('|').append(minHeight).append(',').append(preferredCount).append(',').append(targetLatency);
+         sb.append(',').append(exactBranching).append(',').append(commonRandomNumbers);
+         sb.append(',').append(feederSampling);
+         sb.append('|').append(defaultGradingMode.getKey());
+         sb.append('|').append(Long.toHexString(roster.getContentDigest()));
+         sb.append('|').append(Long.toHexString(effectTable.getContentDigest()));
+         ret = sb.toString();
+         contextFingerprint = ret;
+      }
+      return ret;
+   }
+   
    @Override
    protected void compute() {
       startTime = System.currentTimeMillis();
+      long runStart = System.nanoTime();
+      SimulationEvents.Run event = new SimulationEvents.Run();
+      event.begin();
       try {
          Collection<SimulationResult> results = getResults();
+         SimulationMetrics.INSTANCE.addRun(System.nanoTime() - runStart);
+         event.end();
+         if (event.shouldCommit()) {
+            event.processUUID = SimulationEvents.format(processUUID);
+            event.stage = getStage().getName();
+            event.moves = validMoves == null ? 0 : validMoves.size();
+            event.samples = samplesPerMove;
+            event.results = results == null ? 0 : results.size();
+            event.commit();
+         }
          submitResults(results);
+         refineResults();
          releaseResources();
       } catch (Exception e) {
          LOG.log(Level.FINE, "Can't simulate because: " + e.getMessage(), e);
@@ -249,7 +494,8 @@ public class SimulationCore extends RecursiveAction {
     */
    private void releaseResources() {
       possibleBlocks.clear();
-      speciesLevels.clear();
+      validMoves = null;
+      moveToOutcomesMap = null;
       System.gc();
    }
    
@@ -264,15 +510,22 @@ public class SimulationCore extends RecursiveAction {
       long start = System.currentTimeMillis();
       LOG.fine("Preparing board, moves & feeder");
       // First, generate the valid moves and the feeders required.
-      List<List<Integer>> validMoves = getPossibleMoves(board);
+      long phaseStart = System.nanoTime();
+      validMoves = getPossibleMoves(board);
+      SimulationMetrics.INSTANCE.addMoveGeneration(System.nanoTime() - phaseStart);
+      phaseStart = System.nanoTime();
+      // With a latency target, only a small warm-up batch is made here and the rest is sized later.
+      samplesPerMove = targetLatency > 0 ? Math.min(preferredCount, WARMUP_FEEDERS) : preferredCount;
       Collection<SimulationFeeder> feeders = SimulationFeeder.getFeedersFor(minHeight, getStage(), possibleBlocks,
-            preferredCount);
+            samplesPerMove, feederSampling, feederRandom);
+      SimulationMetrics.INSTANCE.addFeederGeneration(System.nanoTime() - phaseStart);
             
       Map<List<Integer>, SimulationCreationTask> moveToTaskCreatorMap = new HashMap<List<Integer>, SimulationCreationTask>();
       
       long diff = System.currentTimeMillis() - start;
       LOG.fine("Making tasks, prep took " + diff + "ms");
       start = System.currentTimeMillis();
+      long tasksStart = System.nanoTime();
       
       // Go through all moves and create a task for each feeder, and add it.
       for (List<Integer> move : validMoves) {
@@ -281,18 +534,24 @@ public class SimulationCore extends RecursiveAction {
          moveToTaskCreatorMap.put(move, distTask);
       }
       
-      Map<List<Integer>, Collection<SimulationTask>> moveToTasksMap = new HashMap<List<Integer>, Collection<SimulationTask>>();
+      moveToOutcomesMap = new HashMap<List<Integer>, SimulationAccumulator>();
       for (List<Integer> move : validMoves) {
-         Collection<SimulationTask> taskSet = moveToTaskCreatorMap.get(move).join();
-         moveToTasksMap.put(move, taskSet);
+         moveToOutcomesMap.put(move, moveToTaskCreatorMap.get(move).join());
       }
       
+      if (targetLatency > 0) {
+         spendLatencyBudget(tasksStart);
+      }
+      
+      SimulationMetrics.INSTANCE.addTaskCreation(System.nanoTime() - tasksStart);
       diff = System.currentTimeMillis() - start;
       LOG.fine("Getting results, init took " + diff + "ms");
       
       start = System.currentTimeMillis();
+      phaseStart = System.nanoTime();
       // Once done, we go through the results and find the best on-average result
-      results = getBestResults(validMoves, moveToTasksMap);
+      results = getBestResults(validMoves, moveToOutcomesMap);
+      SimulationMetrics.INSTANCE.addAssembly(System.nanoTime() - phaseStart);
       diff = System.currentTimeMillis() - start;
       LOG.fine("Returning best results, the decision took " + diff + "ms");
       return results;
@@ -303,10 +562,10 @@ public class SimulationCore extends RecursiveAction {
     */
    public Collection<SimulationResult> computeWithoutMove() {
       Collection<SimulationFeeder> feeders = SimulationFeeder.getFeedersFor(0, getStage(), possibleBlocks,
-            preferredCount);
-      Collection<SimulationTask> toRun = new SimulationCreationTask(this, null, feeders).invoke();
-      ForkJoinTask<SimulationResult> assembler = new SimulationResultsAssembler(null, processUUID, toRun, startTime)
-            .fork();
+            preferredCount, feederSampling, feederRandom);
+      SimulationAccumulator outcomes = new SimulationCreationTask(this, null, feeders).invoke();
+      ForkJoinTask<SimulationResult> assembler = new SimulationResultsAssembler(null, processUUID, outcomes,
+            startTime, feederSampling).fork();
       SimulationResult settleResult = assembler.join();
       if (settleResult.getBoard().equals(board)) {
          return null;
@@ -315,6 +574,58 @@ public class SimulationCore extends RecursiveAction {
       }
    }
    
+   /**
+    * Simulates the preferred number of feeders for each of the given moves, without combining the
+    * outcomes into results. The accumulators from several simulations of the same board, each
+    * given a share of the moves or of the feeders, can then be merged and normalized to give the
+    * results of a single larger simulation.
+    * 
+    * @param moves
+    *           The moves to simulate, from {@link #getPossibleMoves(Board)}
+    * @return The accumulated outcomes of each move, in the given order.
+    */
+   public Map<List<Integer>, SimulationAccumulator> accumulate(Collection<List<Integer>> moves) {
+      return accumulate(moves, 0, preferredCount);
+   }
+   
+   /**
+    * As {@link #accumulate(Collection)}, but only for a share of the preferred number of feeders.
+    * All of them are still drawn, so that a seeded simulation split into shares this way has exactly
+    * the outcomes it would have had in one piece.
+    * 
+    * @param moves
+    *           The moves to simulate, from {@link #getPossibleMoves(Board)}
+    * @param first
+    *           The index of the first feeder to simulate
+    * @param count
+    *           The number of feeders to simulate
+    * @return The accumulated outcomes of each move, in the given order. Moves that are not random
+    *         are simulated once in every share, and are marked so by
+    *         {@link SimulationAccumulator#isRandom()}, so that they can be counted only once when
+    *         the shares are merged.
+    */
+   public Map<List<Integer>, SimulationAccumulator> accumulate(Collection<List<Integer>> moves, int first,
+         int count) {
+      if (first < 0 || count < 0 || first + count > preferredCount) {
+         throw new IllegalArgumentException(String.format("Feeders %d to %d are not among the %d preferred.", first,
+               first + count, preferredCount));
+      }
+      List<SimulationFeeder> drawn = new ArrayList<SimulationFeeder>(SimulationFeeder.getFeedersFor(minHeight,
+            getStage(), possibleBlocks, preferredCount, feederSampling, feederRandom));
+      Collection<SimulationFeeder> feeders = drawn.subList(first, first + count);
+      Map<List<Integer>, SimulationCreationTask> creators = new LinkedHashMap<List<Integer>, SimulationCreationTask>();
+      for (List<Integer> move : moves) {
+         SimulationCreationTask creator = new SimulationCreationTask(this, move, feeders);
+         creator.fork();
+         creators.put(move, creator);
+      }
+      Map<List<Integer>, SimulationAccumulator> ret = new LinkedHashMap<List<Integer>, SimulationAccumulator>();
+      for (List<Integer> move : moves) {
+         ret.put(move, creators.get(move).join());
+      }
+      return ret;
+   }
+   
    /**
     * @param results
     */
@@ -326,23 +637,128 @@ public class SimulationCore extends RecursiveAction {
          System.gc();
       } else {
          LOG.fine("Results discarded - out of date info");
+         SimulationEvents.Cancelled event = new SimulationEvents.Cancelled();
+         if (event.shouldCommit()) {
+            event.processUUID = SimulationEvents.format(processUUID);
+            event.results = results == null ? 0 : results.size();
+            event.commit();
+         }
+      }
+   }
+   
+   /**
+    * Keeps simulating more variations of every random move, in batches of the preferred count, and
+    * publishes the improved results after each batch. This stops once the refinement limit is
+    * reached or as soon as these results are no longer wanted, which is checked for each feeder so
+    * that a superseded run does not finish its batch.
+    */
+   private void refineResults() {
+      if (validMoves == null || moveToOutcomesMap == null) {
+         return;
+      }
+      while (samplesPerMove < refinementLimit && isCurrent()) {
+         int batch = Math.min(preferredCount, refinementLimit - samplesPerMove);
+         if (!addFeeders(batch)) {
+            return;
+         }
+         submitResults(getBestResults(validMoves, moveToOutcomesMap));
+      }
+   }
+   
+   /**
+    * Adds more variations to every random move, sized from the measured cost of the tasks so far so
+    * that the run finishes close to the target latency. Each batch is timed to correct the estimate
+    * for the next one.
+    * 
+    * @param tasksStart
+    *           The {@link System#nanoTime()} at which the warm-up tasks were started
+    */
+   private void spendLatencyBudget(long tasksStart) {
+      long elapsed = System.currentTimeMillis() - startTime;
+      long deadline = System.nanoTime() + (targetLatency - elapsed) * 1000000L;
+      long batchStart = tasksStart;
+      int randomMoves = 0;
+      int tasks = 0;
+      for (List<Integer> move : validMoves) {
+         tasks += moveToOutcomesMap.get(move).getCount();
+         randomMoves += isRandomMove(move) ? 1 : 0;
+      }
+      if (randomMoves == 0 || tasks == 0) {
+         return;
+      }
+      double nanosPerTask = Math.max(1, System.nanoTime() - batchStart) / (double) tasks;
+      while (isCurrent()) {
+         long remaining = deadline - System.nanoTime();
+         int batch = (int) Math.min(remaining / (nanosPerTask * randomMoves), Math.max(1, samplesPerMove));
+         if (batch <= 0) {
+            return;
+         }
+         batchStart = System.nanoTime();
+         addFeeders(batch);
+         nanosPerTask = Math.max(1, System.nanoTime() - batchStart) / (double) (batch * randomMoves);
+      }
+   }
+   
+   /**
+    * @param move
+    * @return True if the given move's outcome depends on the feeder.
+    */
+   private boolean isRandomMove(List<Integer> move) {
+      return moveToOutcomesMap.get(move).isRandom();
+   }
+   
+   /**
+    * Simulates the given number of new variations for every random move.
+    * 
+    * @param count
+    *           The number of feeders to add for each move
+    * @return True if any move was random, false if there was nothing to add to or these results are
+    *         no longer wanted.
+    */
+   private boolean addFeeders(int count) {
+      Collection<SimulationFeeder> feeders = SimulationFeeder.getFeedersFor(minHeight, getStage(), possibleBlocks,
+            count, feederSampling, feederRandom);
+      Map<List<Integer>, ForkJoinTask<SimulationAccumulator>> addedTasks = new HashMap<List<Integer>, ForkJoinTask<SimulationAccumulator>>();
+      for (List<Integer> move : validMoves) {
+         if (!isCurrent()) {
+            break;
+         }
+         if (isRandomMove(move)) {
+            addedTasks.put(move, ForkJoinTask.adapt(() -> SimulationCreationTask.simulateVariations(this, move,
+                  feeders, true)).fork());
+         }
+      }
+      Map<List<Integer>, SimulationAccumulator> addedResults = new HashMap<List<Integer>, SimulationAccumulator>();
+      for (List<Integer> move : addedTasks.keySet()) {
+         addedResults.put(move, addedTasks.get(move).join());
+      }
+      if (!isCurrent() || addedResults.containsValue(null)) {
+         return false;
+      }
+      for (List<Integer> move : addedResults.keySet()) {
+         moveToOutcomesMap.get(move).merge(addedResults.get(move));
+      }
+      if (!addedTasks.isEmpty()) {
+         samplesPerMove += count;
       }
+      return !addedTasks.isEmpty();
    }
    
    /**
     * @param validMoves
-    * @param moveToTasksMap
+    * @param moveToOutcomesMap
     * @return
     */
    private Collection<SimulationResult> getBestResults(List<List<Integer>> validMoves,
-         Map<List<Integer>, Collection<SimulationTask>> moveToTasksMap) {
+         Map<List<Integer>, SimulationAccumulator> moveToOutcomesMap) {
       // Now we need to combine all the results and obtain the best move and likely SimulationResult
       
       Map<List<Integer>, RecursiveTask<SimulationResult>> compiledResultsMap = new HashMap<List<Integer>, RecursiveTask<SimulationResult>>();
       
       for (List<Integer> move : validMoves) {
-         Collection<SimulationTask> results = moveToTasksMap.get(move);
-         SimulationResultsAssembler assembler = new SimulationResultsAssembler(move, processUUID, results, startTime);
+         SimulationAccumulator outcomes = moveToOutcomesMap.get(move);
+         SimulationResultsAssembler assembler = new SimulationResultsAssembler(move, processUUID, outcomes,
+               startTime, feederSampling);
          assembler.fork();
          compiledResultsMap.put(move, assembler);
       }
@@ -471,6 +887,6 @@ public class SimulationCore extends RecursiveAction {
    }
    
    public Effect getEffectFor(Species s) {
-      return speciesEffects.get(s);
+      return roster.getActiveEffect(s);
    }
 }
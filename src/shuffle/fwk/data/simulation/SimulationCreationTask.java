@@ -19,17 +19,38 @@
 package shuffle.fwk.data.simulation;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import shuffle.fwk.data.simulation.util.SimulationEvents;
 
 /**
+ * Simulates one move for all of the given feeders, or only once if a probe shows that the move does
+ * not depend on them, and gives the accumulated outcomes.
+ * 
  * @author Andrew Meyers
  *
  */
 @SuppressWarnings("serial")
-public class SimulationCreationTask extends RecursiveTask<Collection<SimulationTask>> {
+public class SimulationCreationTask extends RecursiveTask<SimulationAccumulator> {
+   
+   // How many moves have their randomness remembered, so that they need not be probed again.
+   private static final int KNOWN_RANDOMNESS_CAPACITY = 4096;
+   // Keyed by move digest. A collision can only cost an unneeded probe or batch, never a result.
+   private static final Map<Long, Boolean> KNOWN_RANDOMNESS = new LinkedHashMap<Long, Boolean>(16, 0.75f, true) {
+      private static final long serialVersionUID = -3356427017046563128L;
+      
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+         return size() > KNOWN_RANDOMNESS_CAPACITY;
+      }
+   };
+   // The roster and effect tables the remembered moves were simulated with.
+   private static long knownRandomnessConfig = 0L;
    
    private final Collection<SimulationFeeder> feeders;
    private final List<Integer> move;
@@ -42,20 +63,146 @@ public class SimulationCreationTask extends RecursiveTask<Collection<SimulationT
    }
    
    @Override
-   protected Collection<SimulationTask> compute() {
-      SimulationTask task2 = new SimulationTask(simulationCore, move, new SimulationFeeder());
+   protected SimulationAccumulator compute() {
+      SimulationEvents.MoveTasks event = new SimulationEvents.MoveTasks();
+      event.begin();
+      long digest = simulationCore.getMoveDigest(move);
+      SimulationAccumulator ret = createTasks(digest);
+      event.end();
+      if (event.shouldCommit()) {
+         event.processUUID = SimulationEvents.format(simulationCore.getId());
+         event.move = SimulationEvents.format(move);
+         event.tasks = ret.getCount();
+         event.random = Boolean.TRUE.equals(getKnownRandomness(simulationCore, digest));
+         event.commit();
+      }
+      return ret;
+   }
+   
+   private SimulationAccumulator createTasks(long digest) {
+      if (Boolean.TRUE.equals(getKnownRandomness(simulationCore, digest))) {
+         return simulateVariations(simulationCore, move, feeders);
+      }
+      List<SimulationFeeder> feederList = new ArrayList<SimulationFeeder>(feeders);
+      // The probe may stand in for the first feeder, so it shares that feeder's random numbers.
+      SimulationTask task2 = new SimulationTask(simulationCore, move, feederList.get(0).withoutBlocks());
       SimulationState result = task2.invoke();
+      SimulationAccumulator ret = new SimulationAccumulator();
+      if (result == null) {
+         return ret;
+      }
+      setKnownRandomness(simulationCore, digest, result.isRandom());
       if (result.isRandom()) {
-         Collection<SimulationTask> ret = new ArrayList<SimulationTask>(feeders.size());
-         for (SimulationFeeder feeder : feeders) {
-            SimulationTask task = new SimulationTask(simulationCore, move, feeder);
-            task.fork();
-            ret.add(task);
+         if (!simulationCore.isExactBranching() && isUnaffectedByAll(result, feeders)) {
+            // The probe is as good as any other sample, so it takes the place of the first one.
+            ret.add(result, result.getWeight());
+            ret.merge(simulateVariations(simulationCore, move, feederList.subList(1, feederList.size())));
+            return ret;
          }
+         return simulateVariations(simulationCore, move, feeders);
+      } else {
+         ret.add(result, result.getWeight());
          return ret;
+      }
+   }
+   
+   private static boolean isUnaffectedByAll(SimulationState state, Collection<SimulationFeeder> feeders) {
+      for (SimulationFeeder feeder : feeders) {
+         if (!state.isUnaffectedBy(feeder)) {
+            return false;
+         }
+      }
+      return true;
+   }
+   
+   /**
+    * @param simulationCore
+    *           The core the move is simulated by
+    * @param digest
+    *           The digest of a move, see {@link SimulationCore#getMoveDigest(List)}
+    * @return True if the move is known to be random, false if it is known not to be, or null if
+    *         it has not been simulated recently.
+    */
+   public static Boolean getKnownRandomness(SimulationCore simulationCore, long digest) {
+      synchronized (KNOWN_RANDOMNESS) {
+         return knownRandomnessConfig == simulationCore.getConfigDigest() ? KNOWN_RANDOMNESS.get(digest) : null;
+      }
+   }
+   
+   /**
+    * Remembers whether the given move is random. Everything remembered is forgotten first if the
+    * core's roster or effect tables differ from those it was remembered with, since none of it can
+    * be looked up again.
+    */
+   private static void setKnownRandomness(SimulationCore simulationCore, long digest, boolean isRandom) {
+      synchronized (KNOWN_RANDOMNESS) {
+         long config = simulationCore.getConfigDigest();
+         if (knownRandomnessConfig != config) {
+            KNOWN_RANDOMNESS.clear();
+            knownRandomnessConfig = config;
+         }
+         KNOWN_RANDOMNESS.put(digest, isRandom);
+      }
+   }
+   
+   /**
+    * Simulates the given move once for each feeder, in batches. If the core uses exact branching,
+    * every outcome of each feeder is simulated instead.
+    * 
+    * @param simulationCore
+    * @param move
+    * @param feeders
+    * @return The accumulated outcomes of the move.
+    */
+   public static SimulationAccumulator simulateVariations(SimulationCore simulationCore, List<Integer> move,
+         Collection<SimulationFeeder> feeders) {
+      return simulateVariations(simulationCore, move, feeders, false);
+   }
+   
+   /**
+    * As {@link #simulateVariations(SimulationCore, List, Collection)}, but optionally stopping as
+    * soon as the core is no longer current.
+    * 
+    * @param simulationCore
+    * @param move
+    * @param feeders
+    * @param stopWhenSuperseded
+    *           True to stop early once the core is no longer current.
+    * @return The accumulated outcomes of the move, or null if it stopped early.
+    */
+   public static SimulationAccumulator simulateVariations(SimulationCore simulationCore, List<Integer> move,
+         Collection<SimulationFeeder> feeders, boolean stopWhenSuperseded) {
+      SimulationAccumulator ret;
+      if (simulationCore.isExactBranching()) {
+         ret = new SimulationAccumulator();
+         Collection<SimulationBranchTask> branchTasks = new ArrayList<SimulationBranchTask>(feeders.size());
+         AtomicBoolean tooManyBranches = new AtomicBoolean(false);
+         for (SimulationFeeder feeder : feeders) {
+            if (stopWhenSuperseded && !simulationCore.isCurrent()) {
+               break;
+            }
+            SimulationBranchTask branchTask = new SimulationBranchTask(simulationCore, move, feeder,
+                  tooManyBranches);
+            branchTask.fork();
+            branchTasks.add(branchTask);
+         }
+         for (SimulationBranchTask branchTask : branchTasks) {
+            for (SimulationTask task : branchTask.join()) {
+               SimulationState state = task.join();
+               if (state != null) {
+                  ret.add(state, state.getWeight());
+               }
+            }
+         }
       } else {
-         return Arrays.asList(task2);
+         ret = new SimulationBatchTask(simulationCore, move, new ArrayList<SimulationFeeder>(feeders),
+               stopWhenSuperseded).invoke();
+      }
+      ret.setIsRandom();
+      if (stopWhenSuperseded && !simulationCore.isCurrent()) {
+         return null;
       }
+      return ret;
    }
    
 }
@@ -21,18 +21,18 @@ package shuffle.fwk.data.simulation;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 import java.util.Random;
 import java.util.UUID;
-import java.util.function.IntConsumer;
-import java.util.stream.IntStream;
+import java.util.concurrent.atomic.AtomicLong;
 
 import shuffle.fwk.data.Board;
 import shuffle.fwk.data.Species;
 import shuffle.fwk.data.Stage;
+import shuffle.fwk.data.simulation.util.FeederSampling;
 
 /**
  * @author Andrew Meyers
@@ -41,10 +41,16 @@ import shuffle.fwk.data.Stage;
 public class SimulationFeeder {
    
    private static final Random RAND = new Random(System.nanoTime());
+   // Feeder ids are a sequence number under a prefix picked once, rather than a random UUID each.
+   private static final long ID_PREFIX = UUID.randomUUID().getMostSignificantBits();
+   private static final AtomicLong ID_SEQUENCE = new AtomicLong();
    
    private List<Queue<Species>> feederQueue;
    private int[] sizes = new int[] { 0, 0, 0, 0, 0, 0 };
-   private final UUID feederID;
+   private final long feederID;
+   private UUID id = null;
+   // Seeds the random effects of simulations using this feeder, when common random numbers are used.
+   private long seed;
    
    public SimulationFeeder() {
       this(0);
@@ -52,7 +58,8 @@ public class SimulationFeeder {
    
    public SimulationFeeder(int height) {
       init();
-      feederID = UUID.randomUUID();
+      feederID = ID_SEQUENCE.incrementAndGet();
+      seed = ID_PREFIX ^ feederID * 0x9E3779B97F4A7C15L;
    }
    
    public SimulationFeeder(SimulationFeeder other) {
@@ -61,11 +68,35 @@ public class SimulationFeeder {
       } else {
          init();
       }
-      feederID = UUID.randomUUID();
+      feederID = ID_SEQUENCE.incrementAndGet();
+      seed = other == null ? ID_PREFIX ^ feederID * 0x9E3779B97F4A7C15L : other.seed;
    }
    
+   /**
+    * @return The id of this feeder, which is unique within this session.
+    */
    public UUID getID() {
-      return feederID;
+      if (id == null) {
+         id = new UUID(ID_PREFIX, feederID);
+      }
+      return id;
+   }
+   
+   /**
+    * @return The seed for the random effects of simulations using this feeder. Copies share it, so
+    *         every move simulated against this feeder sees the same stream of random numbers.
+    */
+   public long getSeed() {
+      return seed;
+   }
+   
+   /**
+    * @return A feeder with no blocks, but the same random effects as this one.
+    */
+   public SimulationFeeder withoutBlocks() {
+      SimulationFeeder ret = new SimulationFeeder();
+      ret.seed = seed;
+      return ret;
    }
    
    /**
@@ -120,7 +151,11 @@ public class SimulationFeeder {
    }
    
    public Species pollColumn(int column) {
-      return feederQueue.get(column - 1).poll();
+      Species ret = feederQueue.get(column - 1).poll();
+      if (ret != null) {
+         sizes[column - 1] -= 1;
+      }
+      return ret;
    }
    
    /**
@@ -132,7 +167,7 @@ public class SimulationFeeder {
     * @return
     */
    private Collection<SimulationFeeder> getPossibleFeeders(int column, Collection<Queue<Species>> possibles) {
-      Collection<SimulationFeeder> ret = new HashSet<SimulationFeeder>();
+      Collection<SimulationFeeder> ret = new LinkedHashSet<SimulationFeeder>();
       for (Queue<Species> possible : possibles) {
          SimulationFeeder possibleFeeder = new SimulationFeeder(this);
          possibleFeeder.addToQueue(column, possible);
@@ -172,12 +207,48 @@ public class SimulationFeeder {
     */
    public static Collection<SimulationFeeder> getFeedersFor(int minHeight, Stage stage,
          Collection<Species> possibleBlocks, int preferredCount) {
-      Collection<SimulationFeeder> ret = new HashSet<SimulationFeeder>(Arrays.asList(new SimulationFeeder(minHeight)));
-      Collection<SimulationFeeder> temp = new HashSet<SimulationFeeder>();
+      return getFeedersFor(minHeight, stage, possibleBlocks, preferredCount, FeederSampling.RANDOM);
+   }
+   
+   /**
+    * Gets the feeders as for {@link #getFeedersFor(int, Stage, Collection, int)}, drawing the blocks
+    * which fill them with the given sampling.
+    * 
+    * @param minHeight
+    * @param stage
+    * @param possibleBlocks
+    * @param preferredCount
+    * @param sampling
+    * @return
+    */
+   public static Collection<SimulationFeeder> getFeedersFor(int minHeight, Stage stage,
+         Collection<Species> possibleBlocks, int preferredCount, FeederSampling sampling) {
+      return getFeedersFor(minHeight, stage, possibleBlocks, preferredCount, sampling, null);
+   }
+   
+   /**
+    * Gets the feeders as for {@link #getFeedersFor(int, Stage, Collection, int, FeederSampling)},
+    * drawing everything from the given random numbers. The feeders are in the order they were
+    * drawn, so the same random numbers always give the same feeders in the same order.
+    * 
+    * @param minHeight
+    * @param stage
+    * @param possibleBlocks
+    * @param preferredCount
+    * @param sampling
+    * @param rand
+    *           The random numbers to draw from, or null to use the shared ones.
+    * @return
+    */
+   public static Collection<SimulationFeeder> getFeedersFor(int minHeight, Stage stage,
+         Collection<Species> possibleBlocks, int preferredCount, FeederSampling sampling, Random rand) {
+      Collection<SimulationFeeder> ret = new LinkedHashSet<SimulationFeeder>(
+            Arrays.asList(new SimulationFeeder(minHeight)));
+      Collection<SimulationFeeder> temp = new LinkedHashSet<SimulationFeeder>();
       ArrayList<Species> possibleBlockList = new ArrayList<Species>(possibleBlocks);
       if (stage != null) {
          for (int i = 1; i <= Board.NUM_COLS; i++) {
-            temp = new HashSet<SimulationFeeder>(ret.size() * 3);
+            temp = new LinkedHashSet<SimulationFeeder>(ret.size() * 3);
             Collection<Queue<Species>> dropPatterns = stage.getDropPatterns(i);
             if (dropPatterns.size() > 0) {
                for (SimulationFeeder simFeeder : ret) {
@@ -190,53 +261,72 @@ public class SimulationFeeder {
          }
       }
       int numPermutations = Math.max(1, preferredCount / ret.size());
-      temp = new HashSet<SimulationFeeder>(numPermutations * ret.size());
+      temp = new LinkedHashSet<SimulationFeeder>(numPermutations * ret.size());
       for (SimulationFeeder simFeeder : ret) {
-         for (int i = 0; i < numPermutations; i++) {
-            temp.add(fillToLevel(simFeeder, minHeight, possibleBlockList));
-         }
+         temp.addAll(fillToLevel(simFeeder, minHeight, possibleBlockList, numPermutations,
+               sampling == null ? FeederSampling.RANDOM : sampling, rand == null ? RAND : rand));
       }
       return temp;
    }
    
    /**
-    * Fills each column for the specified simFeeder to a minimum height as specified. The blocks
-    * used will be randomly chosen from the given ArrayList.
+    * Makes the given number of copies of the specified simFeeder, with each column filled to a
+    * minimum height as specified. The blocks used are chosen from the given ArrayList as the
+    * sampling says. When stratified, each position in a column is dealt from a shuffled list with
+    * every species in it equally often, rather than drawn independently.
     * 
     * @param simFeeder
     * @param minHeight
     * @param possibleBlocks
+    * @param count
+    * @param sampling
+    * @param rand
     * @return
     */
-   private static SimulationFeeder fillToLevel(SimulationFeeder simFeeder, int minHeight,
-         ArrayList<Species> possibleBlocks) {
-      SimulationFeeder ret = new SimulationFeeder(simFeeder);
-      if (minHeight == 0 || possibleBlocks.isEmpty()) {
-         return ret;
-      }
-      // Using IntStream from random to streamline the performance a little bit.
-      int[] numToAdd = new int[Board.NUM_COLS];
-      int sum = 0;
-      for (int i = 1; i <= Board.NUM_COLS; i++) {
-         numToAdd[i - 1] = Math.max(0, minHeight - ret.getQueueSize(i));
-         sum += numToAdd[i - 1];
+   private static List<SimulationFeeder> fillToLevel(SimulationFeeder simFeeder, int minHeight,
+         ArrayList<Species> possibleBlocks, int count, FeederSampling sampling, Random rand) {
+      List<SimulationFeeder> ret = new ArrayList<SimulationFeeder>(count);
+      for (int i = 0; i < count; i++) {
+         SimulationFeeder copy = new SimulationFeeder(simFeeder);
+         copy.seed = rand.nextLong();
+         ret.add(copy);
       }
-      IntStream is = RAND.ints(sum, 0, possibleBlocks.size());
-      is.forEachOrdered(new IntConsumer() {
-         int curCol = 1;
-         
-         @Override
-         public void accept(int arg0) {
-            while (curCol <= Board.NUM_COLS && numToAdd[curCol - 1] <= 0) {
-               curCol++;
-            }
-            if (curCol <= Board.NUM_COLS) {
-               ret.addToQueue(curCol, possibleBlocks.get(arg0));
-               numToAdd[curCol - 1]--;
+      int numSpecies = possibleBlocks.size();
+      if (minHeight > 0 && numSpecies > 0) {
+         for (int col = 1; col <= Board.NUM_COLS; col++) {
+            int numToAdd = Math.max(0, minHeight - simFeeder.getQueueSize(col));
+            for (int depth = 0; depth < numToAdd; depth++) {
+               int[] picks = sampling.isStratified() ? getBalancedPicks(count, numSpecies, rand)
+                     : rand.ints(count, 0, numSpecies).toArray();
+               for (int i = 0; i < count; i++) {
+                  ret.get(i).addToQueue(col, possibleBlocks.get(picks[i]));
+               }
             }
          }
-      });
+      }
       return ret;
    }
    
+   /**
+    * @param count
+    * @param bound
+    * @param rand
+    * @return The given number of values in [0, bound), each as often as the others to within one,
+    *         in a random order.
+    */
+   private static int[] getBalancedPicks(int count, int bound, Random rand) {
+      int[] picks = new int[count];
+      int offset = rand.nextInt(bound);
+      for (int i = 0; i < count; i++) {
+         picks[i] = (offset + i) % bound;
+      }
+      for (int i = count - 1; i > 0; i--) {
+         int j = rand.nextInt(i + 1);
+         int swap = picks[i];
+         picks[i] = picks[j];
+         picks[j] = swap;
+      }
+      return picks;
+   }
+   
 }
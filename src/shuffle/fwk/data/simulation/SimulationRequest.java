@@ -0,0 +1,468 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.fwk.data.simulation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+
+import shuffle.fwk.config.ConfigFactory;
+import shuffle.fwk.config.manager.EffectManager;
+import shuffle.fwk.config.manager.GradingModeManager;
+import shuffle.fwk.config.manager.RosterManager;
+import shuffle.fwk.config.manager.SpeciesManager;
+import shuffle.fwk.data.Board;
+import shuffle.fwk.data.Effect;
+import shuffle.fwk.data.Stage;
+import shuffle.fwk.data.Team;
+import shuffle.fwk.data.TeamImpl;
+import shuffle.fwk.data.simulation.util.FeederSampling;
+import shuffle.fwk.data.simulation.util.SimulationAcceptor;
+
+/**
+ * Everything needed to simulate a board, without any user interface. Requests are immutable and
+ * made with a {@link Builder}. A builder made from a {@link ConfigFactory} must be made on the thread
+ * which owns that factory, but from then on {@link #toBuilder()} may be used from any number of
+ * threads at once, since it only copies the request.
+ * 
+ * <pre>
+ * SimulationRequest template = SimulationRequest.builder(factory).setNumFeeders(50).build();
+ * SimulationRequest request = template.toBuilder().setStage(stage).setBoard(board).setTeam(team)
+ *       .setAcceptor(acceptor).build();
+ * new SimulationCore(request, request.getProcessUUID()).invoke();
+ * </pre>
+ * 
+ * @author Andrew Meyers
+ * 
+ */
+public final class SimulationRequest implements SimulationUser {
+   
+   private final RosterManager rosterManager;
+   private final SpeciesManager speciesManager;
+   private final EffectManager effectManager;
+   private final GradingModeManager gradingModeManager;
+   private final Board board;
+   private final Stage stage;
+   private final Team team;
+   private final int remainingHealth;
+   private final int remainingMoves;
+   private final int numFeeders;
+   private final int feederHeight;
+   private final int refinementLimit;
+   private final int targetLatency;
+   private final boolean exactBranching;
+   private final boolean commonRandomNumbers;
+   private final FeederSampling sampling;
+   private final Long seed;
+   private final Collection<Effect> disabledEffects;
+   private final int effectThreshold;
+   private final boolean attackPowerUp;
+   private final boolean mobileMode;
+   private final UUID processUUID;
+   private final SimulationAcceptor acceptor;
+   
+   private SimulationRequest(Builder builder) {
+      rosterManager = builder.rosterManager;
+      speciesManager = builder.speciesManager;
+      effectManager = builder.effectManager;
+      gradingModeManager = builder.gradingModeManager;
+      board = new Board(builder.board);
+      stage = builder.stage;
+      team = builder.team;
+      remainingHealth = builder.remainingHealth == null ? stage.getHealth() : builder.remainingHealth;
+      remainingMoves = builder.remainingMoves == null ? stage.getMoves() : builder.remainingMoves;
+      numFeeders = builder.numFeeders;
+      feederHeight = builder.feederHeight;
+      refinementLimit = builder.refinementLimit;
+      targetLatency = builder.targetLatency;
+      exactBranching = builder.exactBranching;
+      commonRandomNumbers = builder.commonRandomNumbers;
+      sampling = builder.sampling;
+      seed = builder.seed;
+      disabledEffects = builder.disabledEffects;
+      effectThreshold = builder.effectThreshold;
+      attackPowerUp = builder.attackPowerUp;
+      mobileMode = builder.mobileMode;
+      processUUID = builder.processUUID == null ? UUID.randomUUID() : builder.processUUID;
+      acceptor = builder.acceptor;
+   }
+   
+   /**
+    * @param factory
+    *           The configuration to take the managers and the mobile mode from.
+    * @return A builder for a request using the given configuration, on the default stage with an
+    *         empty board and team.
+    */
+   public static Builder builder(ConfigFactory factory) {
+      return new Builder(factory.getRosterManager(), factory.getSpeciesManager(), factory.getEffectManager(),
+            factory.getGradingModeManager()).setMobileMode(factory.isMobileMode());
+   }
+   
+   /**
+    * @return A builder starting from everything in this request, except for its process id.
+    */
+   public Builder toBuilder() {
+      return new Builder(this);
+   }
+   
+   /**
+    * @return The id the core for this request should be given, so that its results are accepted.
+    */
+   public UUID getProcessUUID() {
+      return processUUID;
+   }
+   
+   @Override
+   public void acceptResults(Collection<SimulationResult> results) {
+      if (acceptor != null) {
+         acceptor.acceptResults(results);
+      }
+   }
+   
+   @Override
+   public UUID getAcceptedId() {
+      return acceptor == null ? processUUID : acceptor.getAcceptedId();
+   }
+   
+   @Override
+   public RosterManager getRosterManager() {
+      return rosterManager;
+   }
+   
+   @Override
+   public SpeciesManager getSpeciesManager() {
+      return speciesManager;
+   }
+   
+   @Override
+   public EffectManager getEffectManager() {
+      return effectManager;
+   }
+   
+   @Override
+   public GradingModeManager getGradingModeManager() {
+      return gradingModeManager;
+   }
+   
+   @Override
+   public Board getBoard() {
+      return new Board(board);
+   }
+   
+   @Override
+   public Stage getCurrentStage() {
+      return stage;
+   }
+   
+   @Override
+   public Team getCurrentTeam() {
+      return new TeamImpl(team);
+   }
+   
+   @Override
+   public boolean isMegaAllowed() {
+      return team.getMegaSlotName() != null;
+   }
+   
+   @Override
+   public int getMegaProgress() {
+      return board.getMegaProgress();
+   }
+   
+   @Override
+   public int getRemainingHealth() {
+      return remainingHealth;
+   }
+   
+   @Override
+   public int getRemainingMoves() {
+      return remainingMoves;
+   }
+   
+   @Override
+   public int getPreferredNumFeeders() {
+      return numFeeders;
+   }
+   
+   @Override
+   public int getPreferredFeederHeight() {
+      return feederHeight;
+   }
+   
+   @Override
+   public int getRefinementLimit() {
+      return refinementLimit;
+   }
+   
+   @Override
+   public int getTargetLatency() {
+      return targetLatency;
+   }
+   
+   @Override
+   public boolean isExactBranching() {
+      return exactBranching;
+   }
+   
+   @Override
+   public boolean isCommonRandomNumbers() {
+      return commonRandomNumbers;
+   }
+   
+   @Override
+   public FeederSampling getFeederSampling() {
+      return sampling;
+   }
+   
+   @Override
+   public Long getSeed() {
+      return seed;
+   }
+   
+   @Override
+   public Collection<Effect> getDisabledEffects() {
+      return disabledEffects;
+   }
+   
+   @Override
+   public int getEffectThreshold() {
+      return effectThreshold;
+   }
+   
+   @Override
+   public boolean getAttackPowerUp() {
+      return attackPowerUp;
+   }
+   
+   @Override
+   public boolean isMobileMode() {
+      return mobileMode;
+   }
+   
+   /**
+    * Makes {@link SimulationRequest}s. Every setter returns this builder, and {@link #build()} may be
+    * called any number of times. A builder must not be shared between threads.
+    * 
+    * @author Andrew Meyers
+    * 
+    */
+   public static final class Builder {
+      private final RosterManager rosterManager;
+      private final SpeciesManager speciesManager;
+      private final EffectManager effectManager;
+      private final GradingModeManager gradingModeManager;
+      private Board board = new Board();
+      private Stage stage = null;
+      private Team team = new TeamImpl();
+      private Integer remainingHealth = null;
+      private Integer remainingMoves = null;
+      private int numFeeders = 50;
+      private int feederHeight = 0;
+      private int refinementLimit = 0;
+      private int targetLatency = 0;
+      private boolean exactBranching = false;
+      private boolean commonRandomNumbers = false;
+      private FeederSampling sampling = FeederSampling.RANDOM;
+      private Long seed = null;
+      private Collection<Effect> disabledEffects = Collections.emptyList();
+      private int effectThreshold = 0;
+      private boolean attackPowerUp = false;
+      private boolean mobileMode = false;
+      private UUID processUUID = null;
+      private SimulationAcceptor acceptor = null;
+      
+      public Builder(RosterManager rosterManager, SpeciesManager speciesManager, EffectManager effectManager,
+            GradingModeManager gradingModeManager) {
+         this.rosterManager = rosterManager;
+         this.speciesManager = speciesManager;
+         this.effectManager = effectManager;
+         this.gradingModeManager = gradingModeManager;
+      }
+      
+      private Builder(SimulationRequest request) {
+         this(request.rosterManager, request.speciesManager, request.effectManager, request.gradingModeManager);
+         board = request.board;
+         stage = request.stage;
+         team = request.team;
+         remainingHealth = request.remainingHealth;
+         remainingMoves = request.remainingMoves;
+         numFeeders = request.numFeeders;
+         feederHeight = request.feederHeight;
+         refinementLimit = request.refinementLimit;
+         targetLatency = request.targetLatency;
+         exactBranching = request.exactBranching;
+         commonRandomNumbers = request.commonRandomNumbers;
+         sampling = request.sampling;
+         seed = request.seed;
+         disabledEffects = request.disabledEffects;
+         effectThreshold = request.effectThreshold;
+         attackPowerUp = request.attackPowerUp;
+         mobileMode = request.mobileMode;
+         acceptor = request.acceptor;
+      }
+      
+      /**
+       * @param board
+       *           The board to simulate, which is copied when the request is built.
+       * @return This builder
+       */
+      public Builder setBoard(Board board) {
+         this.board = board;
+         return this;
+      }
+      
+      /**
+       * Sets the stage, which also resets the health and moves to the stage's own unless they are
+       * set again afterwards.
+       * 
+       * @param stage
+       * @return This builder
+       */
+      public Builder setStage(Stage stage) {
+         this.stage = stage;
+         remainingHealth = null;
+         remainingMoves = null;
+         return this;
+      }
+      
+      /**
+       * @param team
+       *           The team, which is copied immediately.
+       * @return This builder
+       */
+      public Builder setTeam(Team team) {
+         this.team = new TeamImpl(team);
+         return this;
+      }
+      
+      public Builder setRemainingHealth(int remainingHealth) {
+         this.remainingHealth = remainingHealth;
+         return this;
+      }
+      
+      /**
+       * @param remainingMoves
+       *           The moves remaining before the move to simulate, as the user would report them.
+       * @return This builder
+       */
+      public Builder setRemainingMoves(int remainingMoves) {
+         this.remainingMoves = remainingMoves;
+         return this;
+      }
+      
+      public Builder setNumFeeders(int numFeeders) {
+         this.numFeeders = numFeeders;
+         return this;
+      }
+      
+      public Builder setFeederHeight(int feederHeight) {
+         this.feederHeight = feederHeight;
+         return this;
+      }
+      
+      public Builder setRefinementLimit(int refinementLimit) {
+         this.refinementLimit = refinementLimit;
+         return this;
+      }
+      
+      public Builder setTargetLatency(int targetLatency) {
+         this.targetLatency = targetLatency;
+         return this;
+      }
+      
+      public Builder setExactBranching(boolean exactBranching) {
+         this.exactBranching = exactBranching;
+         return this;
+      }
+      
+      public Builder setCommonRandomNumbers(boolean commonRandomNumbers) {
+         this.commonRandomNumbers = commonRandomNumbers;
+         return this;
+      }
+      
+      public Builder setFeederSampling(FeederSampling sampling) {
+         this.sampling = sampling == null ? FeederSampling.RANDOM : sampling;
+         return this;
+      }
+      
+      /**
+       * @param seed
+       *           The seed for every random number in the simulation, or null to draw them freshly.
+       * @return This builder
+       */
+      public Builder setSeed(Long seed) {
+         this.seed = seed;
+         return this;
+      }
+      
+      public Builder setDisabledEffects(Collection<Effect> disabledEffects) {
+         this.disabledEffects = Collections.unmodifiableList(new ArrayList<Effect>(disabledEffects));
+         return this;
+      }
+      
+      public Builder setEffectThreshold(int effectThreshold) {
+         this.effectThreshold = effectThreshold;
+         return this;
+      }
+      
+      public Builder setAttackPowerUp(boolean attackPowerUp) {
+         this.attackPowerUp = attackPowerUp;
+         return this;
+      }
+      
+      public Builder setMobileMode(boolean mobileMode) {
+         this.mobileMode = mobileMode;
+         return this;
+      }
+      
+      /**
+       * @param processUUID
+       *           The id for the core, or null for a new random one in each request built.
+       * @return This builder
+       */
+      public Builder setProcessUUID(UUID processUUID) {
+         this.processUUID = processUUID;
+         return this;
+      }
+      
+      /**
+       * @param acceptor
+       *           Where the results go, or null to discard them. The acceptor decides which process
+       *           is current, so without one every request's own process is.
+       * @return This builder
+       */
+      public Builder setAcceptor(SimulationAcceptor acceptor) {
+         this.acceptor = acceptor;
+         return this;
+      }
+      
+      /**
+       * @return A request for everything set so far.
+       * @throws NullPointerException
+       *            If no stage was set.
+       */
+      public SimulationRequest build() {
+         if (stage == null) {
+            throw new NullPointerException("Cannot build a SimulationRequest without a stage.");
+         }
+         return new SimulationRequest(this);
+      }
+   }
+}
@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.UUID;
 
 import shuffle.fwk.data.Board;
+import shuffle.fwk.data.simulation.util.FeederSampling;
 import shuffle.fwk.data.simulation.util.NumberSpan;
 
 /**
@@ -42,10 +43,26 @@ public class SimulationResult {
    private final NumberSpan numCombosCleared;
    private final int hash;
    private final long startTime;
+   private final int sampleCount;
+   private final FeederSampling sampling;
    
    public SimulationResult(List<Integer> sourceMove, Board resultBoard, NumberSpan givenScore, NumberSpan givenGold,
          NumberSpan progress, UUID id, NumberSpan blocksCleared, NumberSpan disruptionsCleared,
          NumberSpan combosCleared, long startTime) {
+      this(sourceMove, resultBoard, givenScore, givenGold, progress, id, blocksCleared, disruptionsCleared,
+            combosCleared, startTime, 1);
+   }
+   
+   public SimulationResult(List<Integer> sourceMove, Board resultBoard, NumberSpan givenScore, NumberSpan givenGold,
+         NumberSpan progress, UUID id, NumberSpan blocksCleared, NumberSpan disruptionsCleared,
+         NumberSpan combosCleared, long startTime, int sampleCount) {
+      this(sourceMove, resultBoard, givenScore, givenGold, progress, id, blocksCleared, disruptionsCleared,
+            combosCleared, startTime, sampleCount, FeederSampling.RANDOM);
+   }
+   
+   public SimulationResult(List<Integer> sourceMove, Board resultBoard, NumberSpan givenScore, NumberSpan givenGold,
+         NumberSpan progress, UUID id, NumberSpan blocksCleared, NumberSpan disruptionsCleared,
+         NumberSpan combosCleared, long startTime, int sampleCount, FeederSampling sampling) {
       if (resultBoard == null) {
          throw new NullPointerException("Cannot create a SimulaitonResult with a null board.");
       }
@@ -59,9 +76,27 @@ public class SimulationResult {
       move = sourceMove;
       board = resultBoard;
       this.startTime = startTime;
+      this.sampleCount = sampleCount;
+      this.sampling = sampling == null ? FeederSampling.RANDOM : sampling;
       hash = generateHash();
    }
    
+   /**
+    * Creates a copy of the given result, attributed to a different process and start time. This
+    * allows a previously computed result to be reused for a new request.
+    * 
+    * @param other
+    *           The result to copy
+    * @param id
+    *           The process UUID for the copy
+    * @param startTime
+    *           The start time for the copy
+    */
+   public SimulationResult(SimulationResult other, UUID id, long startTime) {
+      this(other.move, other.board, other.score, other.gold, other.megaProgress, id, other.numBlocksCleared,
+            other.numDisruptionsCleared, other.numCombosCleared, startTime, other.sampleCount, other.sampling);
+   }
+   
    /**
     * @return
     */
@@ -88,6 +123,20 @@ public class SimulationResult {
       return startTime;
    }
    
+   /**
+    * @return The number of simulated outcomes this result was assembled from.
+    */
+   public int getSampleCount() {
+      return sampleCount;
+   }
+   
+   /**
+    * @return How the feeders for the samples this result was assembled from were drawn.
+    */
+   public FeederSampling getFeederSampling() {
+      return sampling;
+   }
+   
    public List<Integer> getMove() {
       List<Integer> ret = Collections.emptyList();
       if (move != null) {
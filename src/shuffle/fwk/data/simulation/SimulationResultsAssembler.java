@@ -19,15 +19,12 @@
 package shuffle.fwk.data.simulation;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.RecursiveTask;
 
-import shuffle.fwk.data.Board;
-import shuffle.fwk.data.simulation.util.NumberSpan;
+import shuffle.fwk.data.simulation.util.FeederSampling;
+import shuffle.fwk.data.simulation.util.SimulationEvents;
 
 /**
  * @author Andrew Meyers
@@ -38,14 +35,29 @@ public class SimulationResultsAssembler extends RecursiveTask<SimulationResult>
    
    private final List<Integer> move;
    private final UUID processUUID;
-   private final Collection<SimulationTask> results;
+   private final SimulationAccumulator outcomes;
    private final long startTime;
+   private final FeederSampling sampling;
    
-   public SimulationResultsAssembler(List<Integer> move, UUID processUUID, Collection<SimulationTask> results,
+   public SimulationResultsAssembler(List<Integer> move, UUID processUUID, SimulationAccumulator outcomes,
          long startTime) {
+      this(move, processUUID, outcomes, startTime, FeederSampling.RANDOM);
+   }
+   
+   /**
+    * @param move
+    * @param processUUID
+    * @param outcomes
+    *           The outcomes of the move, which are left as they are
+    * @param startTime
+    * @param sampling
+    */
+   public SimulationResultsAssembler(List<Integer> move, UUID processUUID, SimulationAccumulator outcomes,
+         long startTime, FeederSampling sampling) {
+      this.sampling = sampling;
       this.move = move == null ? null : new ArrayList<Integer>(move);
       this.processUUID = processUUID;
-      this.results = new ArrayList<SimulationTask>(results);
+      this.outcomes = outcomes;
       this.startTime = startTime;
    }
    
@@ -55,51 +67,23 @@ public class SimulationResultsAssembler extends RecursiveTask<SimulationResult>
     */
    @Override
    protected SimulationResult compute() {
-      if (results == null || results.isEmpty()) {
+      if (outcomes == null || outcomes.getCount() == 0) {
          return null;
       }
+      SimulationEvents.MoveAssembly event = new SimulationEvents.MoveAssembly();
+      event.begin();
       
-      NumberSpan score = new NumberSpan();
-      NumberSpan gold = new NumberSpan();
-      NumberSpan blocks = new NumberSpan();
-      NumberSpan disrupts = new NumberSpan();
-      NumberSpan combos = new NumberSpan();
-      NumberSpan progress = new NumberSpan();
-      
-      // keeps track of all board chances, and the best one.
-      Map<Board, Float> boardChances = new HashMap<Board, Float>();
-      Board likelyBoard = null;
-      
-      for (SimulationTask task : results) {
-         // get the state
-         SimulationState state = task.join();
-         if (state == null) {
-            continue;
-         }
-         float weight = state.getWeight();
-         
-         score = score.put(state.getScore());
-         gold = gold.put(state.getGold(), weight);
-         blocks = blocks.put(state.getBlocksCleared(), weight);
-         disrupts = disrupts.put(state.getDisruptionsCleared(), weight);
-         combos = combos.put(state.getCombosCleared(), weight);
-         progress = progress.put(state.getMegaProgress(), weight);
-         
-         // Process the board chances
-         Board b = state.getResultBoard();
-         float boardChance = weight;
-         if (boardChances.containsKey(b)) {
-            boardChance += boardChances.get(b);
-         }
-         boardChances.put(b, boardChance);
-         if (likelyBoard == null || boardChances.get(b) > boardChances.get(likelyBoard)) {
-            likelyBoard = b;
-         }
-      }
-      SimulationResult result = null;
-      if (likelyBoard != null) {
-         result = new SimulationResult(move, likelyBoard, score, gold, progress, processUUID, blocks, disrupts, combos,
-               startTime);
+      // Weights are rescaled to average 1 on a copy, since more outcomes may be added later.
+      SimulationAccumulator accumulator = new SimulationAccumulator();
+      accumulator.merge(outcomes);
+      accumulator.normalize();
+      SimulationResult result = accumulator.getResult(move, processUUID, startTime, sampling);
+      event.end();
+      if (event.shouldCommit()) {
+         event.processUUID = SimulationEvents.format(processUUID);
+         event.move = SimulationEvents.format(move);
+         event.samples = accumulator.getCount();
+         event.commit();
       }
       return result;
    }
@@ -43,6 +43,8 @@ public class SimulationState {
    private int numCombos = 0;
    private int gold;
    private boolean isRandom = false;
+   // The columns, as bits (c - 1), which wanted a block after their feeder ran out.
+   private int starvedColumns = 0;
    
    private int lastChainPause = 0;
 
@@ -111,6 +113,7 @@ public class SimulationState {
       blocksCleared = other.blocksCleared;
       disruptionsCleared = other.disruptionsCleared;
       numCombos = other.numCombos;
+      starvedColumns = other.starvedColumns;
    }
    
    public SimulationCore getCore() {
@@ -431,4 +434,27 @@ public class SimulationState {
    public boolean isRandom() {
       return isRandom;
    }
+   
+   /**
+    * Records that the given column had room for a block from the feeder, but it had none left.
+    * 
+    * @param col
+    */
+   public void setStarved(int col) {
+      starvedColumns |= 1 << col - 1;
+   }
+   
+   /**
+    * @param feeder
+    * @return True if the given feeder has none of the blocks this state wanted but did not get, so
+    *         it would not have changed anything if it had been used instead.
+    */
+   public boolean isUnaffectedBy(SimulationFeeder feeder) {
+      for (int col = 1; col <= Board.NUM_COLS; col++) {
+         if ((starvedColumns & 1 << col - 1) != 0 && feeder.hasMore(col)) {
+            return false;
+         }
+      }
+      return true;
+   }
 }
@@ -27,15 +27,17 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.PriorityQueue;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.UUID;
 import java.util.concurrent.RecursiveTask;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -48,25 +50,51 @@ import shuffle.fwk.data.simulation.effects.ActivateMegaComboEffect;
 import shuffle.fwk.data.simulation.effects.ComboEffect;
 import shuffle.fwk.data.simulation.effects.DelayThawEffect;
 import shuffle.fwk.data.simulation.effects.EraseComboEffect;
+import shuffle.fwk.data.simulation.util.DecisionPath;
+import shuffle.fwk.data.simulation.util.EffectTimeWheel;
 import shuffle.fwk.data.simulation.util.NumberSpan;
+import shuffle.fwk.data.simulation.util.SimulationEvents;
+import shuffle.fwk.data.simulation.util.SimulationMetrics;
+import shuffle.fwk.data.simulation.util.SimulationTrace;
 import shuffle.fwk.data.simulation.util.TriFunction;
 
 /**
  * @author Andrew Meyers
- *         
+ * 
  */
 public class SimulationTask extends RecursiveTask<SimulationState> {
    private static final long serialVersionUID = -7639294565196247487L;
    private static final Logger LOG = Logger.getLogger(SimulationTask.class.getName());
-   private static boolean logFiner = false;
    /**
     * All sims will terminate if their curTimeStamp reaches this frame count.
     */
    private static final int SIM_TIMEOUT = 1000;
    private int simCounter = 0;
+   private int comboCounter = 0;
+   /**
+    * This task's id in the trace, given when it first adds a record.
+    */
+   private int traceId = 0;
    
    private static final double[] COMBO_MULTIPLIER = new double[] { 1.0, 1.1, 1.15, 1.2, 1.3, 1.4, 1.5, 2, 2.5 };
    private static final int[] COMBO_THRESHOLD = new int[] { 1, 2, 5, 10, 25, 50, 75, 100, 200 };
+   /**
+    * The chain multiplier for every combo count up to the last threshold, after which it is fixed.
+    */
+   private static final double[] COMBO_MULTIPLIER_BY_COUNT = new double[COMBO_THRESHOLD[COMBO_THRESHOLD.length - 1]
+         + 1];
+   
+   static {
+      int tier = 0;
+      for (int combos = 0; combos < COMBO_MULTIPLIER_BY_COUNT.length; combos++) {
+         while (tier + 1 < COMBO_THRESHOLD.length && COMBO_THRESHOLD[tier + 1] <= combos) {
+            tier++;
+         }
+         COMBO_MULTIPLIER_BY_COUNT[combos] = COMBO_MULTIPLIER[tier];
+      }
+   }
+   
+   private static Random r = new Random(System.nanoTime());
    
    private static final int COMBO_DELAY = 24;
    private static final int THAW_DELAY = 1;
@@ -78,22 +106,44 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
    
    private boolean boardChanged = true;
    
+   /**
+    * The bit mask of all columns, with column c at bit (c - 1).
+    */
+   private static final int ALL_COLUMNS = (1 << Board.NUM_COLS) - 1;
+   /**
+    * The columns which gravity must still visit. A column leaves this set once it has nothing left
+    * to fall or feed, and re-enters it whenever something that gravity depends upon changes in it.
+    */
+   private int unsettledColumns = ALL_COLUMNS;
+   /**
+    * Scratch space for the per-row heights of the column being moved.
+    */
+   private final int[] heightScratch = new int[Board.NUM_ROWS];
+   
    /**
     * The current time for the simulation.
     */
    private int curTimeStamp = 0;
    
    /**
-    * The unique identification for this simulation.
+    * The unique identification for this simulation, only formatted when it is asked for.
     */
-   private final String id;
+   private String id = null;
+   private final List<Integer> move;
+   private final UUID feederID;
    
    /**
-    * The map of timestamp to a Collection of all scheduled effects for that timestamp (happens
-    * before gravity checks/etc.)
+    * The time wheel of all scheduled effects, by timestamp (happens before gravity checks/etc.)
+    */
+   private final EffectTimeWheel<ComboEffect> simulationEffects = new EffectTimeWheel<ComboEffect>();
+   /**
+    * How many of the scheduled effects are {@link DelayThawEffect}s.
+    */
+   private int scheduledThawCount = 0;
+   /**
+    * Reused to hold the effects popped for the current timestamp.
     */
-   private Map<Integer, Collection<ComboEffect>> simulationEffects = new HashMap<Integer, Collection<ComboEffect>>();
-   private PriorityQueue<Integer> simulationEffectTimes = new PriorityQueue<Integer>();
+   private final List<ComboEffect> currentEffects = new ArrayList<ComboEffect>();
    
    private HashMap<Integer, Collection<ActivateComboEffect>> effectClaims = new HashMap<Integer, Collection<ActivateComboEffect>>();
    private HashMap<Integer, Collection<ComboEffect>> activeEffects = new HashMap<Integer, Collection<ComboEffect>>();
@@ -105,11 +155,20 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
     */
    private TreeSet<ActivateComboEffect> prospecticeCombosSet = new TreeSet<ActivateComboEffect>(
          (a, b) -> Integer.compare(a.getPriority(), b.getPriority()));
-         
+   
    private SimulationState state;
    
    private Consumer<SimulationState> finalAction = null;
    
+   /**
+    * The scripted outcome of every random decision, or null to roll them randomly.
+    */
+   private final DecisionPath decisions;
+   /**
+    * The random numbers for this task, seeded by its feeder, or null to use the shared ones.
+    */
+   private final Random random;
+   
    public SimulationTask(SimulationCore simulationCore) {
       this(simulationCore, null, new SimulationFeeder());
    }
@@ -119,14 +178,91 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
    }
    
    public SimulationTask(SimulationCore simulationCore, List<Integer> move, SimulationFeeder feeder) {
-      String moveString;
-      if (move == null) {
-         moveString = "null";
+      this(simulationCore, move, feeder, null, null);
+   }
+   
+   /**
+    * Creates a task whose random decisions are all taken from the given path instead of being
+    * rolled, so that it simulates exactly one of the possible outcomes.
+    * 
+    * @param simulationCore
+    * @param move
+    * @param feeder
+    * @param decisions
+    *           The path to follow, or null to roll every decision randomly.
+    */
+   public SimulationTask(SimulationCore simulationCore, List<Integer> move, SimulationFeeder feeder,
+         DecisionPath decisions) {
+      this(simulationCore, move, feeder, decisions, null);
+   }
+   
+   /**
+    * Creates a task for the given move which starts from a board that was already swapped, so that
+    * every feeder simulated for the move can share the same one.
+    * 
+    * @param simulationCore
+    * @param move
+    * @param feeder
+    * @param start
+    *           The start of the move, from {@link #getStart(SimulationCore, List)}
+    */
+   public SimulationTask(SimulationCore simulationCore, List<Integer> move, SimulationFeeder feeder, Start start) {
+      this(simulationCore, move, feeder, null, start);
+   }
+   
+   private SimulationTask(SimulationCore simulationCore, List<Integer> move, SimulationFeeder feeder,
+         DecisionPath decisions, Start start) {
+      this.decisions = decisions;
+      if (simulationCore.isCommonRandomNumbers()) {
+         random = new Random(feeder.getSeed());
+      } else if (simulationCore.getSeed() != null) {
+         // Still seeded by the feeder, but each move gets its own numbers as it would unseeded.
+         random = new Random(feeder.getSeed() ^ (move == null ? 0L : move.hashCode()) * 0x9E3779B97F4A7C15L);
       } else {
-         moveString = StringUtils.join(move.toArray(new Integer[0]));
+         random = null;
+      }
+      this.move = move;
+      feederID = feeder.getID();
+      createNewStateForMove(simulationCore, move, feeder, start == null ? getStart(simulationCore, move) : start);
+   }
+   
+   /**
+    * The board a move starts from once its blocks are swapped, and which of its blocks are original.
+    * Neither depends on the feeder, and neither is changed by the tasks given it.
+    */
+   public static final class Start {
+      private final Board board;
+      private final boolean[][] originality;
+      
+      private Start(Board board, boolean[][] originality) {
+         this.board = board;
+         this.originality = originality;
+      }
+   }
+   
+   /**
+    * @param simulationCore
+    * @param move
+    *           The move, or null for none
+    * @return The start of the given move on the core's board.
+    */
+   public static Start getStart(SimulationCore simulationCore, List<Integer> move) {
+      // Do the swap
+      Board startBoard = simulationCore.getBoardCopy();
+      if (move != null && move.size() >= 4) {
+         Species pickedUp = startBoard.getSpeciesAt(move.get(0), move.get(1));
+         Species droppedAt = startBoard.getSpeciesAt(move.get(2), move.get(3));
+         startBoard.setSpeciesAt(move.get(0), move.get(1), droppedAt);
+         startBoard.setSpeciesAt(move.get(2), move.get(3), pickedUp);
       }
-      id = moveString + " feeder:" + feeder.getID().toString();
-      createNewStateForMove(simulationCore, move, feeder);
+      // Check for originality as non-air blocks.
+      boolean[][] originality = new boolean[Board.NUM_ROWS][Board.NUM_COLS];
+      for (int row = 1; row <= Board.NUM_ROWS; row++) {
+         for (int col = 1; col <= Board.NUM_COLS; col++) {
+            originality[row - 1][col - 1] = !startBoard.getSpeciesAt(row, col).equals(Species.AIR);
+         }
+      }
+      return new Start(startBoard, originality);
    }
    
    public NumberSpan getScoreModifier(ActivateComboEffect comboEffect) {
@@ -173,15 +309,39 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
    }
    
    public String getId() {
+      if (id == null) {
+         String moveString;
+         if (move == null) {
+            moveString = "null";
+         } else {
+            moveString = StringUtils.join(move.toArray(new Integer[0]));
+         }
+         id = moveString + " feeder:" + feederID.toString();
+      }
       return id;
    }
    
-   public void logFinerWithId(String message, Object... args) {
-      LOG.finer(String.format(id + ": " + message, args));
+   /**
+    * Adds a record to the trace, marked with this task and its current frame.
+    * 
+    * @param type
+    * @param coords
+    *           The coordinates involved, of which only the first cell is kept, or null for none
+    * @param effect
+    *           The effect involved, or null for none
+    * @param value
+    */
+   private void trace(SimulationTrace.Type type, List<Integer> coords, Effect effect, int value) {
+      if (traceId == 0) {
+         traceId = SimulationTrace.nextTaskId();
+      }
+      boolean hasCell = coords != null && coords.size() >= 2;
+      SimulationTrace.record(type, traceId, curTimeStamp, hasCell ? coords.get(0) : 0, hasCell ? coords.get(1) : 0,
+            effect, value);
    }
    
-   public static void setLogFiner(boolean enabled) {
-      logFiner = enabled;
+   private Effect getTraceEffect(List<Integer> coords) {
+      return getEffectFor(getEffectSpecies(coords));
    }
    
    /**
@@ -190,52 +350,24 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
     * @param simulationCore
     * @param move
     * @param feeder
+    * @param start
+    *           The start of the move, which the state copies
     */
-   private void createNewStateForMove(SimulationCore simulationCore, List<Integer> move, SimulationFeeder feeder) {
-      if (logFiner) {
-         logFinerWithId("creating new state");
-      }
-      // Do the swap
-      Board startBoard = simulationCore.getBoardCopy();
-      if (move != null && move.size() >= 4) {
-         Species pickedUp = startBoard.getSpeciesAt(move.get(0), move.get(1));
-         Species droppedAt = startBoard.getSpeciesAt(move.get(2), move.get(3));
-         startBoard.setSpeciesAt(move.get(0), move.get(1), droppedAt);
-         startBoard.setSpeciesAt(move.get(2), move.get(3), pickedUp);
-      }
-      if (logFiner) {
-         logFinerWithId("board created");
-      }
-      // Check for originality as non-air blocks.
-      boolean[][] originality = new boolean[Board.NUM_ROWS][Board.NUM_COLS];
-      for (int row = 1; row <= Board.NUM_ROWS; row++) {
-         for (int col = 1; col <= Board.NUM_COLS; col++) {
-            originality[row - 1][col - 1] = !startBoard.getSpeciesAt(row, col).equals(Species.AIR);
-         }
-      }
-      if (logFiner) {
-         logFinerWithId("originality set");
-      }
-      
+   private void createNewStateForMove(SimulationCore simulationCore, List<Integer> move, SimulationFeeder feeder,
+         Start start) {
       // Create the state
-      state = new SimulationState(simulationCore, feeder, startBoard, 1.0f, new NumberSpan(), 0, originality, 0);
-      if (logFiner) {
-         logFinerWithId("state made");
-      }
+      state = new SimulationState(simulationCore, feeder, start.board, 1.0f, new NumberSpan(), 0, start.originality,
+            0);
       
       doComboCheck();
-      if (logFiner) {
-         logFinerWithId("combos checked, number of claims: " + prospecticeCombosSet.size());
+      if (SimulationTrace.isEnabled()) {
+         trace(SimulationTrace.Type.TASK_START, move, null, prospecticeCombosSet.size());
       }
       if (move != null && move.size() >= 4) {
          ActivateComboEffect firstCombo = findBestComboFor(move.get(2), move.get(3));
          if (firstCombo == null) {
             firstCombo = findBestComboFor(move.get(0), move.get(1));
          }
-         if (logFiner) {
-            logFinerWithId("performing FIRST combo: " + StringUtils.join(firstCombo) + " with species: "
-                  + getEffectSpecies(firstCombo.getCoords()));
-         }
          List<Integer> metalBlocks = findMatches(Board.NUM_CELLS, true,
  (r, c, s) -> s.getNextMetal().isAir());
          Board b = getState().getBoard();
@@ -290,11 +422,11 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
    @Override
    protected SimulationState compute() {
       // ScheduledEffects should start out with exactly one effect on the queue.
+      SimulationEvents.SlowTask event = SimulationEvents.beginSlowTask();
       try {
          while (!doneSimulation() && simCounter < SIM_TIMEOUT) {
-            if (logFiner) {
-               logFinerWithId("simtime: %s, score: %s, comboQueue:%s", curTimeStamp, getState().getScore(),
-                     prospecticeCombosSet.size());
+            if (SimulationTrace.isEnabled()) {
+               trace(SimulationTrace.Type.FRAME, null, null, prospecticeCombosSet.size());
             }
             doGravity();
             doAllCurrentEffects();
@@ -311,6 +443,21 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
             }
             simCounter++; // Loop protection
          }
+         SimulationMetrics.INSTANCE.addTask(simCounter, comboCounter, simCounter >= SIM_TIMEOUT);
+         if (SimulationTrace.isEnabled()) {
+            trace(SimulationTrace.Type.TASK_END, null, null, simCounter);
+         }
+         if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+               event.processUUID = SimulationEvents.format(getState().getCore().getId());
+               event.move = SimulationEvents.format(move);
+               event.iterations = simCounter;
+               event.combos = comboCounter;
+               event.timedOut = simCounter >= SIM_TIMEOUT;
+               event.commit();
+            }
+         }
          if (finalAction != null) {
             finalAction.accept(getState());
          }
@@ -338,61 +485,47 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
     * @return
     */
    private boolean onlyThawing() {
-      boolean inactive = getNextBumpTime() == null && getNextComboTime() == null;
-      boolean isThawing = false;
-      if (inactive) {
-         for (Collection<ComboEffect> collection : simulationEffects.values()) {
-            for (ComboEffect effect : collection) {
-               if (effect instanceof DelayThawEffect) {
-                  isThawing = true;
-               } else {
-                  inactive = false;
-               }
-            }
-         }
-      }
-      return inactive && isThawing;
+      boolean inactive = getNextBumpTime() == null && prospecticeCombosSet.isEmpty();
+      return inactive && scheduledThawCount > 0 && scheduledThawCount == simulationEffects.size();
    }
    
    private void advanceTimeStamp() {
-      Integer nextEffectTime = getNextEffectTime();
+      int nextTime = Math.min(getNextEffectTime(), getNextComboTimeValue());
       Integer nextBumpTime = getNextBumpTime();
-      Integer nextComboTime = getNextComboTime();
-      
-      Integer nextTime = getLowestOf(nextEffectTime, nextBumpTime, nextComboTime);
-      if (nextTime != null) {
-         curTimeStamp = nextTime.intValue();
+      if (nextBumpTime != null) {
+         nextTime = Math.min(nextTime, nextBumpTime.intValue());
       }
-   }
-   
-   private Integer getLowestOf(Integer... values) {
-      Integer lowest = null;
-      for (Integer i : values) {
-         if (lowest == null || i != null && i.intValue() < lowest.intValue()) {
-            lowest = i;
-         }
+      if (nextTime != EffectTimeWheel.NO_TIME) {
+         curTimeStamp = nextTime;
+         simulationEffects.advanceTo(curTimeStamp);
       }
-      return lowest;
    }
    
    private boolean doneSimulation() {
-      boolean ret = true;
-      ret &= getNextEffectTime() == null;
-      ret &= getNextBumpTime() == null;
-      ret &= getNextComboTime() == null;
-      return ret;
+      return simulationEffects.isEmpty() && getNextBumpTime() == null && prospecticeCombosSet.isEmpty();
    }
    
    /**
-    * @return
+    * @return The earliest timestamp with a scheduled effect, or {@link EffectTimeWheel#NO_TIME}.
     */
-   private Integer getNextEffectTime() {
-      return simulationEffectTimes.peek();
+   private int getNextEffectTime() {
+      return simulationEffects.getNextTime();
    }
    
    public Integer getNextComboTime() {
       if (prospecticeCombosSet.isEmpty()) {
          return null;
+      } else {
+         return getNextComboTimeValue();
+      }
+   }
+   
+   /**
+    * @return The next combo time, or {@link EffectTimeWheel#NO_TIME} if there is no combo waiting.
+    */
+   private int getNextComboTimeValue() {
+      if (prospecticeCombosSet.isEmpty()) {
+         return EffectTimeWheel.NO_TIME;
       } else {
          return Math.max(lastComboTime + COMBO_DELAY, curTimeStamp);
       }
@@ -403,10 +536,13 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
    }
    
    private void doAllCurrentEffects() {
-      Integer nextTime = getNextEffectTime();
-      if (nextTime != null && nextTime.intValue() <= curTimeStamp) {
+      if (getNextEffectTime() <= curTimeStamp) {
          Collection<ComboEffect> currentEffects = popCurrentEffects();
-         boardChanged |= !currentEffects.isEmpty();
+         if (!currentEffects.isEmpty()) {
+            boardChanged = true;
+            // Effects can alter any part of the board
+            unsettledColumns = ALL_COLUMNS;
+         }
          for (ComboEffect effect : currentEffects) {
             effect.doEffect(this);
          }
@@ -430,92 +566,122 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
    /**
     * Returns the minimum height until the next bump. this will also set the boardChanged condition
     * to true if something bumps, and this will ALSO use the feeder (if available and ready) to fill
-    * in according to the increment.
+    * in according to the increment.<br>
+    * Only the {@link #unsettledColumns} are visited; every other column is known to have nothing
+    * left to fall, so it contributes no height.
     * 
     * @param increment
     * @return
     */
    private Integer moveEverythingDownBy(int increment) {
-      Integer minHeight = null;
       SimulationFeeder feeder = getState().getFeeder();
-      for (int col = 1; col <= Board.NUM_COLS; col++) { // each column
-         int[] initialHeight = getHeights(col);
-         for (int row = Board.NUM_ROWS; row >= 1; row--) { // going upwards
-            int toLowerBy = Math.min(increment, initialHeight[row - 1]);
-            if (toLowerBy > 0 && canMove(row, col)) { // not frozen, not claimed by a combo, and not
-                                                      // air
-               // find the distance to cover
-               int positionDelta = toLowerBy % SimulationState.FALL_DISTANCE;
-               int rowDelta = toLowerBy / SimulationState.FALL_DISTANCE;
-               // find the destination position and row
-               int startPosition = getState().getFallingPositionAt(row, col);
-               int destPos = startPosition - positionDelta;
-               int destRow = row + rowDelta;
-               while (destPos < 0) {
-                  destPos += SimulationState.FALL_DISTANCE;
-                  destRow += 1;
-               }
-               if (destRow != row || destPos != startPosition) {
-                  // make the actual move
-                  getState().swapTiles(row, col, destRow, col);
-                  // we DID move, so we are 'falling'
-                  getState().setFallingAt(destRow, col, true);
-                  // set the appropriate position
-                  getState().setFallingPositionAt(destRow, col, destPos);
-               }
-            } else if (toLowerBy > 0 && row == 1 && feeder.hasMore(col) && getState().getBoard().isAir(row, col)) {
-               // Feeder pushes into the very TOP row.
-               // How much we can actually put in
-               // how many rows we can actually add to - for every 16th additional unit of toLowerBy
-               // we gain 1 more row.
-               // Because this row is definitely free, we know we can add at least one, even if its
-               // at position 15.
-               // So we must go through and add as many as we can fit from the feeder.
-               int rowSpace = 1 + toLowerBy / SimulationState.FALL_DISTANCE;
-               int destPos = SimulationState.FALL_DISTANCE - toLowerBy % SimulationState.FALL_DISTANCE;
-               
-               int fedRow = rowSpace;
-               while (fedRow >= 1 && feeder.hasMore(col)) {
-                  Board b = getState().getBoard();
-                  b.setSpeciesAt(fedRow, col, feeder.pollColumn(col));
-                  b.setFrozenAt(fedRow, col, false);
-                  // We fed something in, which is 'falling'
-                  getState().setFallingAt(fedRow, col, true);
-                  // set the appropriate position
-                  getState().setFallingPositionAt(fedRow, col, destPos);
-                  // go to the next row up
-                  fedRow -= 1;
-               }
+      int minHeight = EffectTimeWheel.NO_TIME;
+      int toVisit = unsettledColumns;
+      while (toVisit != 0) { // each unsettled column
+         int col = Integer.numberOfTrailingZeros(toVisit) + 1;
+         toVisit &= toVisit - 1;
+         int colMinHeight = moveColumnDownBy(col, increment, feeder);
+         if (colMinHeight == EffectTimeWheel.NO_TIME) {
+            unsettledColumns &= ~(1 << col - 1);
+         } else if (colMinHeight < minHeight) {
+            minHeight = colMinHeight;
+         }
+      }
+      return minHeight == EffectTimeWheel.NO_TIME ? null : minHeight;
+   }
+   
+   /**
+    * Moves the given column down by the increment, feeding into it as required.
+    * 
+    * @param col
+    * @param increment
+    * @param feeder
+    * @return The minimum height until the next bump in this column, or
+    *         {@link EffectTimeWheel#NO_TIME} if nothing is left to fall or feed.
+    */
+   private int moveColumnDownBy(int col, int increment, SimulationFeeder feeder) {
+      int minHeight = EffectTimeWheel.NO_TIME;
+      int[] initialHeight = getHeights(col, heightScratch);
+      for (int row = Board.NUM_ROWS; row >= 1; row--) { // going upwards
+         int toLowerBy = Math.min(increment, initialHeight[row - 1]);
+         if (toLowerBy > 0 && canMove(row, col)) { // not frozen, not claimed by a combo, and not
+                                                   // air
+            // find the distance to cover
+            int positionDelta = toLowerBy % SimulationState.FALL_DISTANCE;
+            int rowDelta = toLowerBy / SimulationState.FALL_DISTANCE;
+            // find the destination position and row
+            int startPosition = getState().getFallingPositionAt(row, col);
+            int destPos = startPosition - positionDelta;
+            int destRow = row + rowDelta;
+            while (destPos < 0) {
+               destPos += SimulationState.FALL_DISTANCE;
+               destRow += 1;
+            }
+            if (destRow != row || destPos != startPosition) {
+               // make the actual move
+               getState().swapTiles(row, col, destRow, col);
+               // we DID move, so we are 'falling'
+               getState().setFallingAt(destRow, col, true);
+               // set the appropriate position
+               getState().setFallingPositionAt(destRow, col, destPos);
+            }
+         } else if (toLowerBy > 0 && row == 1 && !feeder.hasMore(col) && getState().getBoard().isAir(row, col)) {
+            getState().setStarved(col);
+         } else if (toLowerBy > 0 && row == 1 && feeder.hasMore(col) && getState().getBoard().isAir(row, col)) {
+            // Feeder pushes into the very TOP row.
+            // How much we can actually put in
+            // how many rows we can actually add to - for every 16th additional unit of toLowerBy
+            // we gain 1 more row.
+            // Because this row is definitely free, we know we can add at least one, even if its
+            // at position 15.
+            // So we must go through and add as many as we can fit from the feeder.
+            int rowSpace = 1 + toLowerBy / SimulationState.FALL_DISTANCE;
+            int destPos = SimulationState.FALL_DISTANCE - toLowerBy % SimulationState.FALL_DISTANCE;
+            
+            int fedRow = rowSpace;
+            while (fedRow >= 1 && feeder.hasMore(col)) {
+               Board b = getState().getBoard();
+               b.setSpeciesAt(fedRow, col, feeder.pollColumn(col));
+               b.setFrozenAt(fedRow, col, false);
+               // We fed something in, which is 'falling'
+               getState().setFallingAt(fedRow, col, true);
+               // set the appropriate position
+               getState().setFallingPositionAt(fedRow, col, destPos);
+               // go to the next row up
+               fedRow -= 1;
             }
          }
-         // Maintain states and check for heights
-         int[] postMoveHeight = getHeights(col);
-         for (int row = Board.NUM_ROWS; row >= 1; row--) { // going upwards
-            if (canMove(row, col)) { // not frozen, not claimed by a combo, and not air
-               int height = postMoveHeight[row - 1];
-               if (getState().isFallingAt(row, col) && height == 0) {
-                  getState().setFallingAt(row, col, false);
-                  boardChanged = true;
-               } else if (height > 0) {
-                  getState().setFallingAt(row, col, true);
-                  if (minHeight == null || minHeight.intValue() > height) {
-                     minHeight = height;
-                  }
-               }
-            } else if (row == 1 && feeder.hasMore(col) && getState().getBoard().isAir(row, col)) {
-               int height = postMoveHeight[row - 1];
-               if (minHeight == null || minHeight.intValue() > height) {
-                  minHeight = height;
-               }
+      }
+      // Maintain states and check for heights
+      int[] postMoveHeight = getHeights(col, heightScratch);
+      for (int row = Board.NUM_ROWS; row >= 1; row--) { // going upwards
+         if (canMove(row, col)) { // not frozen, not claimed by a combo, and not air
+            int height = postMoveHeight[row - 1];
+            if (getState().isFallingAt(row, col) && height == 0) {
+               getState().setFallingAt(row, col, false);
+               boardChanged = true;
+            } else if (height > 0) {
+               getState().setFallingAt(row, col, true);
+               minHeight = Math.min(minHeight, height);
             }
+         } else if (row == 1 && feeder.hasMore(col) && getState().getBoard().isAir(row, col)) {
+            int height = postMoveHeight[row - 1];
+            minHeight = Math.min(minHeight, height);
          }
       }
       return minHeight;
    }
    
-   private int[] getHeights(int col) {
+   /**
+    * Fills in the height each row of the given column may fall before it bumps into something.
+    * 
+    * @param col
+    * @param heightAt
+    *           Receives the heights, indexed by row - 1.
+    * @return heightAt
+    */
+   private int[] getHeights(int col, int[] heightAt) {
       Board b = getState().getBoard();
-      int[] heightAt = new int[Board.NUM_ROWS];
       for (int row = Board.NUM_ROWS; row >= 1; row--) { // going upwards
          int belowPosition = 0;
          int belowHeight = 0;
@@ -553,6 +719,21 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
    }
    
    private void doComboCheck() {
+      // Claims are rebuilt from scratch, so only the cells whose claims actually change should
+      // disturb gravity.
+      long claimedBefore = getClaimedCells();
+      int unsettledBefore = unsettledColumns;
+      rebuildProspectiveCombos();
+      long changedClaims = claimedBefore ^ getClaimedCells();
+      unsettledColumns = unsettledBefore;
+      while (changedClaims != 0) {
+         int key = Long.numberOfTrailingZeros(changedClaims);
+         changedClaims &= changedClaims - 1;
+         unsettledColumns |= 1 << key % Board.NUM_COLS;
+      }
+   }
+   
+   private void rebuildProspectiveCombos() {
       Board b = getState().getBoard();
       boolean[][] hAvailable = new boolean[Board.NUM_ROWS][Board.NUM_COLS];
       boolean[][] vAvailable = new boolean[Board.NUM_ROWS][Board.NUM_COLS];
@@ -657,12 +838,14 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
    
    public void doCombo(ActivateComboEffect effect) {
       if (effect != null) {
-         if (logFiner) {
-            logFinerWithId("Performing combo effect: %s", StringUtils.join(effect));
+         if (SimulationTrace.isEnabled()) {
+            trace(SimulationTrace.Type.COMBO_STARTED, effect.getCoords(), getTraceEffect(effect.getCoords()), 0);
          }
          effect.doEffect(this);
+         comboCounter++;
          lastComboTime = curTimeStamp;
          boardChanged = true;
+         unsettledColumns = ALL_COLUMNS;
       }
    }
    
@@ -699,6 +882,7 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
    
    public void addActiveFor(ComboEffect effect) {
       List<Integer> coords = effect.getCoords();
+      markUnsettled(coords);
       for (int i = 0; i * 2 + 1 < coords.size(); i++) {
          Integer row = coords.get(i * 2);
          Integer col = coords.get(i * 2 + 1);
@@ -712,6 +896,7 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
    
    public void removeActive(ComboEffect effect) {
       List<Integer> coords = effect.getCoords();
+      markUnsettled(coords);
       for (int i = 0; i * 2 + 1 < coords.size(); i++) {
          Integer row = coords.get(i * 2);
          Integer col = coords.get(i * 2 + 1);
@@ -752,6 +937,7 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
     */
    public void addClaimFor(ActivateComboEffect effect) {
       List<Integer> coords = effect.getCoords();
+      markUnsettled(coords);
       for (int i = 0; i * 2 + 1 < coords.size(); i++) {
          Integer row = coords.get(i * 2);
          Integer col = coords.get(i * 2 + 1);
@@ -770,11 +956,36 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
     * @param col
     */
    public void removeClaimsFor(int row, int col) {
-      effectClaims.remove(getKeyForCoords(row, col));
+      if (effectClaims.remove(getKeyForCoords(row, col)) != null) {
+         unsettledColumns |= 1 << col - 1;
+      }
+   }
+   
+   /**
+    * Marks every column touched by the given coordinates as needing another visit from gravity.
+    * 
+    * @param coords
+    */
+   private void markUnsettled(List<Integer> coords) {
+      for (int i = 0; i * 2 + 1 < coords.size(); i++) {
+         unsettledColumns |= 1 << coords.get(i * 2 + 1) - 1;
+      }
+   }
+   
+   /**
+    * @return The claimed cells, as a bit mask indexed by {@link #getKeyForCoords(int, int)}.
+    */
+   private long getClaimedCells() {
+      long claimed = 0;
+      for (Integer key : effectClaims.keySet()) {
+         claimed |= 1L << key;
+      }
+      return claimed;
    }
    
    public void removeClaim(ActivateComboEffect effect) {
       List<Integer> coords = effect.getCoords();
+      markUnsettled(coords);
       for (int i = 0; i * 2 + 1 < coords.size(); i++) {
          Integer row = coords.get(i * 2);
          Integer col = coords.get(i * 2 + 1);
@@ -790,10 +1001,10 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
    }
    
    public void completeComboFor(EraseComboEffect effect) {
-      if (logFiner) {
-         logFinerWithId("Completing combo: %s", effect.toString());
-      }
       List<Integer> coords = effect.getCoords();
+      if (SimulationTrace.isEnabled()) {
+         trace(SimulationTrace.Type.COMBO_COMPLETED, coords, null, coords.size() / 2);
+      }
       removeActive(effect);
       Board b = getState().getBoard();
       for (int i = 0; i * 2 + 1 < coords.size(); i++) {
@@ -832,11 +1043,8 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
    }
    
    private void addProspectiveCombo(List<Integer> coords) {
-      if (logFiner) {
-         logFinerWithId("Recognized combo: %s", StringUtils.join(coords.toArray(new Integer[0])));
-      }
-      if (logFiner && isActiveCombo(coords)) {
-         logFinerWithId("combo is already active: %s", StringUtils.join(coords.toArray(new Integer[0])));
+      if (SimulationTrace.isEnabled()) {
+         trace(SimulationTrace.Type.COMBO_RECOGNIZED, coords, null, isActiveCombo(coords) ? 1 : 0);
       }
       if (coords.size() < 2 || isActiveCombo(coords)) {
          return;
@@ -869,8 +1077,8 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
          List<Integer> finalCoords = getComboForLimits(limits);
          activateEffect = new ActivateComboEffect(finalCoords, effect);
       }
-      if (logFiner) {
-         logFinerWithId("Claiming for combo: %s", activateEffect);
+      if (SimulationTrace.isEnabled()) {
+         trace(SimulationTrace.Type.COMBO_CLAIMED, activateEffect.getCoords(), null, 0);
       }
       prospecticeCombosSet.add(activateEffect);
       addClaimFor(activateEffect);
@@ -929,8 +1137,8 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
    }
    
    public void removeCollisions(List<Integer> coords) {
-      if (logFiner) {
-         logFinerWithId("Removing collisions with: %s", StringUtils.join(coords.toArray(new Integer[0])));
+      if (SimulationTrace.isEnabled()) {
+         trace(SimulationTrace.Type.COLLISIONS_REMOVED, coords, null, 0);
       }
       Set<ActivateComboEffect> toRemove = new HashSet<ActivateComboEffect>();
       for (ActivateComboEffect combo : prospecticeCombosSet) {
@@ -951,26 +1159,31 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
    }
    
    public void scheduleEffect(ComboEffect effect, int delay) {
-      if (logFiner) {
-         logFinerWithId("Scheduling combo after %s frames: %s", delay, effect);
+      if (SimulationTrace.isEnabled()) {
+         trace(SimulationTrace.Type.EFFECT_SCHEDULED, effect.getCoords(), null, delay);
       }
       effect.init(this);
       addActiveFor(effect);
-      int timeStamp = curTimeStamp + delay;
-      if (!simulationEffects.containsKey(timeStamp)) {
-         simulationEffects.put(timeStamp, new HashSet<ComboEffect>());
-         simulationEffectTimes.offer(timeStamp);
+      if (simulationEffects.schedule(curTimeStamp + delay, effect) && effect instanceof DelayThawEffect) {
+         scheduledThawCount++;
       }
-      simulationEffects.get(timeStamp).add(effect);
    }
    
+   /**
+    * Pops all effects due by the current timestamp. The returned collection is reused by the next
+    * call, so it must be consumed before then.
+    * 
+    * @return The effects to perform now.
+    */
    private Collection<ComboEffect> popCurrentEffects() {
-      Collection<ComboEffect> ret = simulationEffects.remove(curTimeStamp);
-      if (ret == null) {
-         ret = Collections.emptyList();
+      currentEffects.clear();
+      simulationEffects.pollDue(curTimeStamp, currentEffects);
+      for (ComboEffect effect : currentEffects) {
+         if (effect instanceof DelayThawEffect) {
+            scheduledThawCount--;
+         }
       }
-      simulationEffectTimes.remove(curTimeStamp);
-      return ret;
+      return currentEffects;
    }
    
    public SimulationState getState() {
@@ -1038,8 +1251,8 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
       double average = finalMin * ratio;
       // NumberSpan finalScore = effectSpecial.multiplyBy(preEffectScore);
       NumberSpan finalScore = new NumberSpan(finalMin, finalMax, average, 1);
-      if (logFiner) {
-         logFinerWithId("Calculated score as %s for combo %s", finalScore, comboEffect);
+      if (SimulationTrace.isEnabled()) {
+         trace(SimulationTrace.Type.SCORE_CALCULATED, comboEffect.getCoords(), effect, (int) finalScore.getAverage());
       }
       if (getState().getCore().isAttackPowerUp()) {
          finalScore = finalScore.multiplyBy(2.0);
@@ -1065,13 +1278,8 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
     * @return 1 for any value of combos &lt;= 1, otherwise see above reference.
     */
    public static double getComboMultiplier(int combos) {
-      double comboMultiplier = COMBO_MULTIPLIER[0];
-      int i = 0;
-      while (i + 1 < COMBO_THRESHOLD.length && COMBO_THRESHOLD[i + 1] <= combos) {
-         comboMultiplier = COMBO_MULTIPLIER[i + 1];
-         i++;
-      }
-      return comboMultiplier;
+      int index = Math.min(Math.max(combos, 0), COMBO_MULTIPLIER_BY_COUNT.length - 1);
+      return COMBO_MULTIPLIER_BY_COUNT[index];
    }
    
    /**
@@ -1079,9 +1287,8 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
     * @return
     */
    public int getBasicScoreFor(Species effectSpecies) {
-      int level = getState().getCore().getLevel(effectSpecies);
       // gets the basic block score for this species in this stage
-      return effectSpecies.getAttack(level);
+      return getState().getCore().getAttack(effectSpecies);
    }
    
    /**
@@ -1089,9 +1296,7 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
     * @return
     */
    public double getTypeModifier(Species effectSpecies) {
-      PkmType stageType = getState().getCore().getStage().getType();
-      double typeMod = PkmType.getMultiplier(getState().getSpeciesType(effectSpecies), stageType);
-      return typeMod;
+      return getState().getCore().getTypeModifier(getState().getSpeciesType(effectSpecies));
    }
    
    private static final double[] NUM_BLOCK_MULTIPLIER = new double[] { 0.3, 0.6, 1.0, 1.5, 2.0, 3.0 };
@@ -1106,31 +1311,22 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
    private double getNumBlocksMultiplier(int numBlocks) {
       int n = numBlocks;
       if (n < 1) {
-         if (logFiner) {
-            logFinerWithId("numBlocks was below 1", n);
-         }
          n = 1;
       } else if (n > 6) {
-         if (logFiner) {
-            logFinerWithId("numBlocks was above 6", n);
-         }
          n = 6;
       }
       return NUM_BLOCK_MULTIPLIER[n - 1];
    }
    
    public void addScore(NumberSpan score) {
-      if (logFiner) {
-         logFinerWithId("Adding score: %s", score);
+      if (SimulationTrace.isEnabled()) {
+         trace(SimulationTrace.Type.SCORE_ADDED, null, null, (int) score.getAverage());
       }
       getState().addScore(score);
    }
    
    public void handleMainComboResult(ActivateComboEffect comboEffect, Effect effect) {
       NumberSpan scoreToAdd = getScoreFor(comboEffect);
-      if (logFiner) {
-         logFinerWithId("Adding main score of %s for combo %s", scoreToAdd, comboEffect);
-      }
       removeActive(comboEffect);
       
       handleMegaIncreases(comboEffect);
@@ -1148,8 +1344,8 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
       }
       
       
-      if (logFiner) {
-         logFinerWithId("Number of total blocks cleared is now: %s", getState().getBlocksCleared());
+      if (SimulationTrace.isEnabled()) {
+         trace(SimulationTrace.Type.BLOCKS_CLEARED, coords, effect, getState().getBlocksCleared());
       }
    }
    
@@ -1164,9 +1360,8 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
          if (megaSlot != null && megaSlot.equals(effectSpecies)) {
             int megaIncrease = comboEffect.getNumMegaBoost();
             getState().increaseMegaProgress(megaIncrease);
-            if (logFiner) {
-               logFinerWithId("Mega progress is now %s of %s", getState().getMegaProgress(),
-                     getState().getCore().getMegaThreshold());
+            if (SimulationTrace.isEnabled()) {
+               trace(SimulationTrace.Type.MEGA_PROGRESS, coords, null, getState().getMegaProgress());
             }
          }
       }
@@ -1243,9 +1438,6 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
             && getState().getCore().getMegaSlot().equals(s)) { // and the mega slot IS this species.
          effect = megaEffect;
       }
-      if (logFiner) {
-         logFinerWithId("Effect Query for Species %s, Returned %s", s, effect);
-      }
       return effect;
    }
    
@@ -1254,9 +1446,8 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
    }
    
    public void eraseBonusIn(List<Integer> toErase, int erasureDelay, boolean forceErase) {
-      if (logFiner) {
-         logFinerWithId("Scheduling erasure after %s frames for %s", erasureDelay,
-               StringUtils.join(toErase.toArray(new Integer[0])));
+      if (SimulationTrace.isEnabled()) {
+         trace(SimulationTrace.Type.ERASURE_SCHEDULED, toErase, null, erasureDelay);
       }
       for (int i = 0; i * 2 + 1 < toErase.size(); i++) {
          int row = toErase.get(i * 2);
@@ -1308,6 +1499,69 @@ public class SimulationTask extends RecursiveTask<SimulationState> {
       getState().setIsRandom();
    }
    
+   /**
+    * Decides whether something with the given odds happens. All chance based effects must use this
+    * (or {@link #randomInt(int)}) so that the outcome can be followed along a {@link DecisionPath}.
+    * 
+    * @param odds
+    *           The chance it happens, where 1.0 is certain.
+    * @return True if it happens.
+    */
+   public boolean rollOdds(double odds) {
+      if (odds >= 1.0) {
+         return true;
+      } else if (odds <= 0.0) {
+         return false;
+      } else if (decisions == null) {
+         double roll = random == null ? Math.random() : random.nextDouble();
+         return odds >= roll;
+      } else {
+         return decisions.chooseOdds(odds);
+      }
+   }
+   
+   /**
+    * Returns an integer between 0 and the given bound, inclusive at 0 and exclusive at the bound.
+    * 
+    * @param bound
+    * @return
+    */
+   public int randomInt(int bound) {
+      if (bound == 1) {
+         return 0;
+      } else if (decisions != null && bound > 1) {
+         return decisions.chooseUniform(bound);
+      } else if (random != null) {
+         return random.nextInt(bound);
+      } else {
+         r.setSeed(r.nextLong());
+         return r.nextInt(bound);
+      }
+   }
+   
+   /**
+    * Gets n random numbers in the range [start, end) <br>
+    * this is inclusive at start, exclusive at end. Order is not guaranteed.
+    * 
+    * @param start
+    * @param end
+    * @param n
+    * @return
+    */
+   public List<Integer> uniqueRandoms(int start, int end, int n) {
+      List<Integer> allIndexes = IntStream.range(start, end).boxed().collect(Collectors.toList());
+      int count = Math.max(0, Math.min(n, allIndexes.size()));
+      if (decisions == null && random == null) {
+         Collections.shuffle(allIndexes, r);
+      } else {
+         // Picked through randomInt so that the choices follow a path, or the task's own random numbers
+         for (int i = 0; i < count; i++) {
+            Collections.swap(allIndexes, i, i + randomInt(allIndexes.size() - i));
+         }
+      }
+      return allIndexes.subList(0, count);
+   }
+   
    public boolean canStatusActivate() {
       return getState().getBoard().getStatus().isNone();
    }
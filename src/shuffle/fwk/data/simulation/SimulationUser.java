@@ -18,26 +18,96 @@
 
 package shuffle.fwk.data.simulation;
 
-import shuffle.fwk.config.provider.BoardManagerProvider;
+import java.util.Collection;
+
 import shuffle.fwk.config.provider.EffectManagerProvider;
-import shuffle.fwk.config.provider.EntryModeManagerProvider;
 import shuffle.fwk.config.provider.GradingModeManagerProvider;
-import shuffle.fwk.config.provider.PreferencesManagerProvider;
 import shuffle.fwk.config.provider.RosterManagerProvider;
 import shuffle.fwk.config.provider.SpeciesManagerProvider;
-import shuffle.fwk.config.provider.TeamManagerProvider;
+import shuffle.fwk.data.Board;
+import shuffle.fwk.data.Effect;
+import shuffle.fwk.data.Stage;
+import shuffle.fwk.data.Team;
+import shuffle.fwk.data.simulation.util.FeederSampling;
 import shuffle.fwk.data.simulation.util.SimulationAcceptor;
-import shuffle.fwk.gui.user.PaintsIndicatorUser;
-import shuffle.fwk.service.movepreferences.MovePreferencesServiceUser;
 
 /**
+ * Everything a {@link SimulationCore} reads when it is created. This deliberately includes none of
+ * the user interface, so that simulations can be run without one.
+ * 
  * @author Andrew Meyers
  *
  */
 public interface SimulationUser extends SimulationAcceptor, RosterManagerProvider, SpeciesManagerProvider,
-      BoardManagerProvider, TeamManagerProvider, PreferencesManagerProvider, MovePreferencesServiceUser,
-      PaintsIndicatorUser, EffectManagerProvider, GradingModeManagerProvider, EntryModeManagerProvider {
+      EffectManagerProvider, GradingModeManagerProvider {
+   
+   /**
+    * @return The board to simulate. The core takes its own copy.
+    */
+   public Board getBoard();
+   
+   public Stage getCurrentStage();
+   
+   public Team getCurrentTeam();
    
    public boolean isMegaAllowed();
+   
+   public int getMegaProgress();
+   
+   public int getRemainingHealth();
+   
+   public int getRemainingMoves();
+   
+   public int getPreferredNumFeeders();
+   
+   /**
+    * @return The number of blocks every column of each feeder is filled to, drawn as the
+    *         {@link #getFeederSampling()} says. Values of 0 or less leave feeders empty, so that
+    *         blocks falling in are not simulated.
+    */
+   public int getPreferredFeederHeight();
+   
+   public Collection<Effect> getDisabledEffects();
+   
+   public int getEffectThreshold();
+   
+   public boolean getAttackPowerUp();
+   
+   public boolean isMobileMode();
+   
+   /**
+    * @return The number of feeders each move may be refined up to while the user is idle. Values no
+    *         greater than {@link #getPreferredNumFeeders()} disable refinement.
+    */
+   public int getRefinementLimit();
+   
+   /**
+    * @return The time in milliseconds a simulation should take, sizing the number of feeders to
+    *         match. Values of 0 or less use {@link #getPreferredNumFeeders()} instead.
+    */
+   public int getTargetLatency();
+   
+   /**
+    * @return True if every outcome of random effects should be simulated and weighted by its
+    *         probability, falling back to random samples when there are too many outcomes.
+    */
+   public boolean isExactBranching();
+   
+   /**
+    * @return True if every move should be simulated against the same seeded random numbers for each
+    *         feeder, so that the differences between moves are not hidden by sampling noise.
+    */
+   public boolean isCommonRandomNumbers();
+   
+   /**
+    * @return How the blocks and random effects of each set of feeders should be drawn.
+    */
+   public FeederSampling getFeederSampling();
+   
+   /**
+    * @return The seed for every random number in the simulation, or null to draw them freshly. A
+    *         seeded simulation gives exactly the same results each time it is run.
+    */
+   public Long getSeed();
 
 }
@@ -0,0 +1,138 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.fwk.data.simulation.util;
+
+import java.util.Arrays;
+
+/**
+ * A scripted series of choices for the random decisions made during a single simulation. The
+ * choices given when this path was made are replayed in order, every decision past them takes its
+ * first option, and all of them are recorded along with the probability of the options taken.
+ * {@link #next()} then gives the path for the next outcome, so that repeatedly running a
+ * simulation along each path visits every outcome exactly once.
+ * 
+ * @author Andrew Meyers
+ * 
+ */
+public class DecisionPath {
+   
+   private int[] choices;
+   private int[] options;
+   private final int replayLength;
+   private int depth = 0;
+   private double probability = 1.0;
+   private boolean diverged = false;
+   
+   /**
+    * Creates a path which takes the first option of every decision.
+    */
+   public DecisionPath() {
+      this(new int[8], new int[8], 0);
+   }
+   
+   private DecisionPath(int[] choices, int[] options, int replayLength) {
+      this.choices = choices;
+      this.options = options;
+      this.replayLength = replayLength;
+   }
+   
+   /**
+    * Decides whether an event with the given odds happens. Happening is the first option.
+    * 
+    * @param odds
+    *           The chance of the event, strictly between 0 and 1.
+    * @return True if the event happens on this path.
+    */
+   public boolean chooseOdds(double odds) {
+      boolean happens = choose(2) == 0;
+      probability *= happens ? odds : 1.0 - odds;
+      return happens;
+   }
+   
+   /**
+    * Picks one of the given number of equally likely values.
+    * 
+    * @param bound
+    *           The number of values, at least 2.
+    * @return A value in [0, bound) for this path.
+    */
+   public int chooseUniform(int bound) {
+      int value = choose(bound);
+      probability /= bound;
+      return value;
+   }
+   
+   private int choose(int count) {
+      int choice = 0;
+      if (depth < replayLength) {
+         if (options[depth] == count) {
+            choice = choices[depth];
+         } else {
+            // The simulation did not repeat itself, so this path no longer means anything.
+            diverged = true;
+         }
+      } else if (depth == choices.length) {
+         choices = Arrays.copyOf(choices, depth * 2);
+         options = Arrays.copyOf(options, depth * 2);
+      }
+      choices[depth] = choice;
+      options[depth] = count;
+      depth++;
+      return choice;
+   }
+   
+   /**
+    * @return The probability of every choice taken so far happening together.
+    */
+   public double getProbability() {
+      return probability;
+   }
+   
+   /**
+    * @return The fewest outcomes that {@link #next()} has left to visit, given the decisions made.
+    */
+   public int getMinimumRemaining() {
+      int outcomes = 0;
+      for (int i = 0; i < depth; i++) {
+         outcomes += options[i] - 1 - choices[i];
+      }
+      return outcomes;
+   }
+   
+   /**
+    * @return True if all the scripted choices were replayed as they were recorded.
+    */
+   public boolean isReplayed() {
+      return !diverged && depth >= replayLength;
+   }
+   
+   /**
+    * @return The path for the outcome after this one, or null if this was the last.
+    */
+   public DecisionPath next() {
+      for (int i = depth - 1; i >= 0; i--) {
+         if (choices[i] + 1 < options[i]) {
+            int[] nextChoices = Arrays.copyOf(choices, Math.max(8, depth));
+            nextChoices[i]++;
+            return new DecisionPath(nextChoices, Arrays.copyOf(options, Math.max(8, depth)), i + 1);
+         }
+      }
+      return null;
+   }
+}
@@ -0,0 +1,272 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.fwk.data.simulation.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A circular time wheel of scheduled items, keyed by integer frame timestamps.<br>
+ * Every timestamp within {@link #getSpan()} frames of the current time maps directly onto a bucket,
+ * so scheduling and popping are constant time and never box the timestamp. Occupied buckets are
+ * tracked in a bit set so the next scheduled time can be found with a couple of word scans. Items
+ * scheduled beyond the span are parked in an overflow map until the wheel turns far enough to hold
+ * them, which does not happen for any of the delays currently used by the simulation.<br>
+ * Each bucket behaves like the HashSet it replaces: scheduling an equal item twice for the same
+ * time has no effect.
+ *
+ * @author Andrew Meyers
+ *
+ * @param <T>
+ *           The type of item scheduled.
+ */
+public class EffectTimeWheel<T> {
+   
+   /** The marker returned by {@link #getNextTime()} when nothing is scheduled. */
+   public static final int NO_TIME = Integer.MAX_VALUE;
+   /** The default number of frames covered by the wheel. Must be a power of two. */
+   public static final int DEFAULT_SPAN = 128;
+   
+   private final int span;
+   private final int mask;
+   private final List<Set<T>> buckets;
+   private final long[] occupied;
+   private final TreeMap<Integer, Set<T>> overflow = new TreeMap<Integer, Set<T>>();
+   
+   private int now = 0;
+   private int size = 0;
+   
+   public EffectTimeWheel() {
+      this(DEFAULT_SPAN);
+   }
+   
+   /**
+    * Creates a wheel that covers at least the given number of frames.
+    * 
+    * @param minSpan
+    *           The minimum span, rounded up to the next power of two (at least 64).
+    */
+   public EffectTimeWheel(int minSpan) {
+      int s = 64;
+      while (s < minSpan) {
+         s <<= 1;
+      }
+      span = s;
+      mask = s - 1;
+      buckets = new ArrayList<Set<T>>(Collections.nCopies(s, (Set<T>) null));
+      occupied = new long[s >> 6];
+   }
+   
+   /**
+    * Gets the bucket for the given index, creating it on first use. Buckets are kept once made, so
+    * a wheel that is reused does not allocate again.
+    */
+   private Set<T> getBucket(int index) {
+      Set<T> bucket = buckets.get(index);
+      if (bucket == null) {
+         bucket = new HashSet<T>();
+         buckets.set(index, bucket);
+      }
+      return bucket;
+   }
+   
+   public int getSpan() {
+      return span;
+   }
+   
+   /**
+    * @return The current time of the wheel. Nothing can be scheduled before this.
+    */
+   public int getNow() {
+      return now;
+   }
+   
+   /**
+    * @return The total number of items scheduled.
+    */
+   public int size() {
+      return size;
+   }
+   
+   public boolean isEmpty() {
+      return size == 0;
+   }
+   
+   /**
+    * Schedules the item for the given time. Times before {@link #getNow()} are treated as now.
+    * 
+    * @param time
+    *           The frame to schedule for
+    * @param item
+    *           The item to schedule
+    * @return True if the item was added, false if an equal item was already scheduled then.
+    */
+   public boolean schedule(int time, T item) {
+      int t = Math.max(time, now);
+      boolean added;
+      if (t - now < span) {
+         int index = t & mask;
+         added = getBucket(index).add(item);
+         occupied[index >> 6] |= 1L << index;
+      } else {
+         Set<T> later = overflow.get(t);
+         if (later == null) {
+            later = new HashSet<T>();
+            overflow.put(t, later);
+         }
+         added = later.add(item);
+      }
+      if (added) {
+         size++;
+      }
+      return added;
+   }
+   
+   /**
+    * Finds the earliest scheduled time.
+    * 
+    * @return The earliest time with anything scheduled, or {@link #NO_TIME} if empty.
+    */
+   public int getNextTime() {
+      if (size == 0) {
+         return NO_TIME;
+      }
+      int start = now & mask;
+      int words = occupied.length;
+      int word = start >> 6;
+      // The first word is checked twice, first for the bits at or after 'start', then at the end of
+      // the wrap around for the bits before it.
+      long bits = occupied[word] & -1L << start;
+      for (int i = 0; i <= words; i++) {
+         if (bits != 0) {
+            int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+            return now + (index - start & mask);
+         }
+         word = word + 1 == words ? 0 : word + 1;
+         bits = occupied[word];
+         if (i + 1 == words) {
+            bits &= ~(-1L << start);
+         }
+      }
+      return overflow.isEmpty() ? NO_TIME : overflow.firstKey().intValue();
+   }
+   
+   /**
+    * Removes everything scheduled at or before the given time, adding it to the given collection in
+    * time order.
+    * 
+    * @param time
+    *           The latest time to remove
+    * @param into
+    *           Receives the removed items
+    * @return The number of items removed
+    */
+   public int pollDue(int time, Collection<? super T> into) {
+      int removed = 0;
+      int next = getNextTime();
+      while (next != NO_TIME && next <= time) {
+         Set<T> due;
+         if (next - now < span) {
+            int index = next & mask;
+            due = buckets.get(index);
+            occupied[index >> 6] &= ~(1L << index);
+         } else {
+            due = overflow.remove(next);
+         }
+         removed += due.size();
+         size -= due.size();
+         into.addAll(due);
+         due.clear();
+         next = getNextTime();
+      }
+      return removed;
+   }
+   
+   /**
+    * Turns the wheel forward to the given time. Anything still scheduled before it is kept, and will
+    * be reported as due at the new time.
+    * 
+    * @param time
+    *           The new current time. Ignored if it is before the current time.
+    */
+   public void advanceTo(int time) {
+      if (time <= now) {
+         return;
+      }
+      List<T> stale = null;
+      int next = getNextTime();
+      if (next < time) {
+         stale = new ArrayList<T>();
+         pollDue(time - 1, stale);
+      }
+      now = time;
+      if (stale != null) {
+         for (T item : stale) {
+            schedule(now, item);
+         }
+      }
+      while (!overflow.isEmpty() && overflow.firstKey() - now < span) {
+         Map.Entry<Integer, Set<T>> entry = overflow.pollFirstEntry();
+         int t = entry.getKey();
+         int index = t & mask;
+         getBucket(index).addAll(entry.getValue());
+         occupied[index >> 6] |= 1L << index;
+      }
+   }
+   
+   /**
+    * Adds every scheduled item to the given collection, in no particular order.
+    * 
+    * @param into
+    *           Receives the scheduled items
+    */
+   public void getAll(Collection<? super T> into) {
+      for (int i = 0; i < span; i++) {
+         if ((occupied[i >> 6] & 1L << i) != 0) {
+            into.addAll(buckets.get(i));
+         }
+      }
+      for (Set<T> later : overflow.values()) {
+         into.addAll(later);
+      }
+   }
+   
+   /**
+    * Removes everything and resets the wheel to time 0.
+    */
+   public void clear() {
+      for (Set<T> bucket : buckets) {
+         if (bucket != null) {
+            bucket.clear();
+         }
+      }
+      for (int i = 0; i < occupied.length; i++) {
+         occupied[i] = 0;
+      }
+      overflow.clear();
+      now = 0;
+      size = 0;
+   }
+}
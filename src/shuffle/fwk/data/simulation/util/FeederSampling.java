@@ -0,0 +1,61 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.fwk.data.simulation.util;
+
+/**
+ * How the blocks for a set of feeders are drawn.
+ * 
+ * @author Andrew Meyers
+ * 
+ */
+public enum FeederSampling {
+   /**
+    * Every block is drawn independently at random.
+    */
+   RANDOM(false),
+   /**
+    * Each position in each column gets every species equally often across the set of feeders, in a
+    * random order.
+    */
+   STRATIFIED(true);
+   
+   private final boolean stratified;
+   
+   private FeederSampling(boolean stratified) {
+      this.stratified = stratified;
+   }
+   
+   public boolean isStratified() {
+      return stratified;
+   }
+
+   
+   /**
+    * @param name
+    * @return The sampling with the given name, ignoring case, or {@link #RANDOM} if there is none.
+    */
+   public static FeederSampling getSampling(String name) {
+      for (FeederSampling sampling : values()) {
+         if (sampling.name().equalsIgnoreCase(name == null ? null : name.trim())) {
+            return sampling;
+         }
+      }
+      return RANDOM;
+   }
+}
@@ -142,6 +142,20 @@ public class NumberSpan extends Number implements Cloneable, Comparable<NumberSp
       return max;
    }
    
+   /**
+    * @return The weighted sum of every value put into this span.
+    */
+   public double getTotal() {
+      return total;
+   }
+   
+   /**
+    * @return How many values were put into this span.
+    */
+   public int getCount() {
+      return n;
+   }
+   
    public NumberSpan add(Number num) {
       NumberSpan ret;
       if (num instanceof NumberSpan) {
@@ -202,6 +216,18 @@ public class NumberSpan extends Number implements Cloneable, Comparable<NumberSp
       return ret;
    }
    
+   /**
+    * @param likelihood
+    *           The likelihood of this span, as for {@link #put(int, float)}.
+    * @return A copy of this span whose total is weighted by the given likelihood.
+    */
+   public NumberSpan weigh(float likelihood) {
+      if (likelihood < 0f) {
+         throw new IllegalArgumentException("Likelihood cannot be negative.");
+      }
+      return new NumberSpan(min, max, total * likelihood, n);
+   }
+   
    @Override
    public final String toString() {
       String ret;
@@ -0,0 +1,161 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.fwk.data.simulation.util;
+
+import java.util.List;
+import java.util.UUID;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The Flight Recorder events of the simulation engine. Each carries the id of the simulation it
+ * belongs to, so a recording can be filtered down to one run and lined up against what the UI was
+ * doing at the time.
+ * <p>
+ * An event is made and begun as usual, but its fields should only be filled in once
+ * {@link Event#shouldCommit()} is true. While nothing is recording that is false, and the event
+ * itself is never kept, so it costs next to nothing. Simulation tasks are too many for even that,
+ * so theirs is only made by {@link #beginSlowTask()} while something is recording it.
+ * 
+ * @author Andrew Meyers
+ * 
+ */
+public final class SimulationEvents {
+   public static final String CATEGORY = "Shuffle Move";
+   public static final String SIMULATION = "Simulation";
+   
+   // Never begun or committed, only asked whether anything is recording its kind of event.
+   private static final SlowTask SLOW_TASK = new SlowTask();
+   
+   private SimulationEvents() {
+   }
+   
+   /**
+    * @return A begun event for a simulation task, or null if nothing is recording them.
+    */
+   public static SlowTask beginSlowTask() {
+      if (!SLOW_TASK.isEnabled()) {
+         return null;
+      }
+      SlowTask ret = new SlowTask();
+      ret.begin();
+      return ret;
+   }
+   
+   /**
+    * @param id
+    * @return The id as shown in a recording.
+    */
+   public static String format(UUID id) {
+      return id == null ? null : id.toString();
+   }
+   
+   /**
+    * @param move
+    * @return The move as shown in a recording, or null for the board without a move.
+    */
+   public static String format(List<Integer> move) {
+      return move == null ? null : move.toString();
+   }
+   
+   @Name("shuffle.SimulationRun")
+   @Label("Simulation Run")
+   @Description("A simulation from its start until its first results are ready")
+   @Category({ CATEGORY, SIMULATION })
+   @StackTrace(false)
+   public static final class Run extends Event {
+      @Label("Process Id")
+      public String processUUID;
+      @Label("Stage")
+      public String stage;
+      @Label("Moves")
+      public int moves;
+      @Label("Samples per Move")
+      public int samples;
+      @Label("Results")
+      public int results;
+   }
+   
+   @Name("shuffle.MoveTasks")
+   @Label("Move Tasks")
+   @Description("Creating and running the tasks of one move")
+   @Category({ CATEGORY, SIMULATION })
+   @StackTrace(false)
+   public static final class MoveTasks extends Event {
+      @Label("Process Id")
+      public String processUUID;
+      @Label("Move")
+      public String move;
+      @Label("Tasks")
+      public int tasks;
+      @Label("Random")
+      public boolean random;
+   }
+   
+   @Name("shuffle.MoveAssembly")
+   @Label("Move Assembly")
+   @Description("Averaging the outcomes of one move into its result")
+   @Category({ CATEGORY, SIMULATION })
+   @StackTrace(false)
+   public static final class MoveAssembly extends Event {
+      @Label("Process Id")
+      public String processUUID;
+      @Label("Move")
+      public String move;
+      @Label("Samples")
+      public int samples;
+   }
+   
+   @Name("shuffle.SlowTask")
+   @Label("Slow Simulation Task")
+   @Description("A single simulated outcome which took longer than the threshold")
+   @Category({ CATEGORY, SIMULATION })
+   @StackTrace(false)
+   @Threshold("20 ms")
+   public static final class SlowTask extends Event {
+      @Label("Process Id")
+      public String processUUID;
+      @Label("Move")
+      public String move;
+      @Label("Loop Iterations")
+      public int iterations;
+      @Label("Combos")
+      public int combos;
+      @Label("Loop Protection Hit")
+      public boolean timedOut;
+   }
+   
+   @Name("shuffle.SimulationCancelled")
+   @Label("Simulation Cancelled")
+   @Description("Results which were discarded because the simulation was no longer wanted")
+   @Category({ CATEGORY, SIMULATION })
+   @StackTrace(false)
+   public static final class Cancelled extends Event {
+      @Label("Process Id")
+      public String processUUID;
+      @Label("Results")
+      public int results;
+   }
+}
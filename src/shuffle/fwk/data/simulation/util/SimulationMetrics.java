@@ -0,0 +1,198 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.fwk.data.simulation.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The counters and timers for every simulation in this process. They are striped adders, so
+ * updating them from many tasks at once is cheap and they are always on. Tasks count their own loop
+ * iterations and combos and add them once when they finish.
+ * 
+ * @author Andrew Meyers
+ * 
+ */
+public class SimulationMetrics implements SimulationMetricsMXBean {
+   private static final Logger LOG = Logger.getLogger(SimulationMetrics.class.getName());
+   
+   public static final String OBJECT_NAME = "shuffle.fwk:type=SimulationMetrics";
+   public static final SimulationMetrics INSTANCE = new SimulationMetrics();
+   
+   private final LongAdder runs = new LongAdder();
+   private final LongAdder moveGenerationNanos = new LongAdder();
+   private final LongAdder feederGenerationNanos = new LongAdder();
+   private final LongAdder taskCreationNanos = new LongAdder();
+   private final LongAdder assemblyNanos = new LongAdder();
+   private final LongAdder tasksExecuted = new LongAdder();
+   private final LongAdder taskLoopIterations = new LongAdder();
+   private final LongAdder loopProtectionHits = new LongAdder();
+   private final LongAdder combosEvaluated = new LongAdder();
+   private final LongAdder resultCacheHits = new LongAdder();
+   private final LongAdder resultCacheMisses = new LongAdder();
+   private final LongAdder latencyNanos = new LongAdder();
+   private volatile long lastLatencyNanos = 0L;
+   
+   private SimulationMetrics() {
+   }
+   
+   /**
+    * Registers the metrics with the platform MBean server under {@value #OBJECT_NAME}, unless they
+    * already are.
+    */
+   public static void register() {
+      try {
+         ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+      } catch (InstanceAlreadyExistsException e) {
+         // Already registered by another model in this process.
+      } catch (JMException | SecurityException e) {
+         LOG.log(Level.FINE, "Cannot register the simulation metrics: " + e.getMessage(), e);
+      }
+   }
+   
+   public void addMoveGeneration(long nanos) {
+      moveGenerationNanos.add(nanos);
+   }
+   
+   public void addFeederGeneration(long nanos) {
+      feederGenerationNanos.add(nanos);
+   }
+   
+   public void addTaskCreation(long nanos) {
+      taskCreationNanos.add(nanos);
+   }
+   
+   public void addAssembly(long nanos) {
+      assemblyNanos.add(nanos);
+   }
+   
+   /**
+    * @param iterations
+    *           How many times the task went around its simulation loop
+    * @param combos
+    *           How many combos it performed
+    * @param timedOut
+    *           True if the loop protection stopped it
+    */
+   public void addTask(int iterations, int combos, boolean timedOut) {
+      tasksExecuted.increment();
+      taskLoopIterations.add(iterations);
+      combosEvaluated.add(combos);
+      if (timedOut) {
+         loopProtectionHits.increment();
+      }
+   }
+   
+   public void addResultCacheLookup(boolean hit) {
+      (hit ? resultCacheHits : resultCacheMisses).increment();
+   }
+   
+   /**
+    * @param nanos
+    *           The time from the start of a simulation to its first results.
+    */
+   public void addRun(long nanos) {
+      runs.increment();
+      latencyNanos.add(nanos);
+      lastLatencyNanos = nanos;
+   }
+   
+   @Override
+   public long getRuns() {
+      return runs.sum();
+   }
+   
+   @Override
+   public long getMoveGenerationMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(moveGenerationNanos.sum());
+   }
+   
+   @Override
+   public long getFeederGenerationMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(feederGenerationNanos.sum());
+   }
+   
+   @Override
+   public long getTaskCreationMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(taskCreationNanos.sum());
+   }
+   
+   @Override
+   public long getAssemblyMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(assemblyNanos.sum());
+   }
+   
+   @Override
+   public long getTasksExecuted() {
+      return tasksExecuted.sum();
+   }
+   
+   @Override
+   public long getTaskLoopIterations() {
+      return taskLoopIterations.sum();
+   }
+   
+   @Override
+   public long getLoopProtectionHits() {
+      return loopProtectionHits.sum();
+   }
+   
+   @Override
+   public long getCombosEvaluated() {
+      return combosEvaluated.sum();
+   }
+   
+   @Override
+   public long getResultCacheHits() {
+      return resultCacheHits.sum();
+   }
+   
+   @Override
+   public long getResultCacheMisses() {
+      return resultCacheMisses.sum();
+   }
+   
+   @Override
+   public long getLastLatencyMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(lastLatencyNanos);
+   }
+   
+   @Override
+   public double getAverageLatencyMillis() {
+      long count = runs.sum();
+      return count == 0 ? 0.0 : latencyNanos.sum() / 1000000.0 / count;
+   }
+   
+   @Override
+   public void reset() {
+      for (LongAdder adder : new LongAdder[] { runs, moveGenerationNanos, feederGenerationNanos, taskCreationNanos,
+            assemblyNanos, tasksExecuted, taskLoopIterations, loopProtectionHits, combosEvaluated, resultCacheHits,
+            resultCacheMisses, latencyNanos }) {
+         adder.reset();
+      }
+      lastLatencyNanos = 0L;
+   }
+}
@@ -0,0 +1,75 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.fwk.data.simulation.util;
+
+/**
+ * The counters and timers of the simulation engine, as seen through JMX. Times are totals in
+ * milliseconds since the counters were last reset, unless named otherwise.
+ * 
+ * @author Andrew Meyers
+ * 
+ */
+public interface SimulationMetricsMXBean {
+   
+   /**
+    * @return How many simulations have produced their first results.
+    */
+   long getRuns();
+   
+   long getMoveGenerationMillis();
+   
+   long getFeederGenerationMillis();
+   
+   /**
+    * @return The time spent creating and running the tasks for every move.
+    */
+   long getTaskCreationMillis();
+   
+   long getAssemblyMillis();
+   
+   long getTasksExecuted();
+   
+   /**
+    * @return How many times any task went around its simulation loop.
+    */
+   long getTaskLoopIterations();
+   
+   /**
+    * @return How many tasks were stopped by the loop protection rather than settling.
+    */
+   long getLoopProtectionHits();
+   
+   long getCombosEvaluated();
+   
+   long getResultCacheHits();
+   
+   long getResultCacheMisses();
+   
+   /**
+    * @return The time from the start of the last simulation to its first results.
+    */
+   long getLastLatencyMillis();
+   
+   double getAverageLatencyMillis();
+   
+   /**
+    * Sets every counter and timer back to zero.
+    */
+   void reset();
+}
@@ -0,0 +1,265 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.fwk.data.simulation.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import shuffle.fwk.ShuffleVersion;
+import shuffle.fwk.config.manager.SpeciesManager;
+import shuffle.fwk.data.Board;
+import shuffle.fwk.data.Board.Status;
+import shuffle.fwk.data.Species;
+import shuffle.fwk.data.simulation.SimulationResult;
+
+/**
+ * A bounded, least recently used cache of simulation results, keyed by the fingerprint of the
+ * inputs that produced them (see {@link shuffle.fwk.data.simulation.SimulationCore#getFingerprint()}
+ * ). The cache can be saved to and loaded from a file so it may be kept between sessions.
+ * 
+ * @author Andrew Meyers
+ *         
+ */
+public class SimulationResultCache {
+   private static final Logger LOG = Logger.getLogger(SimulationResultCache.class.getName());
+   
+   public static final int DEFAULT_CAPACITY = 64;
+   
+   private final Map<String, List<SimulationResult>> cache;
+   
+   public SimulationResultCache() {
+      this(DEFAULT_CAPACITY);
+   }
+   
+   public SimulationResultCache(final int capacity) {
+      cache = new LinkedHashMap<String, List<SimulationResult>>(16, 0.75f, true) {
+         private static final long serialVersionUID = 2286346227468331869L;
+         
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<String, List<SimulationResult>> eldest) {
+            return size() > capacity;
+         }
+      };
+   }
+   
+   /**
+    * Gets the results cached for the given fingerprint, attributed to the given process.
+    * 
+    * @param fingerprint
+    *           The fingerprint of the simulation inputs
+    * @param id
+    *           The process UUID the results should report
+    * @param startTime
+    *           The start time the results should report
+    * @return The cached results, or null if there are none.
+    */
+   public synchronized Collection<SimulationResult> get(String fingerprint, UUID id, long startTime) {
+      List<SimulationResult> cached = fingerprint == null ? null : cache.get(fingerprint);
+      if (cached == null) {
+         return null;
+      }
+      List<SimulationResult> ret = new ArrayList<SimulationResult>(cached.size());
+      for (SimulationResult result : cached) {
+         ret.add(new SimulationResult(result, id, startTime));
+      }
+      return ret;
+   }
+   
+   /**
+    * Stores the given results for the given fingerprint, evicting the least recently used entry if
+    * the cache is full.
+    * 
+    * @param fingerprint
+    *           The fingerprint of the simulation inputs
+    * @param results
+    *           The results for those inputs
+    */
+   public synchronized void put(String fingerprint, Collection<SimulationResult> results) {
+      if (fingerprint != null && results != null && !results.isEmpty()) {
+         cache.put(fingerprint, Collections.unmodifiableList(new ArrayList<SimulationResult>(results)));
+      }
+   }
+   
+   /**
+    * @param fingerprint
+    * @return True if results are cached for the given fingerprint.
+    */
+   public synchronized boolean contains(String fingerprint) {
+      return fingerprint != null && cache.containsKey(fingerprint);
+   }
+   
+   public synchronized int size() {
+      return cache.size();
+   }
+   
+   public synchronized void clear() {
+      cache.clear();
+   }
+   
+   /**
+    * Saves the cache to the given file. Failures are logged and otherwise ignored, since the cache
+    * can always be rebuilt.
+    * 
+    * @param file
+    *           The file to write
+    */
+   public synchronized void save(File file) {
+      if (file == null) {
+         return;
+      }
+      try {
+         File parent = file.getAbsoluteFile().getParentFile();
+         if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+         }
+         try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeUTF(ShuffleVersion.VERSION_FULL);
+            out.writeInt(cache.size());
+            for (Map.Entry<String, List<SimulationResult>> entry : cache.entrySet()) {
+               out.writeUTF(entry.getKey());
+               out.writeInt(entry.getValue().size());
+               for (SimulationResult result : entry.getValue()) {
+                  writeResult(out, result);
+               }
+            }
+         }
+      } catch (IOException e) {
+         LOG.log(Level.WARNING, e.getLocalizedMessage() + ": " + file.getAbsolutePath(), e);
+      }
+   }
+   
+   /**
+    * Replaces the contents of this cache with those saved in the given file. Caches saved by a
+    * different version of the program are ignored, since the simulation may have changed.
+    * 
+    * @param file
+    *           The file to read
+    * @param manager
+    *           The SpeciesManager used to resolve the species in each board
+    * @return True if anything was loaded, false otherwise.
+    */
+   public synchronized boolean load(File file, SpeciesManager manager) {
+      cache.clear();
+      if (file == null || !file.exists() || !file.canRead()) {
+         return false;
+      }
+      try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+         if (!ShuffleVersion.VERSION_FULL.equals(in.readUTF())) {
+            return false;
+         }
+         int entries = in.readInt();
+         for (int i = 0; i < entries; i++) {
+            String fingerprint = in.readUTF();
+            int count = in.readInt();
+            List<SimulationResult> results = new ArrayList<SimulationResult>(count);
+            boolean valid = true;
+            for (int j = 0; j < count; j++) {
+               SimulationResult result = readResult(in, manager);
+               valid &= result != null;
+               results.add(result);
+            }
+            if (valid) {
+               put(fingerprint, results);
+            }
+         }
+      } catch (IOException | ClassNotFoundException | ClassCastException | IllegalArgumentException e) {
+         LOG.log(Level.WARNING, e.getLocalizedMessage() + ": " + file.getAbsolutePath(), e);
+         cache.clear();
+      }
+      return !cache.isEmpty();
+   }
+   
+   private static void writeResult(ObjectOutputStream out, SimulationResult result) throws IOException {
+      List<Integer> move = result.getMove();
+      out.writeInt(move.size());
+      for (Integer i : move) {
+         out.writeInt(i);
+      }
+      Board board = result.getBoard();
+      for (int row = 1; row <= Board.NUM_ROWS; row++) {
+         for (int col = 1; col <= Board.NUM_COLS; col++) {
+            out.writeUTF(board.getSpeciesAt(row, col).getName());
+            out.writeBoolean(board.isFrozenAt(row, col));
+            out.writeBoolean(board.isCloudedAt(row, col));
+         }
+      }
+      out.writeInt(board.getMegaProgress());
+      out.writeUTF(board.getStatus().name());
+      out.writeInt(board.getStatusDuration());
+      out.writeObject(result.getNetScore());
+      out.writeObject(result.getNetGold());
+      out.writeObject(result.getProgress());
+      out.writeObject(result.getBlocksCleared());
+      out.writeObject(result.getDisruptionsCleared());
+      out.writeObject(result.getCombosCleared());
+      out.writeInt(result.getSampleCount());
+      out.writeUTF(result.getFeederSampling().name());
+   }
+   
+   private static SimulationResult readResult(ObjectInputStream in, SpeciesManager manager)
+         throws IOException, ClassNotFoundException {
+      int moveSize = in.readInt();
+      List<Integer> move = new ArrayList<Integer>(moveSize);
+      for (int i = 0; i < moveSize; i++) {
+         move.add(in.readInt());
+      }
+      Board board = new Board();
+      boolean valid = true;
+      for (int row = 1; row <= Board.NUM_ROWS; row++) {
+         for (int col = 1; col <= Board.NUM_COLS; col++) {
+            Species s = manager.getSpeciesByName(in.readUTF());
+            valid &= s != null;
+            board.setSpeciesAt(row, col, s == null ? Species.AIR : s);
+            board.setFrozenAt(row, col, in.readBoolean());
+            board.setClouded(row, col, in.readBoolean());
+         }
+      }
+      board.setMegaProgress(in.readInt());
+      board.setStatus(Status.valueOf(in.readUTF()));
+      board.setStatusDuration(in.readInt());
+      NumberSpan score = (NumberSpan) in.readObject();
+      NumberSpan gold = (NumberSpan) in.readObject();
+      NumberSpan progress = (NumberSpan) in.readObject();
+      NumberSpan blocks = (NumberSpan) in.readObject();
+      NumberSpan disruptions = (NumberSpan) in.readObject();
+      NumberSpan combos = (NumberSpan) in.readObject();
+      int samples = in.readInt();
+      FeederSampling sampling = FeederSampling.getSampling(in.readUTF());
+      if (!valid) {
+         return null;
+      }
+      return new SimulationResult(move.isEmpty() ? null : move, board, score, gold, progress, null, blocks,
+            disruptions, combos, 0L, samples, sampling);
+   }
+}
@@ -0,0 +1,256 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.fwk.data.simulation.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import shuffle.fwk.data.Effect;
+
+/**
+ * A trace of what every simulation task did, kept as fixed size records in a ring buffer for each
+ * thread. Recording one is a few array stores with no formatting and no locking, so tracing can be
+ * left on for whole runs. Once a buffer is full the oldest records are overwritten. The records
+ * are only turned into text when they are dumped.
+ * <p>
+ * Tracing is off until {@link #setEnabled(boolean)} is called, and callers should check
+ * {@link #isEnabled()} before gathering anything for a record.
+ * <p>
+ * A buffer is only held weakly through its thread, so the buffers of pools that were replaced are
+ * dropped once their threads have died and another thread starts recording.
+ * 
+ * @author Andrew Meyers
+ * 
+ */
+public final class SimulationTrace {
+   
+   /**
+    * The kinds of record, whose meaning of the cell and value are given for each.
+    */
+   public enum Type {
+      /** The cell the move picked up, and how many combos the swap claimed. */
+      TASK_START,
+      /** How many times the task went around its loop. */
+      TASK_END,
+      /** How many combos are waiting. */
+      FRAME,
+      /** The first cell of a match, and 1 if it was already active or 0 if not. */
+      COMBO_RECOGNIZED,
+      /** The first cell of the claimed combo. */
+      COMBO_CLAIMED,
+      /** The first cell of the combo. */
+      COMBO_STARTED,
+      /** The first cell of the erased combo, and how many cells it covered. */
+      COMBO_COMPLETED,
+      /** The first cell of what was cleared of other claims. */
+      COLLISIONS_REMOVED,
+      /** The first cell of the effect, and its delay in frames. */
+      EFFECT_SCHEDULED,
+      /** The first cell to erase, and the delay in frames. */
+      ERASURE_SCHEDULED,
+      /** The first cell of the combo, and its average score. */
+      SCORE_CALCULATED,
+      /** The average score added. */
+      SCORE_ADDED,
+      /** The first cell of the combo, and how many blocks have been cleared in total. */
+      BLOCKS_CLEARED,
+      /** The first cell of the combo, and the mega progress after it. */
+      MEGA_PROGRESS;
+   }
+   
+   public static final String KEY_CAPACITY = "shuffle.trace.capacity";
+   /**
+    * How many records each thread keeps, unless set by the {@value #KEY_CAPACITY} system property.
+    */
+   public static final int DEFAULT_CAPACITY = 1 << 16;
+   private static final int STRIDE = 3;
+   private static final int NO_EFFECT = 0xFFFF;
+   
+   private static volatile boolean enabled = false;
+   private static final AtomicInteger TASK_IDS = new AtomicInteger();
+   private static final List<Ring> RINGS = new CopyOnWriteArrayList<Ring>();
+   private static final ThreadLocal<Ring> RING = new ThreadLocal<Ring>() {
+      @Override
+      protected Ring initialValue() {
+         Ring ring = new Ring(Thread.currentThread(), Integer.getInteger(KEY_CAPACITY, DEFAULT_CAPACITY));
+         RINGS.removeIf(Ring::isOrphaned);
+         RINGS.add(ring);
+         return ring;
+      }
+   };
+   
+   private SimulationTrace() {
+   }
+   
+   public static boolean isEnabled() {
+      return enabled;
+   }
+   
+   public static void setEnabled(boolean enabled) {
+      SimulationTrace.enabled = enabled;
+   }
+   
+   /**
+    * @return A new id for a task, which its records are marked with.
+    */
+   public static int nextTaskId() {
+      return TASK_IDS.incrementAndGet();
+   }
+   
+   /**
+    * Adds a record to the current thread's buffer.
+    * 
+    * @param type
+    * @param task
+    *           The task's id, from {@link #nextTaskId()}
+    * @param frame
+    *           The task's current frame
+    * @param row
+    *           The row of the cell, or 0 for none
+    * @param col
+    *           The column of the cell, or 0 for none
+    * @param effect
+    *           The effect involved, or null for none
+    * @param value
+    *           The value, as described for the type
+    */
+   public static void record(Type type, int task, int frame, int row, int col, Effect effect, int value) {
+      long header = (long) type.ordinal() << 56 | (long) (row & 0xFF) << 48 | (long) (col & 0xFF) << 40
+            | (long) (effect == null ? NO_EFFECT : effect.ordinal()) << 24 | frame & 0xFFFFFFL;
+      RING.get().add(System.nanoTime(), header, (long) task << 32 | value & 0xFFFFFFFFL);
+   }
+   
+   /**
+    * Forgets every record in every thread's buffer.
+    */
+   public static void clear() {
+      for (Ring ring : RINGS) {
+         ring.clear();
+      }
+   }
+   
+   /**
+    * Writes every thread's records as text, oldest first, one line for each. Records made while
+    * this is running might not be included.
+    * 
+    * @param out
+    * @return How many records were written.
+    * @throws IOException
+    */
+   public static int dump(Writer out) throws IOException {
+      int count = 0;
+      for (Ring ring : RINGS) {
+         long[] records = ring.snapshot();
+         if (records.length == 0) {
+            continue;
+         }
+         out.write(String.format("Thread %s, %d records%n", ring.threadName, records.length / STRIDE));
+         long firstTime = records[0];
+         for (int i = 0; i < records.length; i += STRIDE) {
+            out.write(format(records[i] - firstTime, records[i + 1], records[i + 2]));
+            count++;
+         }
+      }
+      out.flush();
+      return count;
+   }
+   
+   private static String format(long nanos, long header, long data) {
+      Type type = Type.values()[(int) (header >>> 56)];
+      int row = (int) (header >>> 48 & 0xFF);
+      int col = (int) (header >>> 40 & 0xFF);
+      int effectOrdinal = (int) (header >>> 24 & 0xFFFF);
+      String effect = effectOrdinal == NO_EFFECT ? "-" : Effect.values()[effectOrdinal].toString();
+      int frame = (int) (header & 0xFFFFFF);
+      int task = (int) (data >>> 32);
+      int value = (int) data;
+      return String.format("%12.3fus task %d frame %d %s (%d,%d) %s %d%n", nanos / 1000.0, task, frame, type, row, col,
+            effect, value);
+   }
+   
+   /**
+    * The records of one thread. Only that thread adds to it, and other threads copy it without
+    * stopping the writer, discarding whatever might have been overwritten while they copied.
+    */
+   private static class Ring {
+      private final String threadName;
+      private final WeakReference<Thread> owner;
+      private final long[] records;
+      private volatile long written = 0L;
+      
+      private Ring(Thread thread, int capacity) {
+         threadName = thread.getName();
+         owner = new WeakReference<Thread>(thread);
+         records = new long[Math.max(1, capacity) * STRIDE];
+      }
+      
+      /**
+       * @return True if the thread that wrote this has died, so nothing more will be added.
+       */
+      private boolean isOrphaned() {
+         Thread thread = owner.get();
+         return thread == null || !thread.isAlive();
+      }
+      
+      private void add(long time, long header, long data) {
+         long index = written;
+         int offset = (int) (index % (records.length / STRIDE)) * STRIDE;
+         records[offset] = time;
+         records[offset + 1] = header;
+         records[offset + 2] = data;
+         written = index + 1;
+      }
+      
+      private void clear() {
+         written = 0L;
+      }
+      
+      /**
+       * @return The records, oldest first, leaving out any that the writer might have been replacing
+       *         while they were copied.
+       */
+      private long[] snapshot() {
+         long end = written;
+         int capacity = records.length / STRIDE;
+         long start = Math.max(0L, end - capacity);
+         long[] array = new long[(int) (end - start) * STRIDE];
+         for (long index = start; index < end; index++) {
+            int offset = (int) (index % capacity) * STRIDE;
+            System.arraycopy(records, offset, array, (int) (index - start) * STRIDE, STRIDE);
+         }
+         long after = written;
+         if (after < end) {
+            // cleared while copying
+            return new long[0];
+         }
+         // The record after the last one published might be half written over the oldest slot.
+         long firstIntact = Math.max(start, after + 1 - capacity);
+         if (firstIntact >= end) {
+            return new long[0];
+         }
+         int from = (int) (firstIntact - start) * STRIDE;
+         return Arrays.copyOfRange(array, from, array.length);
+      }
+   }
+}
@@ -21,15 +21,28 @@ package shuffle.test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
+import shuffle.test.fwk.batch.ShardedSimulationTest;
+import shuffle.test.fwk.batch.SimulationReplayTest;
+import shuffle.test.fwk.batch.SimulationServerTest;
+import shuffle.test.fwk.config.manager.ConfigSnapshotTest;
 import shuffle.test.fwk.config.manager.DataIntegrityTest;
 import shuffle.test.fwk.data.BoardTest;
 import shuffle.test.fwk.data.PkmTypeTest;
 import shuffle.test.fwk.data.SpeciesTest;
+import shuffle.test.fwk.data.simulation.SimulationAllocationTest;
+import shuffle.test.fwk.data.simulation.SimulationFeederTest;
 import shuffle.test.fwk.data.simulation.SimulationTaskTest;
+import shuffle.test.fwk.data.simulation.util.DecisionPathTest;
+import shuffle.test.fwk.data.simulation.util.EffectTimeWheelTest;
+import shuffle.test.fwk.data.simulation.util.SimulationResultCacheTest;
+import shuffle.test.fwk.data.simulation.util.SimulationTraceTest;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({ // Make sure this includes all test classes
-      BoardTest.class, PkmTypeTest.class, SpeciesTest.class, SimulationTaskTest.class, DataIntegrityTest.class })
+      BoardTest.class, PkmTypeTest.class, SpeciesTest.class, SimulationTaskTest.class, DataIntegrityTest.class,
+      EffectTimeWheelTest.class, DecisionPathTest.class, SimulationServerTest.class, SimulationFeederTest.class,
+      SimulationResultCacheTest.class, ConfigSnapshotTest.class, SimulationReplayTest.class,
+      ShardedSimulationTest.class, SimulationAllocationTest.class, SimulationTraceTest.class })
 public class TestAll {
    
 }
@@ -0,0 +1,165 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package shuffle.test.fwk.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import shuffle.fwk.ShuffleController;
+import shuffle.fwk.batch.ShardedSimulation;
+import shuffle.fwk.batch.SimulationRequestReader;
+import shuffle.fwk.config.ConfigFactory;
+import shuffle.fwk.data.simulation.SimulationAccumulator;
+import shuffle.fwk.data.simulation.SimulationCore;
+import shuffle.fwk.data.simulation.SimulationRequest;
+import shuffle.fwk.data.simulation.SimulationResult;
+import shuffle.fwk.data.simulation.util.FeederSampling;
+import shuffle.fwk.data.simulation.util.NumberSpan;
+
+/**
+ * Checks that a seeded simulation split across worker processes, whether by moves or by feeders,
+ * gives exactly the results of the same simulation in a single process.
+ * 
+ * @author Andrew Meyers
+ * 
+ */
+public class ShardedSimulationTest {
+   
+   private static final long SEED = 7355608L;
+   private static final int FEEDERS = 7;
+   
+   private static File home;
+   private static String oldUserDir;
+   private static String oldUserHome;
+   private static String board;
+   private static SimulationCore core;
+   private static List<List<Integer>> moves;
+   private static List<String> expected;
+   
+   @BeforeClass
+   public static void setUpBeforeClass() throws Exception {
+      board = IOUtils.toString(ShardedSimulationTest.class.getClassLoader().getResourceAsStream(
+            "config/defaults/boards/278.txt"), StandardCharsets.UTF_8);
+      oldUserDir = System.getProperty("user.dir");
+      oldUserHome = System.getProperty("user.home");
+      home = Files.createTempDirectory("ShardedSimulationTest").toFile();
+      ShuffleController.setUserHome(home.getPath());
+      ConfigFactory factory = new ConfigFactory();
+      SimulationRequest request = new SimulationRequestReader(factory).apply(SimulationRequestReader.parse(board),
+            SimulationRequest.builder(factory).setNumFeeders(FEEDERS).setSeed(SEED)).build();
+      core = new SimulationCore(request, request.getProcessUUID());
+      moves = core.getPossibleMoves(request.getBoard());
+      Map<List<Integer>, SimulationAccumulator> accumulators = accumulate(0, FEEDERS);
+      List<SimulationResult> results = new ArrayList<SimulationResult>();
+      for (Map.Entry<List<Integer>, SimulationAccumulator> entry : accumulators.entrySet()) {
+         entry.getValue().normalize();
+         results.add(entry.getValue().getResult(entry.getKey(), request.getProcessUUID(), 0L,
+               FeederSampling.RANDOM));
+      }
+      expected = toLines(results);
+   }
+   
+   @AfterClass
+   public static void tearDownAfterClass() throws Exception {
+      System.setProperty("user.dir", oldUserDir);
+      System.setProperty("user.home", oldUserHome);
+      FileUtils.deleteDirectory(home);
+   }
+   
+   @Test
+   public final void testMovePartition() throws IOException {
+      assertEquals(expected, simulate("MOVES"));
+   }
+   
+   @Test
+   public final void testFeederPartition() throws IOException {
+      assertEquals(expected, simulate("FEEDERS"));
+   }
+   
+   /**
+    * A share without the first feeder still has every move, each marked with whether it is random,
+    * and a move that is not random has its one outcome.
+    */
+   @Test
+   public final void testShareMarksRandomness() {
+      Map<List<Integer>, SimulationAccumulator> share = accumulate(FEEDERS - 1, 1);
+      assertEquals(moves, new ArrayList<List<Integer>>(share.keySet()));
+      int fixed = 0;
+      for (SimulationAccumulator accumulator : share.values()) {
+         if (!accumulator.isRandom()) {
+            assertEquals(1, accumulator.getCount());
+            fixed++;
+         }
+      }
+      assertTrue("Expected moves that are not random.", fixed > 0);
+   }
+   
+   private static Map<List<Integer>, SimulationAccumulator> accumulate(int first, int count) {
+      ForkJoinPool pool = new ForkJoinPool(2);
+      try {
+         return pool.invoke(ForkJoinTask.adapt(() -> core.accumulate(moves, first, count)));
+      } finally {
+         pool.shutdown();
+      }
+   }
+   
+   private static List<String> simulate(String partition) throws IOException {
+      try (ShardedSimulation simulation = new ShardedSimulation("--home", home.getPath(), "--workers", "3",
+            "--partition", partition, "--threads", "1", "--feeders", String.valueOf(FEEDERS), "--seed",
+            String.valueOf(SEED))) {
+         return toLines(simulation.simulate(board));
+      }
+   }
+   
+   /**
+    * @return A line for each result, sorted, with every number in full.
+    */
+   private static List<String> toLines(Collection<SimulationResult> results) {
+      List<String> ret = new ArrayList<String>();
+      for (SimulationResult result : results) {
+         List<Object> values = new ArrayList<Object>(Arrays.asList(result.getMove(), result.getBoard(),
+               result.getSampleCount()));
+         for (NumberSpan span : Arrays.asList(result.getNetScore(), result.getNetGold(), result.getProgress(),
+               result.getBlocksCleared(), result.getDisruptionsCleared(), result.getCombosCleared())) {
+            values.addAll(Arrays.asList(span.getMinimum(), span.getMaximum(), span.getTotal(), span.getCount()));
+         }
+         ret.add(values.toString());
+      }
+      ret.sort(null);
+      assertTrue(ret.size() > 1);
+      return ret;
+   }
+}
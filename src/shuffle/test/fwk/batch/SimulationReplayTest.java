@@ -0,0 +1,131 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package shuffle.test.fwk.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import shuffle.fwk.batch.SimulationReplay;
+import shuffle.fwk.config.ConfigFactory;
+import shuffle.fwk.config.manager.BoardManager;
+import shuffle.fwk.data.Stage;
+import shuffle.fwk.data.simulation.SimulationCore;
+import shuffle.fwk.data.simulation.SimulationRequest;
+import shuffle.fwk.data.simulation.SimulationResult;
+import shuffle.fwk.data.simulation.util.FeederSampling;
+import shuffle.fwk.data.simulation.util.NumberSpan;
+import shuffle.fwk.data.simulation.util.SimulationAcceptor;
+
+/**
+ * Checks that a seeded simulation gives exactly the same results when it is replayed, whatever the
+ * number of threads, and that the seed is what decides them.
+ * 
+ * @author Andrew Meyers
+ * 
+ */
+public class SimulationReplayTest {
+   
+   private static final long SEED = -4962768465676381896L;
+   
+   private static SimulationRequest request;
+   
+   @BeforeClass
+   public static void setUpBeforeClass() throws Exception {
+      ConfigFactory factory = new ConfigFactory();
+      Stage stage = factory.getStageManager().getStageValue("278");
+      BoardManager boardManager = new BoardManager(factory);
+      boardManager.setStage(stage);
+      boardManager.loadBoardForStage(stage, true);
+      request = SimulationRequest.builder(factory).setStage(stage).setBoard(boardManager.getBoard())
+            .setTeam(factory.getTeamManager().getTeamForStage(stage)).setNumFeeders(20).setFeederHeight(2)
+            .setFeederSampling(FeederSampling.STRATIFIED).setSeed(SEED).build();
+   }
+   
+   @Test
+   public final void testSameSeedIsIdentical() throws IOException {
+      List<String> expected = simulate(request.toBuilder(), 1);
+      assertFalse(expected.isEmpty());
+      assertEquals(expected, simulate(request.toBuilder(), 4));
+      
+      StringWriter out = new StringWriter();
+      SimulationReplay.write(request, out);
+      // A separate configuration, so that the replay only depends on what it wrote.
+      SimulationRequest.Builder replayed = SimulationReplay.read(out.toString(), new ConfigFactory());
+      assertEquals(expected, simulate(replayed, 1));
+      assertEquals(expected, simulate(replayed, 3));
+   }
+   
+   @Test
+   public final void testOtherSeedDiffers() {
+      List<String> expected = simulate(request.toBuilder(), 2);
+      assertFalse(expected.equals(simulate(request.toBuilder().setSeed(SEED + 1), 2)));
+   }
+   
+   /**
+    * @return A line for each result of simulating the request, sorted, with every number in
+    *         full.
+    */
+   private static List<String> simulate(SimulationRequest.Builder builder, int threads) {
+      List<Collection<SimulationResult>> accepted = new ArrayList<Collection<SimulationResult>>();
+      UUID id = UUID.randomUUID();
+      SimulationRequest request = builder.setProcessUUID(id).setAcceptor(new SimulationAcceptor() {
+         @Override
+         public void acceptResults(Collection<SimulationResult> results) {
+            accepted.add(results);
+         }
+         
+         @Override
+         public UUID getAcceptedId() {
+            return id;
+         }
+      }).build();
+      ForkJoinPool pool = new ForkJoinPool(threads);
+      try {
+         pool.invoke(new SimulationCore(request, id));
+      } finally {
+         pool.shutdown();
+      }
+      assertEquals(1, accepted.size());
+      List<String> ret = new ArrayList<String>();
+      for (SimulationResult result : accepted.get(0)) {
+         List<Object> values = new ArrayList<Object>(Arrays.asList(result.getMove(), result.getBoard(),
+               result.getSampleCount()));
+         for (NumberSpan span : Arrays.asList(result.getNetScore(), result.getNetGold(), result.getProgress(),
+               result.getBlocksCleared(), result.getDisruptionsCleared(), result.getCombosCleared())) {
+            values.addAll(Arrays.asList(span.getMinimum(), span.getMaximum(), span.getTotal(), span.getCount()));
+         }
+         ret.add(values.toString());
+      }
+      ret.sort(null);
+      assertTrue(ret.size() > 1);
+      return ret;
+   }
+}
@@ -0,0 +1,120 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.test.fwk.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import shuffle.fwk.batch.SimulationServer;
+
+/**
+ * Drives a {@link SimulationServer} with a plain HTTP client on the loopback address.
+ * 
+ * @author Andrew Meyers
+ * 
+ */
+public class SimulationServerTest {
+   
+   private static File home;
+   private static String oldUserDir;
+   private static String oldUserHome;
+   private static SimulationServer server;
+   private static String board;
+   
+   @BeforeClass
+   public static void setUpBeforeClass() throws Exception {
+      oldUserDir = System.getProperty("user.dir");
+      oldUserHome = System.getProperty("user.home");
+      home = Files.createTempDirectory("SimulationServerTest").toFile();
+      server = new SimulationServer("--home", home.getPath(), "--port", "0", "--threads", "2", "--feeders", "5");
+      server.start();
+      board = read(SimulationServerTest.class.getClassLoader().getResourceAsStream("config/defaults/boards/278.txt"));
+   }
+   
+   @AfterClass
+   public static void tearDownAfterClass() throws Exception {
+      server.stop();
+      System.setProperty("user.dir", oldUserDir);
+      System.setProperty("user.home", oldUserHome);
+      FileUtils.deleteDirectory(home);
+   }
+   
+   @Test
+   public final void testSimulate() throws IOException {
+      HttpURLConnection connection = post(board);
+      assertEquals(200, connection.getResponseCode());
+      String[] lines = read(connection.getInputStream()).split("\n");
+      assertTrue("Expected a line for each move.", lines.length > 1);
+      for (String line : lines) {
+         assertTrue("Not a result: " + line, line.startsWith("{\"move\":[") && line.endsWith("}"));
+      }
+   }
+   
+   @Test
+   public final void testBadRequests() throws IOException {
+      assertEquals(400, post("STAGE 278\n").getResponseCode());
+      assertEquals(400, post(board.replace("ROW_1 ", "ROW_1 Missingno,")).getResponseCode());
+      assertEquals(400, post("STAGE\n").getResponseCode());
+   }
+   
+   @Test
+   public final void testDeadline() throws IOException {
+      assertEquals(504, post(board + "\nFEEDERS 100000\nDEADLINE 1\n").getResponseCode());
+   }
+   
+   private static HttpURLConnection post(String body) throws IOException {
+      URL url = new URL("http", "127.0.0.1", server.getPort(), SimulationServer.PATH_SIMULATE);
+      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      connection.setRequestMethod("POST");
+      connection.setDoOutput(true);
+      try (OutputStream out = connection.getOutputStream()) {
+         out.write(body.getBytes(StandardCharsets.UTF_8));
+      }
+      return connection;
+   }
+   
+   private static String read(InputStream in) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int read;
+      try {
+         while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+         }
+      } finally {
+         in.close();
+      }
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+   }
+}
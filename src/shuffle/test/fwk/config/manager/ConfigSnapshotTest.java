@@ -0,0 +1,130 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package shuffle.test.fwk.config.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import shuffle.fwk.config.ConfigFactory;
+import shuffle.fwk.config.EntryType;
+import shuffle.fwk.config.manager.EffectManager;
+import shuffle.fwk.config.manager.EffectTableSnapshot;
+import shuffle.fwk.config.manager.RosterManager;
+import shuffle.fwk.config.manager.RosterSnapshot;
+import shuffle.fwk.config.manager.SpeciesManager;
+import shuffle.fwk.data.Effect;
+import shuffle.fwk.data.Species;
+
+/**
+ * Checks that the roster and effect snapshots are only rebuilt when their data version changes,
+ * and that a snapshot taken before a change keeps the values it was taken with.
+ * 
+ * @author Andrew Meyers
+ * 
+ */
+public class ConfigSnapshotTest {
+   
+   @Test
+   public final void testEffectSnapshotVersionBump() {
+      EffectManager manager = new ConfigFactory().getEffectManager();
+      EffectTableSnapshot before = manager.getSnapshot();
+      assertEquals(manager.getDataVersion(), before.getVersion());
+      double odds = before.getOdds(Effect.SWAP, 3, 1);
+      
+      // Setting the value it already has is not a change.
+      manager.setEntry(EntryType.STRING, Effect.SWAP.toString(), manager.getStringValue(Effect.SWAP.toString()));
+      assertSame(before, manager.getSnapshot());
+      
+      manager.setEntry(EntryType.STRING, Effect.SWAP.toString(), "100 100 100 100 20 30 50 70 ODDS");
+      EffectTableSnapshot after = manager.getSnapshot();
+      assertNotSame(before, after);
+      assertTrue(after.getVersion() > before.getVersion());
+      assertEquals(manager.getDataVersion(), after.getVersion());
+      assertFalse(before.getContentDigest() == after.getContentDigest());
+      assertEquals(1.0, after.getOdds(Effect.SWAP, 3, 1), 0.0);
+      assertEquals(odds, before.getOdds(Effect.SWAP, 3, 1), 0.0);
+      assertSame(after, manager.getSnapshot());
+   }
+   
+   /**
+    * A snapshot taken while the data is being replaced is never kept past the replacement, so after
+    * each replacement the snapshot matches the data.
+    */
+   @Test
+   public final void testSnapshotDuringReplacement() throws InterruptedException {
+      EffectManager manager = new ConfigFactory().getEffectManager();
+      EffectManager original = new EffectManager(manager);
+      EffectManager changed = new EffectManager(manager);
+      changed.setEntry(EntryType.STRING, Effect.SWAP.toString(), "100 100 100 100 20 30 50 70 ODDS");
+      AtomicBoolean writing = new AtomicBoolean(true);
+      Thread reader = new Thread(() -> {
+         while (writing.get()) {
+            manager.getSnapshot();
+         }
+      });
+      reader.start();
+      double[] odds = { changed.getSnapshot().getOdds(Effect.SWAP, 3, 1),
+            original.getSnapshot().getOdds(Effect.SWAP, 3, 1) };
+      try {
+         for (int i = 0; i < 2000; i++) {
+            manager.copyFromManager(i % 2 == 0 ? changed : original);
+            assertEquals("After copy " + i, odds[i % 2], manager.getSnapshot().getOdds(Effect.SWAP, 3, 1), 0.0);
+         }
+      } finally {
+         writing.set(false);
+         reader.join();
+      }
+   }
+   
+   @Test
+   public final void testRosterSnapshotVersionBump() {
+      ConfigFactory factory = new ConfigFactory();
+      RosterManager manager = factory.getRosterManager();
+      SpeciesManager speciesManager = factory.getSpeciesManager();
+      Species species = speciesManager.getSpeciesValue("Pikachu");
+      RosterSnapshot before = manager.getSnapshot(speciesManager);
+      assertEquals(manager.getDataVersion(), before.getVersion());
+      assertSame(before, manager.getSnapshot(speciesManager));
+      int level = before.getLevel(species);
+      int attack = before.getAttack(species);
+      
+      int newLevel = level == 10 ? 9 : 10;
+      assertTrue(manager.setLevelForSpecies(species, newLevel));
+      RosterSnapshot after = manager.getSnapshot(speciesManager);
+      assertNotSame(before, after);
+      assertTrue(after.getVersion() > before.getVersion());
+      assertFalse(before.getContentDigest() == after.getContentDigest());
+      assertEquals(newLevel, after.getLevel(species));
+      assertEquals(species.getAttack(newLevel), after.getAttack(species));
+      assertEquals(level, before.getLevel(species));
+      assertEquals(attack, before.getAttack(species));
+      
+      // Going back to the old level gives a new version, but the same content as before.
+      manager.setLevelForSpecies(species, level);
+      RosterSnapshot restored = manager.getSnapshot(speciesManager);
+      assertTrue(restored.getVersion() > after.getVersion());
+      assertEquals(before.getContentDigest(), restored.getContentDigest());
+   }
+}
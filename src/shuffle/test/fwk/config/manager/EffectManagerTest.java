@@ -20,12 +20,18 @@ package shuffle.test.fwk.config.manager;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import shuffle.fwk.config.ConfigFactory;
+import shuffle.fwk.config.EntryType;
 import shuffle.fwk.config.manager.EffectManager;
+import shuffle.fwk.config.manager.EffectTableSnapshot;
 import shuffle.fwk.data.Effect;
 
 /**
@@ -65,4 +71,24 @@ public class EffectManagerTest {
       }
    }
    
+   /**
+    * Test method for {@link shuffle.fwk.config.manager.EffectManager#getSnapshot()}.
+    */
+   @Test
+   public final void testGetSnapshot() {
+      EffectManager manager = new ConfigFactory().getEffectManager();
+      EffectTableSnapshot snapshot = manager.getSnapshot();
+      for (Effect e : Effect.values()) {
+         for (int skill = 0; skill <= 6; skill++) {
+            assertEquals(e + " mult", manager.getMult(e, skill), snapshot.getMult(e, skill), 0.0);
+            for (int num = 1; num <= 7; num++) {
+               assertEquals(e + " odds", manager.getOdds(e, num, skill), snapshot.getOdds(e, num, skill), 0.0);
+            }
+         }
+      }
+      assertSame("Unchanged data reuses the snapshot", snapshot, manager.getSnapshot());
+      manager.setEntry(EntryType.STRING, Effect.NONE.toString(), "50 60 70 100 10 10 10 10 ODDS");
+      assertNotSame("Changed data rebuilds the snapshot", snapshot, manager.getSnapshot());
+   }
+   
 }
@@ -0,0 +1,186 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.test.fwk.data.simulation;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.management.ThreadMXBean;
+
+import shuffle.fwk.config.ConfigFactory;
+import shuffle.fwk.config.manager.BoardManager;
+import shuffle.fwk.data.Board;
+import shuffle.fwk.data.Stage;
+import shuffle.fwk.data.simulation.SimulationCore;
+import shuffle.fwk.data.simulation.SimulationRequest;
+import shuffle.fwk.data.simulation.util.SimulationMetrics;
+
+/**
+ * Guards how much the simulation engine allocates for each simulated task, since that is what
+ * drives its latency. Each stage's default board is simulated in a pool of its own, and the bytes
+ * allocated by the pool's threads are divided by the tasks run. If a change pushes that over the
+ * budget for the stage, the test fails.
+ * <p>
+ * How many bytes the same code allocates depends a lot on the JVM, from its object headers to how
+ * it stores strings, so the budgets are in units of what copying the stage's board and taking its
+ * hash code allocates in the same JVM. Measured that way the cost moves far less between JVMs. The
+ * budgets are about twice what was measured when they were set. If a change is meant to allocate
+ * more, raise them here along with it. The test is skipped where the JVM cannot measure allocation
+ * by thread.
+ * 
+ * @author Andrew Meyers
+ * 
+ */
+public class SimulationAllocationTest {
+   
+   private static final int FEEDERS = 200;
+   /**
+    * Runs before the measured one, so that it measures compiled code.
+    */
+   private static final int WARMUP_RUNS = 3;
+   
+   /**
+    * The board copies made to measure the unit the budgets are in.
+    */
+   private static final int UNIT_COPIES = 20000;
+   
+   private static final double BUDGET_001 = 13.0;
+   private static final double BUDGET_278 = 8.0;
+   private static final double BUDGET_SP_017 = 40.0;
+   
+   static volatile int sink;
+   
+   private static ConfigFactory factory;
+   private static BoardManager boardManager;
+   private static ThreadMXBean threadBean;
+   private static ForkJoinPool pool;
+   private static final List<Thread> poolThreads = new CopyOnWriteArrayList<Thread>();
+   
+   @BeforeClass
+   public static void setUpBeforeClass() throws Exception {
+      java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      assumeTrue(bean instanceof ThreadMXBean);
+      threadBean = (ThreadMXBean) bean;
+      assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+      threadBean.setThreadAllocatedMemoryEnabled(true);
+      factory = new ConfigFactory();
+      boardManager = new BoardManager(factory);
+      pool = new ForkJoinPool(2, p -> {
+         ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+         poolThreads.add(thread);
+         return thread;
+      }, null, false);
+   }
+   
+   @AfterClass
+   public static void tearDownAfterClass() throws Exception {
+      if (pool != null) {
+         pool.shutdown();
+      }
+   }
+   
+   @Test
+   public final void testSettledStage() {
+      assertWithinBudget("001", BUDGET_001);
+   }
+   
+   @Test
+   public final void testMainStage() {
+      assertWithinBudget("278", BUDGET_278);
+   }
+   
+   @Test
+   public final void testSpecialStage() {
+      assertWithinBudget("SP_017", BUDGET_SP_017);
+   }
+   
+   private void assertWithinBudget(String stageName, double budget) {
+      long perTask = measureBytesPerTask(stageName);
+      long perCopy = measureBytesPerBoardCopy();
+      double copies = (double) perTask / perCopy;
+      String message = String.format("Stage %s allocated %d bytes per task, %.1f board copies of %d bytes, over "
+            + "its budget of %.1f", stageName, perTask, copies, perCopy, budget);
+      assertTrue(message, copies <= budget);
+   }
+   
+   /**
+    * @return The bytes allocated by the current thread to copy the loaded board and compute its hash
+    *         code, on average.
+    */
+   private long measureBytesPerBoardCopy() {
+      Board board = boardManager.getBoard();
+      Board[] copies = new Board[16];
+      long id = Thread.currentThread().getId();
+      int hashes = 0;
+      for (int i = 0; i < UNIT_COPIES; i++) {
+         copies[i & 15] = new Board(board);
+         hashes += copies[i & 15].hashCode();
+      }
+      long before = threadBean.getThreadAllocatedBytes(id);
+      for (int i = 0; i < UNIT_COPIES; i++) {
+         copies[i & 15] = new Board(board);
+         hashes += copies[i & 15].hashCode();
+      }
+      long bytes = threadBean.getThreadAllocatedBytes(id) - before;
+      // Keeps the copies from being optimized away.
+      sink = hashes + copies[0].hashCode();
+      return Math.max(1L, bytes / UNIT_COPIES);
+   }
+   
+   private long measureBytesPerTask(String stageName) {
+      Stage stage = factory.getStageManager().getStageValue(stageName);
+      assertTrue("Stage " + stageName + " is missing.", stage != null);
+      boardManager.setStage(stage);
+      boardManager.loadBoardForStage(stage, true);
+      SimulationRequest request = SimulationRequest.builder(factory).setStage(stage).setBoard(boardManager.getBoard())
+            .setTeam(factory.getTeamManager().getTeamForStage(stage)).setNumFeeders(FEEDERS)
+            .setCommonRandomNumbers(true).build();
+      for (int i = 0; i < WARMUP_RUNS; i++) {
+         pool.invoke(new SimulationCore(request, request.getProcessUUID()));
+      }
+      long tasksBefore = SimulationMetrics.INSTANCE.getTasksExecuted();
+      long bytesBefore = getPoolAllocatedBytes();
+      pool.invoke(new SimulationCore(request, request.getProcessUUID()));
+      long bytes = getPoolAllocatedBytes() - bytesBefore;
+      long tasks = SimulationMetrics.INSTANCE.getTasksExecuted() - tasksBefore;
+      assertTrue("Stage " + stageName + " ran no tasks.", tasks > 0);
+      return bytes / tasks;
+   }
+   
+   private static long getPoolAllocatedBytes() {
+      long ret = 0L;
+      for (Thread thread : poolThreads) {
+         long bytes = threadBean.getThreadAllocatedBytes(thread.getId());
+         if (bytes > 0) {
+            ret += bytes;
+         }
+      }
+      return ret;
+   }
+}
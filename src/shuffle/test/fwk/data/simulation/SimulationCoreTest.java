@@ -22,14 +22,14 @@ import static org.junit.Assert.assertTrue;
 import java.util.Collection;
 import java.util.UUID;
 
-import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
-import shuffle.fwk.ShuffleController;
-import shuffle.fwk.config.EntryType;
+import shuffle.fwk.config.ConfigFactory;
+import shuffle.fwk.config.manager.BoardManager;
 import shuffle.fwk.data.Stage;
 import shuffle.fwk.data.simulation.SimulationCore;
+import shuffle.fwk.data.simulation.SimulationRequest;
 import shuffle.fwk.data.simulation.SimulationResult;
 
 /**
@@ -38,9 +38,8 @@ import shuffle.fwk.data.simulation.SimulationResult;
  */
 public class SimulationCoreTest {
    
-   private static final String KEY_NUM_FEEDERS = "NUM_FEEDERS";
-   private static final String KEY_AUTO_COMPUTE = "AUTO_COMPUTE";
-   private static ShuffleController controller;
+   private static ConfigFactory factory;
+   private static BoardManager boardManager;
    
 
    /**
@@ -49,13 +48,8 @@ public class SimulationCoreTest {
     */
    @BeforeClass
    public static void setUpBeforeClass() throws Exception {
-      controller = new ShuffleController();
-      controller.getPreferencesManager().setEntry(EntryType.BOOLEAN, KEY_AUTO_COMPUTE, false);
-   }
-   
-   @Before
-   public void setUpBefore() throws Exception {
-      controller.getPreferencesManager().setEntry(EntryType.INTEGER, KEY_NUM_FEEDERS, 1);
+      factory = new ConfigFactory();
+      boardManager = new BoardManager(factory);
    }
    
    /**
@@ -63,17 +57,18 @@ public class SimulationCoreTest {
     */
    @Test
    public final void testComputeWithoutMove() {
-      Stage stage = controller.getModel().getStageManager().getStageValue("001");
+      Stage stage = factory.getStageManager().getStageValue("001");
       testComputeWithoutMoveForStage(stage);
    }
    
    public final void testComputeWithoutMoveForStage(Stage stage) {
       assertTrue("Stage 001 is missing.", stage != null);
-      controller.setCurrentStage(stage);
-      controller.loadDefaultGrid();
+      boardManager.setStage(stage);
+      boardManager.loadBoardForStage(stage, true);
+      SimulationRequest.Builder builder = SimulationRequest.builder(factory).setStage(stage)
+            .setBoard(boardManager.getBoard()).setTeam(factory.getTeamManager().getTeamForStage(stage));
       for (int i = 1; i < 5000; i++) {
-         controller.getPreferencesManager().setEntry(EntryType.INTEGER, KEY_NUM_FEEDERS, i);
-         SimulationCore core = new SimulationCore(controller, UUID.randomUUID());
+         SimulationCore core = new SimulationCore(builder.setNumFeeders(i).build(), UUID.randomUUID());
          Collection<SimulationResult> results = core.computeWithoutMove();
          assertTrue("For Value of " + i + ", Stage 001 in the default configuration needs to always be settled.",
                results == null);
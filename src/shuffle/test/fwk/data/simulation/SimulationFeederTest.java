@@ -0,0 +1,160 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package shuffle.test.fwk.data.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import shuffle.fwk.config.ConfigFactory;
+import shuffle.fwk.config.manager.BoardManager;
+import shuffle.fwk.config.manager.SpeciesManager;
+import shuffle.fwk.data.Board;
+import shuffle.fwk.data.Species;
+import shuffle.fwk.data.Stage;
+import shuffle.fwk.data.simulation.SimulationAccumulator;
+import shuffle.fwk.data.simulation.SimulationCore;
+import shuffle.fwk.data.simulation.SimulationFeeder;
+import shuffle.fwk.data.simulation.SimulationRequest;
+import shuffle.fwk.data.simulation.util.FeederSampling;
+
+/**
+ * @author Andrew Meyers
+ * 
+ */
+public class SimulationFeederTest {
+   
+   private static final int HEIGHT = 3;
+   
+   private static ConfigFactory factory;
+   private static List<Species> species;
+   
+   @BeforeClass
+   public static void setUpBeforeClass() throws Exception {
+      factory = new ConfigFactory();
+      SpeciesManager speciesManager = factory.getSpeciesManager();
+      species = new ArrayList<Species>();
+      for (String name : Arrays.asList("Pidgey", "Pichu", "Happiny", "Azurill")) {
+         species.add(speciesManager.getSpeciesValue(name));
+      }
+   }
+   
+   /**
+    * Stratified feeders deal every species equally often at each position of each column.
+    */
+   @Test
+   public final void testStratifiedIsBalanced() {
+      for (long seed = 0; seed < 10; seed++) {
+         List<List<List<Species>>> feeders = getColumns(FeederSampling.STRATIFIED, 8, seed);
+         for (int col = 1; col <= Board.NUM_COLS; col++) {
+            for (int depth = 0; depth < HEIGHT; depth++) {
+               int[] counts = new int[species.size()];
+               for (List<List<Species>> feeder : feeders) {
+                  counts[species.indexOf(feeder.get(col - 1).get(depth))]++;
+               }
+               for (int count : counts) {
+                  assertEquals(String.format("Column %d at depth %d", col, depth), 2, count);
+               }
+            }
+         }
+      }
+   }
+   
+   /**
+    * When the species do not divide evenly, each is still dealt to within one of the others.
+    */
+   @Test
+   public final void testStratifiedIsBalancedToWithinOne() {
+      List<List<List<Species>>> feeders = getColumns(FeederSampling.STRATIFIED, 10, 1L);
+      for (int col = 1; col <= Board.NUM_COLS; col++) {
+         for (int depth = 0; depth < HEIGHT; depth++) {
+            int[] counts = new int[species.size()];
+            for (List<List<Species>> feeder : feeders) {
+               counts[species.indexOf(feeder.get(col - 1).get(depth))]++;
+            }
+            int min = Arrays.stream(counts).min().getAsInt();
+            int max = Arrays.stream(counts).max().getAsInt();
+            assertTrue(String.format("Column %d at depth %d", col, depth), max - min <= 1);
+         }
+      }
+   }
+   
+   /**
+    * The preferred feeder height reaches the feeders a simulation uses, unless the sampling is
+    * random, which keeps the feeders empty as it always has.
+    */
+   @Test
+   public final void testFeederHeightIsSimulated() {
+      Stage stage = factory.getStageManager().getStageValue("001");
+      BoardManager boardManager = new BoardManager(factory);
+      boardManager.setStage(stage);
+      boardManager.loadBoardForStage(stage, true);
+      SimulationRequest.Builder builder = SimulationRequest.builder(factory).setStage(stage)
+            .setBoard(boardManager.getBoard()).setTeam(factory.getTeamManager().getTeamForStage(stage))
+            .setFeederSampling(FeederSampling.STRATIFIED).setNumFeeders(8).setSeed(3L);
+      SimulationRequest empty = builder.build();
+      SimulationRequest filled = builder.setFeederHeight(HEIGHT).build();
+      assertEquals(HEIGHT, filled.getPreferredFeederHeight());
+      SimulationCore emptyCore = new SimulationCore(empty, empty.getProcessUUID());
+      SimulationCore filledCore = new SimulationCore(filled, filled.getProcessUUID());
+      assertFalse(emptyCore.getFingerprint().equals(filledCore.getFingerprint()));
+      SimulationRequest random = builder.setFeederSampling(FeederSampling.RANDOM).build();
+      SimulationRequest randomEmpty = builder.setFeederHeight(0).build();
+      assertEquals(new SimulationCore(randomEmpty, randomEmpty.getProcessUUID()).getFingerprint(),
+            new SimulationCore(random, random.getProcessUUID()).getFingerprint());
+      List<Integer> move = Arrays.asList(2, 6, 5, 5);
+      SimulationAccumulator accumulator = filledCore.accumulate(Collections.singletonList(move)).get(move);
+      assertTrue(accumulator.getCount() > 0);
+   }
+   
+   /**
+    * @param sampling
+    * @param count
+    * @param seed
+    * @return The blocks of each feeder made, by column.
+    */
+   private static List<List<List<Species>>> getColumns(FeederSampling sampling, int count, long seed) {
+      Collection<SimulationFeeder> feeders = SimulationFeeder.getFeedersFor(HEIGHT, null, species, count, sampling,
+            new Random(seed));
+      assertEquals(count, feeders.size());
+      List<List<List<Species>>> ret = new ArrayList<List<List<Species>>>();
+      for (SimulationFeeder feeder : feeders) {
+         List<List<Species>> columns = new ArrayList<List<Species>>(Board.NUM_COLS);
+         for (int col = 1; col <= Board.NUM_COLS; col++) {
+            List<Species> column = new ArrayList<Species>();
+            while (feeder.hasMore(col)) {
+               column.add(feeder.pollColumn(col));
+            }
+            assertEquals(HEIGHT, column.size());
+            columns.add(column);
+         }
+         ret.add(columns);
+      }
+      return ret;
+   }
+}
@@ -18,10 +18,31 @@
 package shuffle.test.fwk.data.simulation;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.BeforeClass;
 import org.junit.Test;
 
+import shuffle.fwk.config.ConfigFactory;
+import shuffle.fwk.config.EntryType;
+import shuffle.fwk.config.manager.BoardManager;
+import shuffle.fwk.config.manager.EffectManager;
+import shuffle.fwk.data.Board;
+import shuffle.fwk.data.Stage;
+import shuffle.fwk.data.simulation.SimulationCore;
+import shuffle.fwk.data.simulation.SimulationFeeder;
+import shuffle.fwk.data.simulation.SimulationRequest;
+import shuffle.fwk.data.simulation.SimulationState;
 import shuffle.fwk.data.simulation.SimulationTask;
+import shuffle.fwk.data.simulation.util.FeederSampling;
 
 /**
  * @author Andrew Meyers
@@ -29,6 +50,24 @@ import shuffle.fwk.data.simulation.SimulationTask;
  */
 public class SimulationTaskTest {
    
+   private static final long SEED = 20151L;
+   /**
+    * A board with one Wood, away from where the move matches.
+    */
+   private static final String[] ONE_WOOD_BOARD = new String[] { "Pidgey,Pichu,Happiny,Azurill,Pidgey,Pichu",
+         "Pichu,Happiny,Azurill,Pidgey,Pichu,Happiny", "Happiny,Azurill,Pidgey,Pichu,Happiny,Azurill",
+         "%1$s,%1$s,Pichu,%1$s,Azurill,Pidgey", "Azurill,Pidgey,Happiny,Happiny,Pidgey,Pichu",
+         "Happiny,Pichu,Azurill,Pidgey,Pichu,Wood" };
+   
+   private static ConfigFactory factory;
+   private static BoardManager boardManager;
+   
+   @BeforeClass
+   public static void setUpBeforeClass() throws Exception {
+      factory = new ConfigFactory();
+      boardManager = new BoardManager(factory);
+   }
+   
    /**
     * Test method for {@link shuffle.fwk.data.simulation.SimulationTask#getComboMultiplier(int)}.
     */
@@ -62,4 +101,159 @@ public class SimulationTaskTest {
       }
    }
    
+   /*
+    * The expected outcomes below are what the engine gave before columns could be skipped as
+    * settled, so any difference in gravity or in finding combos shows up here. Frozen blocks are
+    * marked with a *.
+    */
+   
+   @Test
+   public final void testCascade() {
+      SimulationState state = simulate("001", null, 2, 6, 5, 5);
+      assertOutcome(state, 112.75, 10, 0, 3);
+      assertBoard(state, "Air,Air,Air,Air,Air,Air", "Happiny,Pidgey,Air,Air,Pidgey,Air",
+            "Azurill,Azurill,Pichu,Happiny,Azurill,Air", "Pidgey,Happiny,Pichu,Pidgey,Pichu,Azurill",
+            "Pichu,Pidgey,Pidgey,Pichu,Pidgey,Azurill", "Pidgey,Happiny,Pichu,Pidgey,Azurill,Happiny");
+   }
+   
+   @Test
+   public final void testCascadeClearingDisruptions() {
+      SimulationState state = simulate("069", null, 3, 1, 5, 2);
+      assertOutcome(state, 117.0, 16, 4, 4);
+      assertBoard(state, "Air,Air,Air,Air,Air,Air", "Air,Air,Air,Air,Air,Air", "Air,Air,Air,Air,Air,Air",
+            "Air,Air,Slowpoke,Air,Air,Air", "Air,Air,Slowbro,Air,Air,Air",
+            "Air,Air,Slowpoke,Slowpoke,Slowbro,Slowpoke");
+   }
+   
+   @Test
+   public final void testCascadeAroundFrozenBlocks() {
+      SimulationState state = simulate("123", null, 1, 1, 6, 2);
+      assertOutcome(state, 283.0, 15, 10, 8);
+      assertBoard(state, "Air,Air,Air,Air,Air,Air", "Eevee,Air,Air,Air,Air,Air", "Flareon*,Air,Air,Air,Air,Air",
+            "Flareon*,Air,Air,Air,Air,Air", "Air,Eevee,Flareon,Flareon,Air,Air",
+            "Air,Eevee,Flareon,Flareon,Air,Air");
+   }
+   
+   /**
+    * Rock Break erases the only Wood once the match is done, and the column above it falls.
+    */
+   @Test
+   public final void testEraseEffect() {
+      SimulationState state = simulate("001", getOneWoodBoard("Blitzle"), 4, 4, 4, 3);
+      assertOutcome(state, 40.0, 4, 1, 1);
+      assertBoard(state, "Air,Air,Air,Azurill,Pidgey,Air", "Pidgey,Pichu,Happiny,Pidgey,Pichu,Pichu",
+            "Pichu,Happiny,Azurill,Pichu,Happiny,Happiny", "Happiny,Azurill,Pidgey,Pichu,Azurill,Azurill",
+            "Azurill,Pidgey,Happiny,Happiny,Pidgey,Pidgey", "Happiny,Pichu,Azurill,Pidgey,Pichu,Pichu");
+   }
+   
+   /**
+    * Swap, made certain, replaces the only Wood with the species that matched.
+    */
+   @Test
+   public final void testReplaceEffect() {
+      EffectManager effectManager = factory.getEffectManager();
+      String odds = effectManager.getStringValue("SWAP");
+      effectManager.setEntry(EntryType.STRING, "SWAP", "100 100 100 100 20 30 50 70 ODDS");
+      try {
+         SimulationState state = simulate("001", getOneWoodBoard("Illumise"), 4, 4, 4, 3);
+         assertOutcome(state, 100.0, 3, 1, 1);
+         assertBoard(state, "Air,Air,Air,Azurill,Pidgey,Pichu", "Pidgey,Pichu,Happiny,Pidgey,Pichu,Happiny",
+               "Pichu,Happiny,Azurill,Pichu,Happiny,Azurill", "Happiny,Azurill,Pidgey,Pichu,Azurill,Pidgey",
+               "Azurill,Pidgey,Happiny,Happiny,Pidgey,Pichu", "Happiny,Pichu,Azurill,Pidgey,Pichu,Illumise");
+      } finally {
+         effectManager.setEntry(EntryType.STRING, "SWAP", odds);
+      }
+   }
+   
+   /**
+    * With common random numbers, random picks depend only on the feeder, so every move simulated
+    * against it picks the same.
+    */
+   @Test
+   public final void testCommonUniqueRandoms() {
+      Stage stage = factory.getStageManager().getStageValue("001");
+      boardManager.setStage(stage);
+      boardManager.loadBoardForStage(stage, true);
+      SimulationRequest request = SimulationRequest.builder(factory).setStage(stage)
+            .setBoard(boardManager.getBoard()).setTeam(factory.getTeamManager().getTeamForStage(stage))
+            .setCommonRandomNumbers(true).build();
+      SimulationCore core = new SimulationCore(request, UUID.randomUUID());
+      List<Integer> move = Arrays.asList(2, 6, 5, 5);
+      List<Integer> other = Arrays.asList(1, 1, 2, 1);
+      boolean differs = false;
+      List<Integer> first = null;
+      for (long seed = 0; seed < 20; seed++) {
+         Iterator<SimulationFeeder> itr = SimulationFeeder.getFeedersFor(0, null, Collections.emptyList(), 1,
+               FeederSampling.RANDOM, new Random(seed)).iterator();
+         SimulationFeeder feeder = itr.next();
+         List<Integer> picks = new SimulationTask(core, move, feeder).uniqueRandoms(0, 10, 3);
+         assertEquals(picks, new SimulationTask(core, other, feeder).uniqueRandoms(0, 10, 3));
+         first = first == null ? picks : first;
+         differs |= !first.equals(picks);
+      }
+      assertTrue("Every feeder picked the same.", differs);
+   }
+   
+   private static String[] getOneWoodBoard(String matched) {
+      String[] ret = new String[ONE_WOOD_BOARD.length];
+      for (int i = 0; i < ret.length; i++) {
+         ret[i] = String.format(ONE_WOOD_BOARD[i], matched);
+      }
+      return ret;
+   }
+   
+   /**
+    * Simulates the move once, with no blocks falling in.
+    * 
+    * @param stageName
+    * @param rows
+    *           The board, or null for the stage's default board
+    * @param move
+    * @return The outcome.
+    */
+   private static SimulationState simulate(String stageName, String[] rows, Integer... move) {
+      Stage stage = factory.getStageManager().getStageValue(stageName);
+      assertTrue("Stage " + stageName + " is missing.", stage != null);
+      boardManager.setStage(stage);
+      boardManager.loadBoardForStage(stage, true);
+      Board board = new Board(boardManager.getBoard());
+      if (rows != null) {
+         for (int row = 1; row <= Board.NUM_ROWS; row++) {
+            String[] names = rows[row - 1].split(",");
+            for (int col = 1; col <= Board.NUM_COLS; col++) {
+               board.setSpeciesAt(row, col, factory.getSpeciesManager().getSpeciesValue(names[col - 1]));
+               board.setFrozenAt(row, col, false);
+            }
+         }
+      }
+      SimulationRequest request = SimulationRequest.builder(factory).setStage(stage).setBoard(board)
+            .setTeam(factory.getTeamManager().getTeamForStage(stage)).setSeed(SEED).build();
+      SimulationCore core = new SimulationCore(request, UUID.randomUUID());
+      SimulationState state = new SimulationTask(core, Arrays.asList(move), new SimulationFeeder()).invoke();
+      assertTrue("The move " + Arrays.asList(move) + " had no outcome.", state != null);
+      assertFalse("The move " + Arrays.asList(move) + " should not be random.", state.isRandom());
+      return state;
+   }
+   
+   private static void assertOutcome(SimulationState state, double score, int blocks, int disruptions, int combos) {
+      assertEquals("Average score", score, state.getScore().getAverage(), 0.001);
+      assertEquals("Blocks cleared", blocks, state.getBlocksCleared());
+      assertEquals("Disruptions cleared", disruptions, state.getDisruptionsCleared());
+      assertEquals("Combos cleared", combos, state.getCombosCleared());
+   }
+   
+   private static void assertBoard(SimulationState state, String... rows) {
+      Board board = state.getResultBoard();
+      for (int row = 1; row <= Board.NUM_ROWS; row++) {
+         String[] names = rows[row - 1].split(",");
+         for (int col = 1; col <= Board.NUM_COLS; col++) {
+            String name = names[col - 1];
+            boolean frozen = name.endsWith("*");
+            String cell = String.format("(%d,%d)", row, col);
+            assertEquals("Species at " + cell, frozen ? name.substring(0, name.length() - 1) : name,
+                  board.getSpeciesAt(row, col).getName());
+            assertEquals("Frozen at " + cell, frozen, board.isFrozenAt(row, col));
+         }
+      }
+   }
 }
@@ -0,0 +1,79 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.test.fwk.data.simulation.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import shuffle.fwk.data.simulation.util.DecisionPath;
+
+/**
+ * @author Andrew Meyers
+ *
+ */
+public class DecisionPathTest {
+   
+   /**
+    * Walks every path of a coin flip followed by a three way pick, which only happens if the flip
+    * succeeded, and checks that each outcome is visited once with the right probability.
+    */
+   @Test
+   public final void testVisitsEveryOutcome() {
+      Set<String> outcomes = new HashSet<String>();
+      double total = 0;
+      DecisionPath path = new DecisionPath();
+      while (path != null) {
+         String outcome = "miss";
+         if (path.chooseOdds(0.25)) {
+            outcome = "hit" + path.chooseUniform(3);
+            assertEquals("Hits share the odds", 0.25 / 3, path.getProbability(), 1e-9);
+         } else {
+            assertEquals("Misses have the rest", 0.75, path.getProbability(), 1e-9);
+         }
+         assertTrue("Replayed as scripted", path.isReplayed());
+         assertTrue("Each outcome once", outcomes.add(outcome));
+         total += path.getProbability();
+         path = path.next();
+      }
+      assertEquals(4, outcomes.size());
+      assertEquals("Probabilities sum to one", 1.0, total, 1e-9);
+   }
+   
+   /**
+    * A replay that meets a different decision than the one recorded is not a valid outcome.
+    */
+   @Test
+   public final void testDivergence() {
+      DecisionPath path = new DecisionPath();
+      path.chooseUniform(2);
+      DecisionPath next = path.next();
+      assertEquals("The other value is left", 1, path.getMinimumRemaining());
+      next.chooseUniform(3);
+      assertFalse("Different option counts diverge", next.isReplayed());
+      assertNull("Nothing after the last outcome", new DecisionPath().next());
+   }
+   
+}
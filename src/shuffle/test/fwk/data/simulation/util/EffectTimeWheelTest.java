@@ -0,0 +1,89 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.test.fwk.data.simulation.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import shuffle.fwk.data.simulation.util.EffectTimeWheel;
+
+/**
+ * @author Andrew Meyers
+ *
+ */
+public class EffectTimeWheelTest {
+   
+   /**
+    * Test method for {@link EffectTimeWheel#getNextTime()} and
+    * {@link EffectTimeWheel#pollDue(int, java.util.Collection)}.
+    */
+   @Test
+   public final void testScheduleAndPoll() {
+      EffectTimeWheel<String> wheel = new EffectTimeWheel<String>();
+      assertEquals("Empty wheel has no next time", EffectTimeWheel.NO_TIME, wheel.getNextTime());
+      wheel.schedule(82, "erase");
+      wheel.schedule(24, "combo");
+      assertTrue("Duplicates are added once", !wheel.schedule(24, "combo"));
+      assertEquals("Size counts unique items", 2, wheel.size());
+      assertEquals("Earliest time first", 24, wheel.getNextTime());
+      
+      List<String> due = new ArrayList<String>();
+      assertEquals("Nothing due yet", 0, wheel.pollDue(23, due));
+      assertEquals("One due at 24", 1, wheel.pollDue(24, due));
+      assertEquals(Arrays.asList("combo"), due);
+      wheel.advanceTo(24);
+      assertEquals("Next is the erasure", 82, wheel.getNextTime());
+      wheel.advanceTo(82);
+      due.clear();
+      wheel.pollDue(82, due);
+      assertEquals(Arrays.asList("erase"), due);
+      assertTrue("Empty after polling everything", wheel.isEmpty());
+   }
+   
+   /**
+    * Checks that the wheel wraps around its span and keeps far-future items in order.
+    */
+   @Test
+   public final void testWrapAroundAndOverflow() {
+      EffectTimeWheel<Integer> wheel = new EffectTimeWheel<Integer>(64);
+      int now = 0;
+      for (int step = 0; step < 20; step++) {
+         wheel.schedule(now + 50, step);
+         wheel.schedule(now + 200, -step);
+         now += 50;
+         assertEquals("Wrapped time is found", now, wheel.getNextTime());
+         wheel.advanceTo(now);
+         List<Integer> due = new ArrayList<Integer>();
+         wheel.pollDue(now, due);
+         assertTrue("Item scheduled for now is due", due.contains(step));
+         for (Integer i : due) {
+            assertFalse("Far items are never early", i < 0 && i != -(step - 3));
+         }
+      }
+      assertEquals("Overflowed items remain", 3, wheel.size());
+   }
+   
+}
@@ -0,0 +1,204 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package shuffle.test.fwk.data.simulation.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import shuffle.fwk.config.ConfigFactory;
+import shuffle.fwk.config.EntryType;
+import shuffle.fwk.config.manager.BoardManager;
+import shuffle.fwk.config.manager.EffectManager;
+import shuffle.fwk.data.Board;
+import shuffle.fwk.data.Stage;
+import shuffle.fwk.data.Team;
+import shuffle.fwk.data.TeamImpl;
+import shuffle.fwk.data.simulation.SimulationCore;
+import shuffle.fwk.data.simulation.SimulationRequest;
+import shuffle.fwk.data.simulation.SimulationResult;
+import shuffle.fwk.data.simulation.util.FeederSampling;
+import shuffle.fwk.data.simulation.util.NumberSpan;
+import shuffle.fwk.data.simulation.util.SimulationResultCache;
+
+/**
+ * @author Andrew Meyers
+ * 
+ */
+public class SimulationResultCacheTest {
+   
+   private static ConfigFactory factory;
+   private static BoardManager boardManager;
+   
+   @BeforeClass
+   public static void setUpBeforeClass() throws Exception {
+      factory = new ConfigFactory();
+      boardManager = new BoardManager(factory);
+   }
+   
+   /**
+    * Results saved to a file and loaded again are the same, attributed to whoever asks for them.
+    */
+   @Test
+   public final void testRoundTrip() throws IOException {
+      SimulationResultCache cache = new SimulationResultCache();
+      List<SimulationResult> results = getResults();
+      cache.put("first", results);
+      cache.put("second", results.subList(0, 1));
+      File file = File.createTempFile("resultCache", ".bin");
+      file.deleteOnExit();
+      cache.save(file);
+      
+      SimulationResultCache loaded = new SimulationResultCache();
+      assertTrue(loaded.load(file, factory.getSpeciesManager()));
+      assertEquals(2, loaded.size());
+      UUID id = UUID.randomUUID();
+      Collection<SimulationResult> first = loaded.get("first", id, 7L);
+      assertEquals(results.size(), first.size());
+      Iterator<SimulationResult> itr = first.iterator();
+      for (SimulationResult expected : results) {
+         SimulationResult actual = itr.next();
+         assertEquals(id, actual.getID());
+         assertEquals(7L, actual.getStartTime());
+         assertEquals(expected.getMove(), actual.getMove());
+         assertEquals(expected.getBoard(), actual.getBoard());
+         assertSpan(expected.getNetScore(), actual.getNetScore());
+         assertSpan(expected.getNetGold(), actual.getNetGold());
+         assertSpan(expected.getProgress(), actual.getProgress());
+         assertSpan(expected.getBlocksCleared(), actual.getBlocksCleared());
+         assertSpan(expected.getDisruptionsCleared(), actual.getDisruptionsCleared());
+         assertSpan(expected.getCombosCleared(), actual.getCombosCleared());
+         assertEquals(expected.getSampleCount(), actual.getSampleCount());
+         assertEquals(expected.getFeederSampling(), actual.getFeederSampling());
+      }
+      assertEquals(1, loaded.get("second", id, 7L).size());
+      assertNull(loaded.get("third", id, 7L));
+   }
+   
+   /**
+    * A cache saved by another version of the program is not loaded, since the simulation may have
+    * changed since.
+    */
+   @Test
+   public final void testStaleVersionIgnored() throws IOException {
+      File file = File.createTempFile("resultCache", ".bin");
+      file.deleteOnExit();
+      try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+         out.writeUTF("0.0.0");
+         out.writeInt(1);
+         out.writeUTF("first");
+         out.writeInt(0);
+      }
+      SimulationResultCache cache = new SimulationResultCache();
+      cache.put("existing", getResults());
+      assertFalse(cache.load(file, factory.getSpeciesManager()));
+      assertEquals(0, cache.size());
+      assertNull(cache.get("first", UUID.randomUUID(), 0L));
+   }
+   
+   /**
+    * Changing the effect configuration changes the fingerprint, so results cached before the change
+    * are not found after it.
+    */
+   @Test
+   public final void testStaleConfigMissed() {
+      Stage stage = factory.getStageManager().getStageValue("001");
+      boardManager.setStage(stage);
+      boardManager.loadBoardForStage(stage, true);
+      SimulationRequest request = SimulationRequest.builder(factory).setStage(stage)
+            .setBoard(boardManager.getBoard()).setTeam(factory.getTeamManager().getTeamForStage(stage)).build();
+      SimulationResultCache cache = new SimulationResultCache();
+      String before = new SimulationCore(request, UUID.randomUUID()).getFingerprint();
+      cache.put(before, getResults());
+      assertTrue(cache.get(new SimulationCore(request, UUID.randomUUID()).getFingerprint(), null, 0L) != null);
+      
+      EffectManager effectManager = factory.getEffectManager();
+      String odds = effectManager.getStringValue("SWAP");
+      effectManager.setEntry(EntryType.STRING, "SWAP", "100 100 100 100 20 30 50 70 ODDS");
+      try {
+         String after = new SimulationCore(request, UUID.randomUUID()).getFingerprint();
+         assertFalse(before.equals(after));
+         assertNull(cache.get(after, null, 0L));
+      } finally {
+         effectManager.setEntry(EntryType.STRING, "SWAP", odds);
+      }
+      assertEquals(before, new SimulationCore(request, UUID.randomUUID()).getFingerprint());
+   }
+   
+   /**
+    * Teams that differ only in a member that is not a support still fill the feeders differently,
+    * so they do not share cached results.
+    */
+   @Test
+   public final void testNonSupportMemberMissed() {
+      Stage stage = factory.getStageManager().getStageValue("001");
+      boardManager.setStage(stage);
+      boardManager.loadBoardForStage(stage, true);
+      Team team = factory.getTeamManager().getTeamForStage(stage);
+      List<String> fingerprints = new ArrayList<String>();
+      for (String name : Arrays.asList("Pikachu", "Eevee")) {
+         TeamImpl withMember = new TeamImpl(team);
+         withMember.addName(name, null);
+         withMember.setNonSupport(name, true);
+         SimulationRequest request = SimulationRequest.builder(factory).setStage(stage)
+               .setBoard(boardManager.getBoard()).setTeam(withMember).build();
+         fingerprints.add(new SimulationCore(request, UUID.randomUUID()).getFingerprint());
+      }
+      assertFalse(fingerprints.get(0).equals(fingerprints.get(1)));
+   }
+   
+   private static List<SimulationResult> getResults() {
+      Board board = new Board();
+      board.setSpeciesAt(6, 1, factory.getSpeciesManager().getSpeciesValue("Pikachu"));
+      board.setFrozenAt(6, 1, true);
+      board.setClouded(5, 2, true);
+      board.setMegaProgress(3);
+      List<SimulationResult> ret = new ArrayList<SimulationResult>();
+      NumberSpan combos = new NumberSpan(1, 2, 0.5);
+      ret.add(new SimulationResult(Arrays.asList(1, 1, 2, 1), board, new NumberSpan(120, 300, 0.25),
+            new NumberSpan(0), new NumberSpan(1), null, new NumberSpan(3), new NumberSpan(1), combos, 0L, 50,
+            FeederSampling.STRATIFIED));
+      ret.add(new SimulationResult(Arrays.asList(3, 4, 3, 5), new Board(), new NumberSpan(60), new NumberSpan(100),
+            new NumberSpan(0), null, new NumberSpan(3), new NumberSpan(0), new NumberSpan(1), 0L, 1,
+            FeederSampling.RANDOM));
+      return ret;
+   }
+   
+   private static void assertSpan(NumberSpan expected, NumberSpan actual) {
+      assertEquals(expected.getMinimum(), actual.getMinimum(), 0.0);
+      assertEquals(expected.getMaximum(), actual.getMaximum(), 0.0);
+      assertEquals(expected.getTotal(), actual.getTotal(), 0.0);
+      assertEquals(expected.getCount(), actual.getCount());
+   }
+}
@@ -0,0 +1,118 @@
+/*  ShuffleMove - A program for identifying and simulating ideal moves in the game
+ *  called Pokemon Shuffle.
+ *  
+ *  Copyright (C) 2015  Andrew Meyers
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package shuffle.test.fwk.data.simulation.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import shuffle.fwk.data.simulation.util.SimulationTrace;
+import shuffle.fwk.data.simulation.util.SimulationTrace.Type;
+
+/**
+ * @author Andrew Meyers
+ *
+ */
+public class SimulationTraceTest {
+   
+   /**
+    * Test method for {@link SimulationTrace#dump(java.io.Writer)}, the buffer of a thread that died
+    * is dropped once another thread records.
+    */
+   @Test
+   public final void testDeadThreadsAreDropped() throws Exception {
+      record("trace-dead", 3);
+      assertTrue("Kept until another thread records", dump().contains("Thread trace-dead,"));
+      record("trace-next", 2);
+      String text = dump();
+      assertFalse("Dropped once another thread records", text.contains("Thread trace-dead,"));
+      assertTrue(text.contains("Thread trace-next, 2 records"));
+   }
+   
+   /**
+    * Test method for {@link SimulationTrace#dump(java.io.Writer)}, records copied while the writer
+    * is wrapping around are never torn and stay in order.
+    */
+   @Test
+   public final void testDumpWhileWriting() throws Exception {
+      String oldCapacity = System.getProperty(SimulationTrace.KEY_CAPACITY);
+      System.setProperty(SimulationTrace.KEY_CAPACITY, "4");
+      AtomicBoolean writing = new AtomicBoolean(true);
+      Thread writer = new Thread(() -> {
+         for (int i = 0; writing.get(); i = i + 1 & 0xFFFFFF) {
+            SimulationTrace.record(Type.FRAME, 1, i, 0, 0, null, i);
+         }
+      }, "trace-writer");
+      writer.start();
+      try {
+         for (int dumps = 0; dumps < 20000; dumps++) {
+            String text = dump();
+            int start = text.indexOf("Thread trace-writer,");
+            if (start < 0) {
+               continue;
+            }
+            int last = -1;
+            for (String line : text.substring(start).split("\\R")) {
+               if (line.startsWith("Thread ")) {
+                  if (!line.startsWith("Thread trace-writer,")) {
+                     break;
+                  }
+                  last = -1;
+                  continue;
+               }
+               String[] words = line.trim().split(" +");
+               int frame = Integer.parseInt(words[4]);
+               assertEquals("Torn record: " + line, frame, Integer.parseInt(words[words.length - 1]));
+               assertTrue("Out of order: " + line, last < 0 || frame == (last + 1 & 0xFFFFFF));
+               last = frame;
+            }
+         }
+      } finally {
+         writing.set(false);
+         writer.join();
+         if (oldCapacity == null) {
+            System.clearProperty(SimulationTrace.KEY_CAPACITY);
+         } else {
+            System.setProperty(SimulationTrace.KEY_CAPACITY, oldCapacity);
+         }
+      }
+   }
+   
+   private static void record(String threadName, int count) throws InterruptedException {
+      Thread thread = new Thread(() -> {
+         for (int i = 0; i < count; i++) {
+            SimulationTrace.record(Type.FRAME, 1, i, 0, 0, null, i);
+         }
+      }, threadName);
+      thread.start();
+      thread.join();
+   }
+   
+   private static String dump() throws IOException {
+      StringWriter out = new StringWriter();
+      SimulationTrace.dump(out);
+      return out.toString();
+   }
+}